@@ -0,0 +1,85 @@
+package com.springframework.spring6restmvc.benchmarks;
+
+import com.springframework.spring6restmvc.model.BeerCSVRecord;
+import com.springframework.spring6restmvc.services.BeerCsvService;
+import com.springframework.spring6restmvc.services.BeerCsvServiceImpl;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Parses csvdata/beers.csv repeated `scale` times (1x is the bundled file, 1000x is ~2.4M records, ~420 MB):
+// today's convertCSV (whole list), the streaming parser and the parallel parser in both modes.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"}) // convertCSV keeps every record of the file in memory
+public class BeerCsvParsingBenchmark {
+
+    @Param({"1", "1000"})
+    int scale;
+
+    BeerCsvService beerCsvService = new BeerCsvServiceImpl();
+    File file;
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        List<String> lines;
+        try (InputStream in = getClass().getResourceAsStream("/csvdata/beers.csv")) {
+            lines = new String(in.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+        }
+
+        Path path = Files.createTempFile("beers-x" + scale + "-", ".csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write(lines.get(0));
+            writer.newLine();
+
+            for (int i = 0; i < scale; i++) {
+                for (String line : lines.subList(1, lines.size())) {
+                    writer.write(line);
+                    writer.newLine();
+                }
+            }
+        }
+
+        file = path.toFile();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    @Benchmark
+    public int convertCSV() {
+        return beerCsvService.convertCSV(file).size();
+    }
+
+    @Benchmark
+    public void streamCSV(Blackhole blackhole) {
+        try (Stream<BeerCSVRecord> records = beerCsvService.streamCSV(file)) {
+            records.forEach(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public long parseCSVParallelOrdered(Blackhole blackhole) {
+        return beerCsvService.parseCSVParallel(file, true, blackhole::consume);
+    }
+
+    @Benchmark
+    public long parseCSVParallelUnordered(Blackhole blackhole) {
+        return beerCsvService.parseCSVParallel(file, false, blackhole::consume);
+    }
+}
@@ -0,0 +1,63 @@
+package com.springframework.spring6restmvc.benchmarks;
+
+import com.springframework.spring6restmvc.Spring6RestMvcApplication;
+import com.springframework.spring6restmvc.model.BeerDTO;
+import com.springframework.spring6restmvc.model.BeerStyle;
+import com.springframework.spring6restmvc.services.BeerService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+
+import java.util.concurrent.TimeUnit;
+
+// BeerService.listBeers (BeerServiceJPA) end to end against the embedded H2 database of the default profile,
+// loaded by BootstrapData with the bundled catalog (~2400 beers). No web server, quiet logs.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BeerListingBenchmark {
+
+    // which filters are set: none, name, style, both
+    @Param({"all", "name", "style", "nameAndStyle"})
+    String filter;
+
+    // 1 is the first page, 50 (x 25) an offset deep in the catalog
+    @Param({"1", "50"})
+    int pageNumber;
+
+    ConfigurableApplicationContext context;
+    BeerService beerService;
+
+    String beerName;
+    BeerStyle beerStyle;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // command line arguments: they override application.properties, default properties would not
+        context = new SpringApplicationBuilder(Spring6RestMvcApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--logging.level.com.springframework=warn",
+                        "--spring.jpa.properties.hibernate.show_sql=false",
+                        "--spring.devtools.restart.enabled=false",
+                        "--spring.devtools.add-properties=false");
+        beerService = context.getBean(BeerService.class);
+
+        beerName = filter.equals("name") || filter.equals("nameAndStyle") ? "IPA" : null;
+        beerStyle = filter.equals("style") || filter.equals("nameAndStyle") ? BeerStyle.IPA : null;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<BeerDTO> listBeers() {
+        return beerService.listBeers(beerName, beerStyle, true, pageNumber, 25);
+    }
+}
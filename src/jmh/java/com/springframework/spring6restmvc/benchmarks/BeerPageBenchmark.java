@@ -0,0 +1,65 @@
+package com.springframework.spring6restmvc.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springframework.spring6restmvc.model.BeerDTO;
+import com.springframework.spring6restmvc.model.BeerStyle;
+import com.springframework.spring6restmvc.services.BeerServiceJPA;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// The parts of a listing request outside the database: the PageRequest built from the query parameters
+// and the Page<BeerDTO> written as JSON (an ObjectMapper configured like the one of Spring Boot).
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BeerPageBenchmark {
+
+    @Param({"25", "1000"})
+    int pageSize;
+
+    ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    Page<BeerDTO> page;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<BeerDTO> beers = IntStream.range(0, pageSize)
+                .mapToObj(i -> BeerDTO.builder()
+                        .id(UUID.randomUUID())
+                        .version(1)
+                        .beerName("Beer " + i)
+                        .beerStyle(BeerStyle.values()[i % BeerStyle.values().length])
+                        .upc(String.valueOf(100000 + i))
+                        .quantityOnHand(i)
+                        .price(new BigDecimal("12.99"))
+                        .createdDate(LocalDateTime.now())
+                        .updateDate(LocalDateTime.now())
+                        .build())
+                .toList();
+
+        page = new PageImpl<>(beers, PageRequest.of(0, pageSize), 2410);
+    }
+
+    @Benchmark
+    public PageRequest buildPageRequest() {
+        return BeerServiceJPA.buildPageRequest(3, pageSize);
+    }
+
+    @Benchmark
+    public byte[] writePage() throws Exception {
+        return objectMapper.writeValueAsBytes(page);
+    }
+}
@@ -0,0 +1,81 @@
+package com.springframework.spring6restmvc.benchmarks;
+
+import com.springframework.spring6restmvc.entities.Beer;
+import com.springframework.spring6restmvc.entities.Customer;
+import com.springframework.spring6restmvc.mappers.BeerMapper;
+import com.springframework.spring6restmvc.mappers.BeerMapperImpl;
+import com.springframework.spring6restmvc.mappers.CustomerMapper;
+import com.springframework.spring6restmvc.mappers.CustomerMapperImpl;
+import com.springframework.spring6restmvc.model.BeerDTO;
+import com.springframework.spring6restmvc.model.BeerStyle;
+import com.springframework.spring6restmvc.model.CustomerDTO;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// The MapStruct mappers (generated *MapperImpl classes) both ways, on fully populated objects.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapperBenchmark {
+
+    BeerMapper beerMapper = new BeerMapperImpl();
+    CustomerMapper customerMapper = new CustomerMapperImpl();
+
+    Beer beer;
+    BeerDTO beerDto;
+    Customer customer;
+    CustomerDTO customerDto;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        beer = Beer.builder()
+                .id(UUID.randomUUID())
+                .version(3)
+                .beerName("Galaxy Cat")
+                .beerStyle(BeerStyle.PALE_ALE)
+                .upc("12356")
+                .quantityOnHand(122)
+                .price(new BigDecimal("12.99"))
+                .createdDate(LocalDateTime.now())
+                .updateDate(LocalDateTime.now())
+                .build();
+        beerDto = beerMapper.beerToBeerDto(beer);
+
+        customer = Customer.builder()
+                .id(UUID.randomUUID())
+                .version(1)
+                .name("John Spring")
+                .email("john.spring@example.com")
+                .createdDate(LocalDateTime.now())
+                .lastModifiedDate(LocalDateTime.now())
+                .build();
+        customerDto = customerMapper.customerToCustomerDto(customer);
+    }
+
+    @Benchmark
+    public BeerDTO beerToBeerDto() {
+        return beerMapper.beerToBeerDto(beer);
+    }
+
+    @Benchmark
+    public Beer beerDtoToBeer() {
+        return beerMapper.beerDtoToBeer(beerDto);
+    }
+
+    @Benchmark
+    public CustomerDTO customerToCustomerDto() {
+        return customerMapper.customerToCustomerDto(customer);
+    }
+
+    @Benchmark
+    public Customer customerDtoToCustomer() {
+        return customerMapper.customerDtoToCustomer(customerDto);
+    }
+}
@@ -0,0 +1,100 @@
+package com.springframework.spring6restmvc.benchmarks;
+
+import com.springframework.spring6restmvc.Spring6RestMvcApplication;
+import com.springframework.spring6restmvc.config.BoundedDataSource;
+import com.springframework.spring6restmvc.config.VirtualThreads;
+import com.springframework.spring6restmvc.services.BeerService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// Platform thread pool (Tomcat's default: 200 threads) vs one virtual thread per request, for a burst of
+// `concurrency` requests shaped like ours: some blocking outside the database (request body, remote calls), then
+// a real listBeers call on the embedded H2 database. The application is booted with threads.virtual.enabled set
+// like the mode, so the virtual runs go through its BoundedDataSource (permits = the Hikari pool size).
+// One op is a whole burst: the result is bursts/s (x concurrency = requests/s). This is the throughput of the
+// executors and the connection bound only, without Tomcat and HTTP; the request latencies (p99) of both modes come
+// from the load test (loadtest profile), run once with and once without -Dthreads.virtual.enabled=true.
+// The virtual mode needs Java 21: run with JAVA_HOME pointing to it, on 17 its trials fail in setup.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class RequestThreadsBenchmark {
+
+    @Param({"platform", "virtual"})
+    String threads;
+
+    @Param({"1000"})
+    int concurrency;
+
+    // blocking outside the database (ms). With 50 ms, 200 platform threads cap the throughput below what the
+    // connections could serve; with 5 ms the connections are the limit for both
+    @Param({"5", "50"})
+    int ioMillis;
+
+    ConfigurableApplicationContext context;
+    BeerService beerService;
+    ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        boolean virtual = threads.equals("virtual");
+
+        executor = virtual
+                ? VirtualThreads.newVirtualThreadPerTaskExecutor()
+                        .orElseThrow(() -> new IllegalStateException("No virtual threads on " + Runtime.version()))
+                : Executors.newFixedThreadPool(200);
+
+        // command line arguments: they override application.properties, default properties would not
+        context = new SpringApplicationBuilder(Spring6RestMvcApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--logging.level.com.springframework=warn",
+                        "--spring.jpa.properties.hibernate.show_sql=false",
+                        "--spring.devtools.restart.enabled=false",
+                        "--spring.devtools.add-properties=false",
+                        "--threads.virtual.enabled=" + virtual);
+        beerService = context.getBean(BeerService.class);
+
+        if (virtual != context.getBean(DataSource.class) instanceof BoundedDataSource) {
+            throw new IllegalStateException("The data source does not match the " + threads + " mode");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdown();
+        context.close();
+    }
+
+    @Benchmark
+    public int burst() throws Exception {
+        List<Future<Integer>> requests = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            requests.add(executor.submit(this::request));
+        }
+
+        int done = 0;
+        for (Future<Integer> request : requests) {
+            done += request.get();
+        }
+        return done;
+    }
+
+    int request() throws InterruptedException {
+        Thread.sleep(ioMillis);
+
+        return beerService.listBeers(null, null, true, 1, 25).getNumberOfElements() > 0 ? 1 : 0;
+    }
+}
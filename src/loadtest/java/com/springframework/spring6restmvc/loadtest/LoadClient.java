@@ -0,0 +1,208 @@
+package com.springframework.spring6restmvc.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+// One simulated client: sends one request after the other (closed loop), each picked at random by the weights
+// of the mix, and records its latency in a histogram per operation. Histograms are per client, so recording
+// never contends; they are added up at the end.
+// Gets and patches go to the generated dataset. Deletes only remove what this client posted before (a delete with
+// nothing to delete posts instead), so gets never hit a deleted row.
+// Closed loop: a slow response delays the next request, so latencies under overload are understated
+// (coordinated omission). Compare runs with the same number of clients.
+class LoadClient implements Runnable {
+
+    private static final int PAGE_SIZE = 25;
+
+    private final HttpClient httpClient;
+    private final String baseUrl;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private final List<UUID> beerIds;
+    private final List<UUID> customerIds;
+    private final long warmupEndNanos;
+    private final long endNanos;
+
+    private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, Long> errors = new EnumMap<>(Operation.class);
+    private final Deque<UUID> postedBeers = new ArrayDeque<>();
+    private final Deque<UUID> postedCustomers = new ArrayDeque<>();
+
+    LoadClient(HttpClient httpClient, String baseUrl, Map<Operation, Integer> mix, List<UUID> beerIds,
+               List<UUID> customerIds, long warmupEndNanos, long endNanos) {
+        this.httpClient = httpClient;
+        this.baseUrl = baseUrl;
+        this.operations = mix.keySet().toArray(new Operation[0]);
+        this.cumulativeWeights = new int[operations.length];
+        this.beerIds = beerIds;
+        this.customerIds = customerIds;
+        this.warmupEndNanos = warmupEndNanos;
+        this.endNanos = endNanos;
+
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += mix.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new Histogram(3)); // microseconds, 3 significant digits, grows as needed
+            errors.put(operation, 0L);
+        }
+    }
+
+    Map<Operation, Histogram> latencies() {
+        return latencies;
+    }
+
+    Map<Operation, Long> errors() {
+        return errors;
+    }
+
+    @Override
+    public void run() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        while (System.nanoTime() < endNanos) {
+            Operation operation = pick(random);
+            HttpRequest request = request(operation, random);
+
+            long start = System.nanoTime();
+            int status;
+            String location = null;
+            try {
+                HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                status = response.statusCode();
+                location = response.headers().firstValue("Location").orElse(null);
+            } catch (IOException e) {
+                status = -1;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long end = System.nanoTime();
+
+            Operation done = operationOf(request, operation);
+            if (status >= 200 && status < 300) {
+                remember(done, location);
+            }
+
+            if (start >= warmupEndNanos) {
+                latencies.get(done).recordValue(Math.max(1, (end - start) / 1000));
+                if (status < 200 || status >= 300) {
+                    errors.merge(done, 1L, Long::sum);
+                }
+            }
+        }
+    }
+
+    private Operation pick(ThreadLocalRandom random) {
+        int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    private HttpRequest request(Operation operation, ThreadLocalRandom random) {
+        return switch (operation) {
+            case BEER_LIST -> get("/api/v1/beer?pageSize=" + PAGE_SIZE + "&pageNumber=" + randomPage(beerIds, random));
+            case BEER_GET -> get("/api/v1/beer/" + randomId(beerIds, random));
+            case BEER_POST -> postBeer(random);
+            case BEER_PATCH -> json("/api/v1/beer/" + randomId(beerIds, random), "PATCH",
+                    "{\"price\":\"" + randomPrice(random) + "\"}");
+            case BEER_DELETE -> postedBeers.isEmpty() ? postBeer(random) : delete("/api/v1/beer/" + postedBeers.pop());
+            case CUSTOMER_LIST -> get("/api/v1/customer?pageSize=" + PAGE_SIZE + "&pageNumber=" + randomPage(customerIds, random));
+            case CUSTOMER_GET -> get("/api/v1/customer/" + randomId(customerIds, random));
+            case CUSTOMER_POST -> postCustomer();
+            // the customer patch binds request parameters, not a JSON body
+            case CUSTOMER_PATCH -> HttpRequest.newBuilder(uri("/api/v1/customer/" + randomId(customerIds, random)
+                            + "?name=Patched%20" + random.nextInt(1000)))
+                    .method("PATCH", HttpRequest.BodyPublishers.noBody())
+                    .build();
+            case CUSTOMER_DELETE -> postedCustomers.isEmpty() ? postCustomer() : delete("/api/v1/customer/" + postedCustomers.pop());
+        };
+    }
+
+    // a delete with nothing to delete was sent as a post: it is recorded as one
+    private static Operation operationOf(HttpRequest request, Operation picked) {
+        if (picked == Operation.BEER_DELETE && request.method().equals("POST")) {
+            return Operation.BEER_POST;
+        }
+        if (picked == Operation.CUSTOMER_DELETE && request.method().equals("POST")) {
+            return Operation.CUSTOMER_POST;
+        }
+        return picked;
+    }
+
+    // ids of created rows come back in the Location header (".../{id}")
+    private void remember(Operation operation, String location) {
+        if (location == null) {
+            return;
+        }
+
+        UUID id = UUID.fromString(location.substring(location.lastIndexOf('/') + 1));
+        if (operation == Operation.BEER_POST) {
+            postedBeers.push(id);
+        } else if (operation == Operation.CUSTOMER_POST) {
+            postedCustomers.push(id);
+        }
+    }
+
+    private HttpRequest postBeer(ThreadLocalRandom random) {
+        return json("/api/v1/beer", "POST", "{\"beerName\":\"Load Test " + random.nextInt(100000) + "\","
+                + "\"beerStyle\":\"IPA\",\"upc\":\"" + random.nextInt(1000000) + "\","
+                + "\"quantityOnHand\":" + random.nextInt(500) + ",\"price\":\"" + randomPrice(random) + "\"}");
+    }
+
+    private HttpRequest postCustomer() {
+        UUID unique = UUID.randomUUID();
+        return json("/api/v1/customer", "POST",
+                "{\"name\":\"Load Test " + unique + "\",\"email\":\"" + unique + "@loadtest.example.com\"}");
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(uri(path)).GET().build();
+    }
+
+    private HttpRequest delete(String path) {
+        return HttpRequest.newBuilder(uri(path)).DELETE().build();
+    }
+
+    private HttpRequest json(String path, String method, String body) {
+        return HttpRequest.newBuilder(uri(path))
+                .header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+
+    private static UUID randomId(List<UUID> ids, ThreadLocalRandom random) {
+        return ids.get(random.nextInt(ids.size()));
+    }
+
+    private static int randomPage(List<UUID> ids, ThreadLocalRandom random) {
+        return 1 + random.nextInt(Math.max(1, ids.size() / PAGE_SIZE));
+    }
+
+    private static String randomPrice(ThreadLocalRandom random) {
+        return (5 + random.nextInt(20)) + "." + (10 + random.nextInt(90));
+    }
+}
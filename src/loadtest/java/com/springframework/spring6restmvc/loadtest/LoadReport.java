@@ -0,0 +1,145 @@
+package com.springframework.spring6restmvc.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+// Latency percentiles (HdrHistogram, recorded in microseconds) and throughput per operation, added up over all clients.
+// Written as a properties file that a later run can use as its baseline (loadtest.baseline), plus one .hgrm
+// percentile distribution per operation next to it (plottable with HdrHistogram's plotter).
+class LoadReport {
+
+    private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, Long> errors = new EnumMap<>(Operation.class);
+    private final Duration measured;
+
+    LoadReport(List<LoadClient> clients, Duration measured) {
+        this.measured = measured;
+
+        for (Operation operation : Operation.values()) {
+            Histogram total = new Histogram(3);
+            long operationErrors = 0;
+
+            for (LoadClient client : clients) {
+                total.add(client.latencies().get(operation));
+                operationErrors += client.errors().get(operation);
+            }
+
+            latencies.put(operation, total);
+            errors.put(operation, operationErrors);
+        }
+    }
+
+    void print(PrintStream out) {
+        out.printf("%-16s %10s %10s %8s %10s %10s %10s %10s %10s%n",
+                "operation", "requests", "req/s", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = latencies.get(operation);
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+
+            out.printf("%-16s %10d %10.1f %8d %10.2f %10.2f %10.2f %10.2f %10.2f%n",
+                    operation.key(),
+                    histogram.getTotalCount(),
+                    throughput(histogram),
+                    errors.get(operation),
+                    millis(histogram.getValueAtPercentile(50)),
+                    millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(99)),
+                    millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMaxValue()));
+        }
+    }
+
+    void write(Path resultFile) throws IOException {
+        Properties result = new Properties();
+
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = latencies.get(operation);
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+
+            String key = operation.key();
+            result.setProperty(key + ".count", Long.toString(histogram.getTotalCount()));
+            result.setProperty(key + ".throughput", String.format("%.1f", throughput(histogram)));
+            result.setProperty(key + ".errors", Long.toString(errors.get(operation)));
+            result.setProperty(key + ".p50.us", Long.toString(histogram.getValueAtPercentile(50)));
+            result.setProperty(key + ".p90.us", Long.toString(histogram.getValueAtPercentile(90)));
+            result.setProperty(key + ".p99.us", Long.toString(histogram.getValueAtPercentile(99)));
+            result.setProperty(key + ".p999.us", Long.toString(histogram.getValueAtPercentile(99.9)));
+            result.setProperty(key + ".max.us", Long.toString(histogram.getMaxValue()));
+
+            Path distribution = resultFile.resolveSibling("loadtest-" + key + ".hgrm");
+            try (PrintStream out = new PrintStream(Files.newOutputStream(distribution))) {
+                histogram.outputPercentileDistribution(out, 1000.0); // in ms
+            }
+        }
+
+        if (resultFile.getParent() != null) {
+            Files.createDirectories(resultFile.getParent());
+        }
+        try (Writer writer = Files.newBufferedWriter(resultFile)) {
+            result.store(writer, "load test, " + measured + " measured");
+        }
+    }
+
+    // Why the run fails: a p99 above the baseline's by more than maxP99Regression (0.2 = 20%),
+    // or more errors than maxErrorRate of the requests. Empty if it passes.
+    List<String> failures(Path baselineFile, double maxP99Regression, double maxErrorRate) throws IOException {
+        List<String> failures = new ArrayList<>();
+
+        Properties baseline = new Properties();
+        if (baselineFile != null) {
+            try (Reader reader = Files.newBufferedReader(baselineFile)) {
+                baseline.load(reader);
+            }
+        }
+
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = latencies.get(operation);
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+
+            double errorRate = (double) errors.get(operation) / histogram.getTotalCount();
+            if (errorRate > maxErrorRate) {
+                failures.add(String.format("%s: %.2f%% of the requests failed (at most %.2f%%)",
+                        operation.key(), errorRate * 100, maxErrorRate * 100));
+            }
+
+            String baselineP99 = baseline.getProperty(operation.key() + ".p99.us");
+            if (baselineP99 != null) {
+                long p99 = histogram.getValueAtPercentile(99);
+                long limit = Math.round(Long.parseLong(baselineP99) * (1 + maxP99Regression));
+                if (p99 > limit) {
+                    failures.add(String.format("%s: p99 %.2f ms, baseline %.2f ms (at most %.2f ms)",
+                            operation.key(), millis(p99), millis(Long.parseLong(baselineP99)), millis(limit)));
+                }
+            }
+        }
+
+        return failures;
+    }
+
+    private double throughput(Histogram histogram) {
+        return histogram.getTotalCount() / (measured.toMillis() / 1000.0);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,138 @@
+package com.springframework.spring6restmvc.loadtest;
+
+import com.springframework.spring6restmvc.Spring6RestMvcApplication;
+import com.springframework.spring6restmvc.model.BeerDTO;
+import com.springframework.spring6restmvc.model.BeerStyle;
+import com.springframework.spring6restmvc.model.CustomerDTO;
+import com.springframework.spring6restmvc.services.BeerService;
+import com.springframework.spring6restmvc.services.CustomerService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+// End-to-end HTTP load test: boots the application (default profile: H2) on a random port, adds a generated
+// dataset, runs loadtest.clients concurrent clients over the loadtest.mix of requests (see LoadClient), then prints
+// and writes the latency percentiles and throughput per operation (LoadReport).
+// Exits with 1 if a p99 regressed against loadtest.baseline or too many requests failed.
+// Run with: ./mvnw -Ploadtest test-compile exec:exec -Dloadtest.args="-Dloadtest.clients=64 -Dloadtest.duration=PT2M"
+// Platform vs virtual request threads (Java 21): run once with -Dloadtest.result=target/loadtest-platform.properties,
+// then with -Dthreads.virtual.enabled=true -Dloadtest.baseline=target/loadtest-platform.properties in loadtest.args.
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        LoadTestSettings settings = LoadTestSettings.fromSystemProperties();
+        // read from the system properties when the application starts, before any argument is parsed
+        if (System.getProperty("spring.devtools.restart.enabled") == null) {
+            System.setProperty("spring.devtools.restart.enabled", "false");
+        }
+        List<String> failures;
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Spring6RestMvcApplication.class)
+                .run(withOverrides(args))) {
+
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+
+            List<UUID> beerIds = generateBeers(context.getBean(BeerService.class), settings.beers());
+            List<UUID> customerIds = generateCustomers(context.getBean(CustomerService.class), settings.customers());
+
+            System.out.printf("Load test: %d clients, %s warmup, %s measured, against %s (virtual threads: %s)%n",
+                    settings.clients(), settings.warmup(), settings.duration(), baseUrl,
+                    context.getEnvironment().getProperty("threads.virtual.enabled", "false"));
+
+            List<LoadClient> clients = run(settings, baseUrl, beerIds, customerIds);
+
+            LoadReport report = new LoadReport(clients, settings.duration());
+            report.print(System.out);
+            report.write(settings.resultFile());
+            System.out.println("Results written to " + settings.resultFile().toAbsolutePath());
+
+            failures = report.failures(settings.baselineFile(), settings.maxP99Regression(), settings.maxErrorRate());
+        }
+
+        failures.forEach(failure -> System.out.println("FAILED " + failure));
+        System.exit(failures.isEmpty() ? 0 : 1);
+    }
+
+    // Passed as command line arguments: builder properties are defaults, so application.properties (debug logs, SQL
+    // output) would win over them. Settings given to main or as -D system properties are kept.
+    private static String[] withOverrides(String[] args) {
+        List<String> all = new ArrayList<>(List.of(args));
+
+        for (String override : List.of("server.port=0",
+                "logging.level.com.springframework=warn",
+                "spring.jpa.properties.hibernate.show_sql=false",
+                // no devtools defaults (template caching off, web logging) in a measured run
+                "spring.devtools.add-properties=false")) {
+            String name = override.substring(0, override.indexOf('='));
+
+            if (System.getProperty(name) == null && all.stream().noneMatch(arg -> arg.startsWith("--" + name + "="))) {
+                all.add("--" + override);
+            }
+        }
+        return all.toArray(String[]::new);
+    }
+
+    private static List<LoadClient> run(LoadTestSettings settings, String baseUrl,
+                                        List<UUID> beerIds, List<UUID> customerIds) throws InterruptedException {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+
+        long start = System.nanoTime();
+        long warmupEnd = start + settings.warmup().toNanos();
+        long end = warmupEnd + settings.duration().toNanos();
+
+        List<LoadClient> clients = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < settings.clients(); i++) {
+            LoadClient client = new LoadClient(httpClient, baseUrl, settings.mix(), beerIds, customerIds, warmupEnd, end);
+            clients.add(client);
+            threads.add(new Thread(client, "loadtest-client-" + i));
+        }
+
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        return clients;
+    }
+
+    // through the services, like the API writes them, so the in-memory indexes and caches know the rows
+    private static List<UUID> generateBeers(BeerService beerService, int count) {
+        List<UUID> ids = new ArrayList<>(count);
+        BeerStyle[] styles = BeerStyle.values();
+
+        for (int i = 0; i < count; i++) {
+            ids.add(beerService.saveNewBeer(BeerDTO.builder()
+                    .beerName("Generated Beer " + i)
+                    .beerStyle(styles[i % styles.length])
+                    .upc(String.valueOf(100000 + i))
+                    .quantityOnHand(i % 500)
+                    .price(BigDecimal.valueOf(500 + i % 2000, 2))
+                    .build()).getId());
+        }
+
+        return ids;
+    }
+
+    private static List<UUID> generateCustomers(CustomerService customerService, int count) {
+        List<UUID> ids = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            ids.add(customerService.createNewCustomer(CustomerDTO.builder()
+                    .name("Generated Customer " + i)
+                    .email("generated-" + i + "@loadtest.example.com")
+                    .build()).getId());
+        }
+
+        return ids;
+    }
+}
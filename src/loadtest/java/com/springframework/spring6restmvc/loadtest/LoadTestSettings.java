@@ -0,0 +1,63 @@
+package com.springframework.spring6restmvc.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Everything is read from -Dloadtest.* system properties (see the loadtest profile in pom.xml).
+public record LoadTestSettings(int clients,
+                               Duration warmup,
+                               Duration duration,
+                               int beers,
+                               int customers,
+                               Map<Operation, Integer> mix,
+                               Path resultFile,
+                               Path baselineFile,
+                               double maxP99Regression,
+                               double maxErrorRate) {
+
+    static final String DEFAULT_MIX = "beer.list=25,beer.get=30,beer.post=5,beer.patch=5,beer.delete=2,"
+            + "customer.list=10,customer.get=15,customer.post=4,customer.patch=3,customer.delete=1";
+
+    public static LoadTestSettings fromSystemProperties() {
+        String baseline = System.getProperty("loadtest.baseline");
+
+        return new LoadTestSettings(
+                Integer.getInteger("loadtest.clients", 32),
+                Duration.parse(System.getProperty("loadtest.warmup", "PT15S")),
+                Duration.parse(System.getProperty("loadtest.duration", "PT60S")),
+                Integer.getInteger("loadtest.beers", 10000),
+                Integer.getInteger("loadtest.customers", 2000),
+                parseMix(System.getProperty("loadtest.mix", DEFAULT_MIX)),
+                Path.of(System.getProperty("loadtest.result", "target/loadtest-result.properties")),
+                baseline == null || baseline.isBlank() ? null : Path.of(baseline),
+                Double.parseDouble(System.getProperty("loadtest.max-p99-regression", "0.20")),
+                Double.parseDouble(System.getProperty("loadtest.max-error-rate", "0.001")));
+    }
+
+    // "beer.list=25,beer.get=30,...": relative weights, operations left out are not run
+    static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new LinkedHashMap<>();
+
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Bad loadtest.mix entry '" + entry + "', expected operation=weight");
+            }
+
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight in loadtest.mix: " + entry);
+            }
+            if (weight > 0) {
+                weights.put(Operation.byKey(parts[0].trim()), weight);
+            }
+        }
+
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("loadtest.mix has no operation with a positive weight");
+        }
+        return weights;
+    }
+}
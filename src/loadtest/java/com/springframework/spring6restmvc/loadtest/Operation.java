@@ -0,0 +1,35 @@
+package com.springframework.spring6restmvc.loadtest;
+
+import java.util.Arrays;
+
+// What a client can do, with the key used in loadtest.mix, the report and the result file
+public enum Operation {
+    BEER_LIST("beer.list"),
+    BEER_GET("beer.get"),
+    BEER_POST("beer.post"),
+    BEER_PATCH("beer.patch"),
+    BEER_DELETE("beer.delete"),
+    CUSTOMER_LIST("customer.list"),
+    CUSTOMER_GET("customer.get"),
+    CUSTOMER_POST("customer.post"),
+    CUSTOMER_PATCH("customer.patch"),
+    CUSTOMER_DELETE("customer.delete");
+
+    private final String key;
+
+    Operation(String key) {
+        this.key = key;
+    }
+
+    public String key() {
+        return key;
+    }
+
+    static Operation byKey(String key) {
+        return Arrays.stream(values())
+                .filter(operation -> operation.key.equals(key))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown operation '" + key + "', one of "
+                        + Arrays.stream(values()).map(Operation::key).toList()));
+    }
+}
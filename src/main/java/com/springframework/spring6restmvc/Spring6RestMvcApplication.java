@@ -2,7 +2,9 @@ package com.springframework.spring6restmvc;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
+@EnableScheduling // background refresh of cached aggregates (e.g. approximate beer counts)
 @SpringBootApplication
 public class Spring6RestMvcApplication {
 
@@ -9,7 +9,6 @@ import com.springframework.spring6restmvc.repositories.CustomerRepository;
 import com.springframework.spring6restmvc.services.BeerCsvService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.StringUtils;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
@@ -20,8 +19,8 @@ import java.io.FileNotFoundException;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Arrays;
-import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Slf4j
 @RequiredArgsConstructor
@@ -56,33 +55,10 @@ public class BootstrapData implements CommandLineRunner {
         if (beerRepository.count() < 10) {
             File file = ResourceUtils.getFile("classpath:csvdata/beers.csv");
 
-            List<BeerCSVRecord> beerCSVRecordList = beerCsvService.convertCSV(file);
-
-            // change save records:
-            beerCSVRecordList.forEach(beerCSVRecord -> {
-                BeerStyle beerStyle = switch (beerCSVRecord.getStyle()) {
-                    case "American Pale Lager" -> BeerStyle.LAGER;
-                    case "American Pale Ale (APA)", "American Black Ale", "Belgian Dark Ale", "American Blonde Ale"
-                        -> BeerStyle.ALE;
-                    case "American IPA", "American Double / Imperial IPA", "Belgian IPA" -> BeerStyle.IPA;
-                    case "American Porter" -> BeerStyle.PORTER;
-                    case "Oatmeal Stout", "American Stout" -> BeerStyle.STOUT;
-                    case "Saison / Farmhouse Ale" -> BeerStyle.SAISON;
-                    case "Fruit / Vegetable Beer", "Winter Warmer", "Berliner Weissbier" -> BeerStyle.WHEAT;
-                    case "English Pale Ale" -> BeerStyle.PALE_ALE;
-                    default -> BeerStyle.PILSNER;
-                };
-
-                beerRepository.save(
-                        Beer.builder()
-                                .beerName(StringUtils.abbreviate(beerCSVRecord.getBeer(), 50))
-                                .beerStyle(beerStyle)
-                                .price(BigDecimal.TEN)
-                                .upc(beerCSVRecord.getRow().toString())
-                                .quantityOnHand(beerCSVRecord.getCount())
-                                .build()
-                );
-            });
+            // save records while reading them (the file is closed with the stream):
+            try (Stream<BeerCSVRecord> beerCSVRecords = beerCsvService.streamCSV(file)) {
+                beerCSVRecords.forEach(beerCSVRecord -> beerRepository.save(beerCsvService.toBeer(beerCSVRecord)));
+            }
 
         }
     }
@@ -133,6 +109,7 @@ public class BootstrapData implements CommandLineRunner {
             Customer customer1 = Customer.builder()
                     // Id and Version will be generated by Hibernate
                     .name("John Spring")
+                    .email("john.spring@example.com")
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
                     .build();
@@ -145,6 +122,7 @@ public class BootstrapData implements CommandLineRunner {
             Customer customer2 = Customer.builder()
                     // Id and Version will be generated by Hibernate
                     .name("Eva Blue")
+                    .email("eva.blue@example.com")
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
                     .build();
@@ -152,6 +130,7 @@ public class BootstrapData implements CommandLineRunner {
             Customer customer3 = Customer.builder()
                     // Id and Version will be generated by Hibernate
                     .name("Joseph Carter")
+                    .email("joseph.carter@example.com")
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
                     .build();
@@ -0,0 +1,99 @@
+package com.springframework.spring6restmvc.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// At most `permits` callers hold a connection at once, the others wait on a fair Semaphore before reaching the pool.
+// With one virtual thread per request there is no thread pool left to bound the requests that want the database:
+// thousands of them would queue inside Hikari (and time out together after connection-timeout). Waiting on a
+// Semaphore parks a virtual thread without pinning its carrier, and the permits are handed out in arrival order.
+public class BoundedDataSource extends DelegatingDataSource {
+
+    private final Semaphore permits;
+    private final long acquireTimeoutNanos;
+
+    public BoundedDataSource(DataSource targetDataSource, int permits, Duration acquireTimeout) {
+        super(targetDataSource);
+        this.permits = new Semaphore(permits, true);
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        acquire();
+        return withPermit(this::obtainTargetConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        acquire();
+        return withPermit(() -> obtainTargetDataSource().getConnection(username, password));
+    }
+
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+
+    private Connection obtainTargetConnection() throws SQLException {
+        return obtainTargetDataSource().getConnection();
+    }
+
+    private void acquire() throws SQLException {
+        try {
+            if (!permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new SQLTransientConnectionException("No database permit available within " + Duration.ofNanos(acquireTimeoutNanos));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a database permit", e);
+        }
+    }
+
+    // the permit is given back when the connection is closed (returned to the pool), exactly once
+    private Connection withPermit(ConnectionSupplier supplier) throws SQLException {
+        Connection connection;
+        try {
+            connection = supplier.get();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+
+        AtomicBoolean released = new AtomicBoolean(false);
+
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close") && method.getParameterCount() == 0) {
+                        try {
+                            connection.close();
+                        } finally {
+                            if (released.compareAndSet(false, true)) {
+                                permits.release();
+                            }
+                        }
+                        return null;
+                    }
+
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSupplier {
+        Connection get() throws SQLException;
+    }
+}
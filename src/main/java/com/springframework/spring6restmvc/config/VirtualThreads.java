@@ -0,0 +1,30 @@
+package com.springframework.spring6restmvc.config;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// The build targets Java 17: virtual threads are looked up at runtime and only used on a JVM that has them (21+).
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isAvailable() {
+        return newVirtualThreadPerTaskExecutor()
+                .map(executor -> {
+                    executor.shutdown();
+                    return true;
+                })
+                .orElse(false);
+    }
+
+    // one new virtual thread per task. Empty before Java 21 (and on 19/20 without --enable-preview)
+    public static Optional<ExecutorService> newVirtualThreadPerTaskExecutor() {
+        try {
+            return Optional.of((ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null));
+        } catch (ReflectiveOperationException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.springframework.spring6restmvc.config;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+
+// threads.virtual.enabled=true: Tomcat runs every request (controller and service calls) on its own virtual thread
+// instead of its bounded platform pool (server.tomcat.threads.max), and so do the async parts of MVC
+// (StreamingResponseBody exports). The number of requests using the database at once is then bounded by
+// threads.virtual.db-permits (BoundedDataSource), by default the size of the connection pool.
+// Needs Java 21: on an older JVM the platform threads are kept, the DataSource is not bounded and a warning is logged.
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadsConfig {
+
+    // empty if the JVM has no virtual threads
+    private final Optional<ExecutorService> requestExecutor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+
+    public VirtualThreadsConfig() {
+        if (requestExecutor.isEmpty()) {
+            log.warn("threads.virtual.enabled is set but this JVM ({}) has no virtual threads: requests stay on platform threads",
+                    Runtime.version());
+        }
+    }
+
+    @Bean
+    TomcatProtocolHandlerCustomizer<?> virtualThreadsProtocolHandlerCustomizer() {
+        return protocolHandler -> requestExecutor.ifPresent(protocolHandler::setExecutor);
+    }
+
+    @Bean
+    WebMvcConfigurer virtualThreadsAsyncSupport() {
+        return new WebMvcConfigurer() {
+            @Override
+            public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+                requestExecutor.ifPresent(executor -> configurer.setTaskExecutor(new TaskExecutorAdapter(executor)));
+            }
+        };
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        requestExecutor.ifPresent(ExecutorService::shutdown);
+    }
+
+    // static: post-processors are created before the other beans of this class, so it checks the JVM itself.
+    // Platform threads are already bounded by the Tomcat pool: the DataSource is only wrapped for virtual threads
+    @Bean
+    static BeanPostProcessor boundedDataSourcePostProcessor(
+            @Value("${threads.virtual.db-permits:${spring.datasource.hikari.maximum-pool-size:10}}") int permits,
+            @Value("${threads.virtual.db-acquire-timeout:PT30S}") Duration acquireTimeout) {
+        boolean virtualThreads = VirtualThreads.isAvailable();
+
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (virtualThreads && bean instanceof DataSource dataSource && !(bean instanceof BoundedDataSource)) {
+                    log.info("Database access of bean '{}' bounded to {} concurrent connections", beanName, permits);
+                    return new BoundedDataSource(dataSource, permits, acquireTimeout);
+                }
+                return bean;
+            }
+        };
+    }
+}
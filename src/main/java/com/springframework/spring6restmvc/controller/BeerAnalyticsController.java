@@ -0,0 +1,50 @@
+package com.springframework.spring6restmvc.controller;
+
+import com.springframework.spring6restmvc.model.BeerPriceHistogramDTO;
+import com.springframework.spring6restmvc.model.BeerStyle;
+import com.springframework.spring6restmvc.services.BeerAnalytics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+// Aggregates over the whole catalog, computed from the in-memory columnar snapshot (BeerAnalytics), not the database.
+@RequiredArgsConstructor
+@RestController
+public class BeerAnalyticsController {
+    public static final String BEER_ANALYTICS_PATH = BeerController.BEER_PATH + "/analytics";
+    public static final String QUANTITY_BY_STYLE_PATH = BEER_ANALYTICS_PATH + "/quantity-by-style";
+    public static final String INVENTORY_VALUE_BY_STYLE_PATH = BEER_ANALYTICS_PATH + "/inventory-value-by-style";
+    public static final String PRICE_HISTOGRAM_PATH = BEER_ANALYTICS_PATH + "/price-histogram";
+
+    private static final int MAX_BUCKETS = 1000;
+
+    private final BeerAnalytics beerAnalytics;
+
+    @GetMapping(QUANTITY_BY_STYLE_PATH)
+    public Map<BeerStyle, Long> getQuantityByStyle() {
+        return beerAnalytics.quantityByStyle();
+    }
+
+    @GetMapping(INVENTORY_VALUE_BY_STYLE_PATH)
+    public Map<BeerStyle, BigDecimal> getInventoryValueByStyle() {
+        return beerAnalytics.inventoryValueByStyle();
+    }
+
+    @GetMapping(PRICE_HISTOGRAM_PATH)
+    public BeerPriceHistogramDTO getPriceHistogram(@RequestParam(defaultValue = "5.00") BigDecimal bucketWidth,
+                                                   @RequestParam(defaultValue = "10") Integer buckets) {
+        // prices are kept in cents: the width must be a whole number of cents
+        if (bucketWidth.signum() <= 0 || bucketWidth.stripTrailingZeros().scale() > 2 || buckets < 1 || buckets > MAX_BUCKETS) {
+            throw new BadRequestException("bucketWidth must be a positive amount in cents and buckets between 1 and " + MAX_BUCKETS);
+        }
+
+        return BeerPriceHistogramDTO.builder()
+                .bucketWidth(bucketWidth)
+                .counts(beerAnalytics.priceHistogram(bucketWidth.movePointRight(2).longValueExact(), buckets))
+                .build();
+    }
+}
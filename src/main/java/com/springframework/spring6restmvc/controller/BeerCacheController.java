@@ -0,0 +1,35 @@
+package com.springframework.spring6restmvc.controller;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.springframework.spring6restmvc.services.BeerDtoCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Statistics of the beer-by-id cache, to size it (beer.cache.maximum-size / beer.cache.expire-after-write).
+@RequiredArgsConstructor
+@RestController
+public class BeerCacheController {
+    public static final String BEER_CACHE_STATS_PATH = BeerController.BEER_PATH + "/cache/stats";
+
+    private final BeerDtoCache beerDtoCache;
+
+    @GetMapping(BEER_CACHE_STATS_PATH)
+    public Map<String, Object> getBeerCacheStats() {
+        CacheStats stats = beerDtoCache.stats();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("estimatedSize", beerDtoCache.estimatedSize());
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        result.put("loadSuccessCount", stats.loadSuccessCount());
+        result.put("averageLoadPenaltyNanos", stats.averageLoadPenalty());
+
+        return result;
+    }
+}
@@ -1,17 +1,29 @@
 package com.springframework.spring6restmvc.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.springframework.spring6restmvc.model.BeerCursor;
 import com.springframework.spring6restmvc.model.BeerDTO;
+import com.springframework.spring6restmvc.model.BeerKeysetPage;
 import com.springframework.spring6restmvc.model.BeerStyle;
 import com.springframework.spring6restmvc.services.BeerService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.util.StringUtils;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Optional;
 import java.util.UUID;
 
 @Slf4j
@@ -21,8 +33,11 @@ public class BeerController {
     // create static constants for repeatedly used path values
     public static final String BEER_PATH = "/api/v1/beer";
     public static final String BEER_PATH_ID = BEER_PATH + "/{beerId}";
+    public static final String BEER_EXPORT_PATH = BEER_PATH + "/export";
+    public static final String APPROXIMATE_TOTAL_HEADER = "X-Total-Count-Approximate";
 
     private final BeerService beerService;
+    private final ObjectMapper objectMapper;
 
     // BECAUSE we use @RequiredArgsConstructor, we do not need to write the following constructor
 
@@ -31,13 +46,24 @@ public class BeerController {
 //    }
 
     @PatchMapping(BEER_PATH_ID)
-    public ResponseEntity patchBeerById(@PathVariable("beerId") UUID beerId, @RequestBody BeerDTO beer) {
+    public ResponseEntity patchBeerById(@PathVariable("beerId") UUID beerId, @RequestBody BeerDTO beer,
+                                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
-        if (beerService.patchBeerById(beerId, beer).isEmpty()) {
-            throw new NotFoundException();
+        BeerDTO patchedBeer;
+        try {
+            patchedBeer = beerService.patchBeerById(beerId, beer, expectedVersion(beerId, ifMatch))
+                    .orElseThrow(NotFoundException::new);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            throw new PreconditionFailedException();
         }
 
-        return new ResponseEntity(HttpStatus.NO_CONTENT);
+        // the new version is only known for a conditional update (If-Match)
+        HttpHeaders headers = new HttpHeaders();
+        if (patchedBeer.getVersion() != null) {
+            headers.setETag(ETags.of(patchedBeer.getVersion()));
+        }
+
+        return new ResponseEntity(headers, HttpStatus.NO_CONTENT);
     }
 
     @DeleteMapping(BEER_PATH_ID)
@@ -51,13 +77,49 @@ public class BeerController {
     }
 
     @PutMapping(BEER_PATH_ID)
-    public ResponseEntity updateById(@PathVariable("beerId") UUID beerId, @Validated @RequestBody BeerDTO beer) {
+    public ResponseEntity updateById(@PathVariable("beerId") UUID beerId, @Validated @RequestBody BeerDTO beer,
+                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
-        if (beerService.updateById(beerId, beer).isEmpty()) {
-            throw new NotFoundException();
+        BeerDTO updatedBeer;
+        try {
+            updatedBeer = beerService.updateById(beerId, beer, expectedVersion(beerId, ifMatch))
+                    .orElseThrow(NotFoundException::new);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            throw new PreconditionFailedException();
         }
 
-        return new ResponseEntity(HttpStatus.NO_CONTENT);
+        // the new version is only known for a conditional update (If-Match)
+        HttpHeaders headers = new HttpHeaders();
+        if (updatedBeer.getVersion() != null) {
+            headers.setETag(ETags.of(updatedBeer.getVersion()));
+        }
+
+        return new ResponseEntity(headers, HttpStatus.NO_CONTENT);
+    }
+
+    // If-Match with a single tag: its version becomes the condition of the update statement (no read before the write).
+    // Other forms (several tags, *) are checked with a version probe first and the update is unconditional.
+    private Integer expectedVersion(UUID beerId, String ifMatch) {
+        Optional<Integer> version = ETags.singleVersion(ifMatch);
+
+        if (version.isPresent()) {
+            return version.get();
+        }
+
+        checkIfMatch(beerId, ifMatch);
+        return null;
+    }
+
+    private void checkIfMatch(UUID beerId, String ifMatch) {
+        if (ifMatch == null) {
+            return;
+        }
+
+        String currentETag = ETags.of(beerService.getBeerVersion(beerId).orElseThrow(NotFoundException::new));
+
+        if (!ETags.matchHits(ifMatch, currentETag)) {
+            throw new PreconditionFailedException();
+        }
     }
 
     @PostMapping(BEER_PATH)
@@ -75,12 +137,93 @@ public class BeerController {
     }
 
     @GetMapping(BEER_PATH)
-    public Page<BeerDTO> listBeers(@RequestParam(value = "beerName", required = false) String beerName,
-                                   @RequestParam(value = "beerStyle", required = false) BeerStyle beerStyle,
-                                   @RequestParam(value = "showInventory", required = false) Boolean showInventory,
-                                   @RequestParam(required = false) Integer pageNumber,
-                                   @RequestParam(required = false) Integer pageSize) {
-        return beerService.listBeers(beerName, beerStyle, showInventory, pageNumber, pageSize);
+    public ResponseEntity<Page<BeerDTO>> listBeers(@RequestParam(value = "beerName", required = false) String beerName,
+                                                   @RequestParam(value = "beerStyle", required = false) BeerStyle beerStyle,
+                                                   @RequestParam(value = "showInventory", required = false) Boolean showInventory,
+                                                   @RequestParam(required = false) Integer pageNumber,
+                                                   @RequestParam(required = false) Integer pageSize,
+                                                   @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+        // read the catalog version before the page: a change in between only makes the tag older, never wrong.
+        // Only a conditional request pays for the probe of writes made outside this instance
+        String etag = ETags.of(ifNoneMatch == null ? beerService.getBeerCatalogVersion() : beerService.checkBeerCatalogVersion());
+
+        if (ETags.noneMatchHits(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .body(beerService.listBeers(beerName, beerStyle, showInventory, pageNumber, pageSize));
+    }
+
+    // Count-free mode: chosen with withCount=false. A Slice only knows if there is a next page, so the COUNT(*)
+    // of the offset listing is skipped. With approximateTotal=true, the last total computed in the background
+    // is sent in a header (omitted until the first background count for that filter is done).
+    @GetMapping(value = BEER_PATH, params = {"withCount=false", "!cursor"})
+    public ResponseEntity<Slice<BeerDTO>> listBeersWithoutCount(@RequestParam(value = "beerName", required = false) String beerName,
+                                                                @RequestParam(value = "beerStyle", required = false) BeerStyle beerStyle,
+                                                                @RequestParam(value = "showInventory", required = false) Boolean showInventory,
+                                                                @RequestParam(value = "approximateTotal", required = false) Boolean approximateTotal,
+                                                                @RequestParam(required = false) Integer pageNumber,
+                                                                @RequestParam(required = false) Integer pageSize) {
+
+        Slice<BeerDTO> beerSlice = beerService.listBeersSlice(beerName, beerStyle, showInventory, pageNumber, pageSize);
+
+        HttpHeaders headers = new HttpHeaders();
+        if (approximateTotal != null && approximateTotal) {
+            beerService.getApproximateBeerCount(beerName, beerStyle)
+                    .ifPresent(total -> headers.add(APPROXIMATE_TOTAL_HEADER, total.toString()));
+        }
+
+        return new ResponseEntity<>(beerSlice, headers, HttpStatus.OK);
+    }
+
+    // Keyset mode: chosen when the 'cursor' parameter is present. Send it empty for the first page,
+    // then send the 'nextCursor' of the previous response. Deep pages cost the same as the first one.
+    @GetMapping(value = BEER_PATH, params = "cursor")
+    public BeerKeysetPage listBeersByCursor(@RequestParam(value = "beerName", required = false) String beerName,
+                                            @RequestParam(value = "beerStyle", required = false) BeerStyle beerStyle,
+                                            @RequestParam(value = "showInventory", required = false) Boolean showInventory,
+                                            @RequestParam(value = "cursor", required = false) String cursor,
+                                            @RequestParam(required = false) Integer pageSize) {
+        BeerCursor after = null;
+
+        if (StringUtils.hasText(cursor)) {
+            after = BeerCursor.decode(cursor).orElseThrow(BadRequestException::new);
+        }
+
+        return beerService.listBeersByCursor(beerName, beerStyle, showInventory, after, pageSize);
+    }
+
+    // Whole catalog as NDJSON (one beer per line), written while it is read from the database:
+    // one query, constant memory, and the client gets the first beers right away.
+    @GetMapping(value = BEER_EXPORT_PATH, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportBeers() {
+
+        StreamingResponseBody body = outputStream -> {
+            SequenceWriter writer = objectMapper.writerFor(BeerDTO.class)
+                    .withRootValueSeparator("\n")
+                    .writeValues(outputStream);
+
+            long count = beerService.exportBeers(beer -> {
+                try {
+                    writer.write(beer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            writer.flush();
+            outputStream.write('\n');
+            writer.close();
+
+            log.debug("Exported {} beers", count);
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     // 'For BeerController class', if any method throws a NotFoundException that we created
@@ -94,11 +237,23 @@ public class BeerController {
 //    }
 
     @GetMapping(BEER_PATH_ID)
-    public BeerDTO getBeerById(@PathVariable("beerId") UUID beerId) {
+    public ResponseEntity<BeerDTO> getBeerById(@PathVariable("beerId") UUID beerId,
+                                               @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 
         log.debug("Get Beer by Id - in controller...");
 
-        return beerService.getBeerById(beerId).orElseThrow(NotFoundException::new);
+        if (ifNoneMatch != null) {
+            // revalidation: only the version is read, nothing is mapped or serialized on a match
+            String currentETag = ETags.of(beerService.getBeerVersion(beerId).orElseThrow(NotFoundException::new));
+
+            if (ETags.noneMatchHits(ifNoneMatch, currentETag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(currentETag).build();
+            }
+        }
+
+        BeerDTO beer = beerService.getBeerById(beerId).orElseThrow(NotFoundException::new);
+
+        return ResponseEntity.ok().eTag(ETags.of(beer.getVersion())).body(beer);
     }
 
 }
@@ -0,0 +1,68 @@
+package com.springframework.spring6restmvc.controller;
+
+import com.springframework.spring6restmvc.model.BeerImportResultDTO;
+import com.springframework.spring6restmvc.services.BeerImportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Bulk import of beers from an uploaded file: csv (columns of csvdata/beers.csv) or ndjson (format of the export).
+@RequiredArgsConstructor
+@RestController
+public class BeerImportController {
+    public static final String BEER_IMPORT_PATH = BeerController.BEER_PATH + "/import";
+
+    private final BeerImportService beerImportService;
+
+    @PostMapping(value = BEER_IMPORT_PATH, consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<BeerImportResultDTO> importBeers(@RequestParam("file") MultipartFile file,
+                                                           @RequestParam(value = "parallel", defaultValue = "false") boolean parallel) throws IOException {
+
+        if (file.isEmpty()) {
+            throw new BadRequestException("Empty file");
+        }
+
+        if (parallel && !isNdjson(file)) {
+            return new ResponseEntity<>(importCsvParallel(file), HttpStatus.CREATED);
+        }
+
+        try (Reader reader = new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8)) {
+            BeerImportResultDTO result = isNdjson(file)
+                    ? beerImportService.importNdjson(reader)
+                    : beerImportService.importCsv(reader);
+
+            return new ResponseEntity<>(result, HttpStatus.CREATED);
+        }
+    }
+
+    // the parallel parser splits by file offsets, so the upload has to be on disk first
+    private BeerImportResultDTO importCsvParallel(MultipartFile file) throws IOException {
+        Path tempFile = Files.createTempFile("beer-import-", ".csv");
+
+        try {
+            file.transferTo(tempFile);
+            return beerImportService.importCsvParallel(tempFile.toFile());
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private boolean isNdjson(MultipartFile file) {
+        String filename = file.getOriginalFilename();
+
+        return MediaType.APPLICATION_NDJSON_VALUE.equals(file.getContentType())
+                || (filename != null && (filename.endsWith(".ndjson") || filename.endsWith(".jsonl")));
+    }
+}
@@ -0,0 +1,38 @@
+package com.springframework.spring6restmvc.controller;
+
+import com.springframework.spring6restmvc.model.BeerInventoryDeltaDTO;
+import com.springframework.spring6restmvc.services.BeerInventoryService;
+import com.springframework.spring6restmvc.services.BeerService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.UUID;
+
+// Stock movements (+/- deltas) instead of absolute quantities: concurrent movements never overwrite each other.
+// They are applied in the background (beer.inventory.flush-ms), so the answer is 202 ACCEPTED.
+@RequiredArgsConstructor
+@RestController
+public class BeerInventoryController {
+    public static final String BEER_INVENTORY_PATH = BeerController.BEER_PATH_ID + "/inventory";
+
+    private final BeerService beerService;
+    private final BeerInventoryService beerInventoryService;
+
+    @PostMapping(BEER_INVENTORY_PATH)
+    public ResponseEntity addInventoryDelta(@PathVariable("beerId") UUID beerId,
+                                            @Validated @RequestBody BeerInventoryDeltaDTO inventoryDelta) {
+
+        // served by the beer cache most of the time
+        beerService.getBeerById(beerId).orElseThrow(NotFoundException::new);
+
+        beerInventoryService.addDelta(beerId, inventoryDelta.getDelta());
+
+        return new ResponseEntity(HttpStatus.ACCEPTED);
+    }
+}
@@ -0,0 +1,42 @@
+package com.springframework.spring6restmvc.controller;
+
+import com.springframework.spring6restmvc.model.BeerOrderCreateDTO;
+import com.springframework.spring6restmvc.model.BeerOrderDTO;
+import com.springframework.spring6restmvc.services.BeerOrderService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.UUID;
+
+@RequiredArgsConstructor
+@RestController
+public class BeerOrderController {
+
+    public static final String CUSTOMER_ORDERS_PATH = CustomerController.CUSTOMER_PATH_ID + "/orders";
+
+    private final BeerOrderService beerOrderService;
+
+    @GetMapping(CUSTOMER_ORDERS_PATH)
+    public Page<BeerOrderDTO> listOrdersOfCustomer(@PathVariable("customerId") UUID customerId,
+                                                   @RequestParam(required = false) Integer pageNumber,
+                                                   @RequestParam(required = false) Integer pageSize) {
+        return beerOrderService.listOrdersOfCustomer(customerId, pageNumber, pageSize).orElseThrow(NotFoundException::new);
+    }
+
+    @PostMapping(CUSTOMER_ORDERS_PATH)
+    public ResponseEntity<BeerOrderDTO> placeOrder(@PathVariable("customerId") UUID customerId,
+                                                   @Validated @RequestBody BeerOrderCreateDTO beerOrder) {
+        BeerOrderDTO placedOrder = beerOrderService.placeOrder(customerId, beerOrder).orElseThrow(NotFoundException::new);
+
+        return new ResponseEntity<>(placedOrder, HttpStatus.CREATED);
+    }
+}
@@ -0,0 +1,25 @@
+package com.springframework.spring6restmvc.controller;
+
+import com.springframework.spring6restmvc.model.BeerStyle;
+import com.springframework.spring6restmvc.model.BeerStyleStatsDTO;
+import com.springframework.spring6restmvc.services.BeerStyleStats;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+// Per-style totals for dashboards. Served from memory (BeerStyleStats): no query, however large the catalog is.
+// Updates and deletes show up after the next refresh (beer.stats.refresh-ms).
+@RequiredArgsConstructor
+@RestController
+public class BeerStatsController {
+    public static final String BEER_STATS_PATH = BeerController.BEER_PATH + "/stats";
+
+    private final BeerStyleStats beerStyleStats;
+
+    @GetMapping(BEER_STATS_PATH)
+    public Map<BeerStyle, BeerStyleStatsDTO> getBeerStats() {
+        return beerStyleStats.getStats();
+    }
+}
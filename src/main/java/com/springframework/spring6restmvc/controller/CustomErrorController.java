@@ -1,6 +1,10 @@
 package com.springframework.spring6restmvc.controller;
 
+import com.springframework.spring6restmvc.entities.Customer;
+import com.springframework.spring6restmvc.services.UnknownBeerException;
 import jakarta.validation.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.TransactionSystemException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -9,6 +13,7 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.stream.Collectors;
 
@@ -23,22 +28,56 @@ public class CustomErrorController {
         if (exception.getCause().getCause() instanceof ConstraintViolationException) {
             ConstraintViolationException violationException = (ConstraintViolationException) exception.getCause().getCause();
 
-            List errorList = violationException.getConstraintViolations()
-                    .stream()
-                    .map(constraintViolation -> {
-                        Map<String, String> errMap = new HashMap<>();
-                        errMap.put(constraintViolation.getPropertyPath().toString(), constraintViolation.getMessage());
-                        return errMap;
-                    })
-                    .collect(Collectors.toList());
-
-            return responseEntity.body(errorList);
+            return responseEntity.body(violationList(violationException));
         }
 
         // returns BAD REQUEST response for any error except ConstraintViolation, without body
         return responseEntity.build();
     }
 
+    // thrown directly (not at commit) by writes that validate values themselves, e.g. the beer update statements
+    @ExceptionHandler
+    ResponseEntity handleConstraintViolations(ConstraintViolationException exception) {
+        return ResponseEntity.badRequest().body(violationList(exception));
+    }
+
+    // CONFLICT only if a unique index rejected the write (a second customer with the same email). Anything else
+    // the database refused (not null, length, foreign key) is a bad value in the request
+    @ExceptionHandler
+    ResponseEntity handleDataIntegrityViolations(DataIntegrityViolationException exception) {
+        String constraintName = exception.getCause() instanceof org.hibernate.exception.ConstraintViolationException violation
+                ? violation.getConstraintName() : null;
+
+        // H2 and MySQL report the index with schema/table prefixes and suffixes around its name
+        if (constraintName != null && constraintName.toLowerCase(Locale.ROOT).contains(Customer.EMAIL_INDEX)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(List.of(Map.of("email", "is already in use")));
+        }
+
+        return ResponseEntity.badRequest()
+                .body(List.of(Map.of(constraintName != null ? constraintName : "value", "is not accepted by the database")));
+    }
+
+    // an order line names a beer that does not exist: same body shape as the validation errors
+    @ExceptionHandler
+    ResponseEntity handleUnknownBeers(UnknownBeerException exception) {
+        List errorList = exception.getBeerIds().stream()
+                .map(beerId -> Map.of("beerId", beerId + " not found"))
+                .collect(Collectors.toList());
+
+        return ResponseEntity.badRequest().body(errorList);
+    }
+
+    private List violationList(ConstraintViolationException violationException) {
+        return violationException.getConstraintViolations()
+                .stream()
+                .map(constraintViolation -> {
+                    Map<String, String> errMap = new HashMap<>();
+                    errMap.put(constraintViolation.getPropertyPath().toString(), constraintViolation.getMessage());
+                    return errMap;
+                })
+                .collect(Collectors.toList());
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity handleBindingErrors(MethodArgumentNotValidException exception) {
         List errorList = exception.getFieldErrors().stream()
@@ -1,15 +1,27 @@
 package com.springframework.spring6restmvc.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.springframework.spring6restmvc.model.CustomerCursor;
 import com.springframework.spring6restmvc.model.CustomerDTO;
+import com.springframework.spring6restmvc.model.CustomerKeysetPage;
 import com.springframework.spring6restmvc.services.CustomerService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Optional;
 import java.util.UUID;
 
 @Slf4j
@@ -19,17 +31,27 @@ public class CustomerController {
     // create static constants for API paths:
     public static final String CUSTOMER_PATH = "/api/v1/customer";
     public static final String CUSTOMER_PATH_ID = CUSTOMER_PATH + "/{customerId}";
+    public static final String CUSTOMER_BY_EMAIL_PATH = CUSTOMER_PATH + "/by-email";
 
     private final CustomerService customerService;
+    private final ObjectMapper objectMapper;
 
     @PatchMapping(CUSTOMER_PATH_ID)
-    public ResponseEntity patchCustomerById(@PathVariable("customerId") UUID customerId, CustomerDTO customer) {
-
-        if (customerService.patchCustomerById(customerId, customer).isEmpty()) {
-            throw new NotFoundException();
+    public ResponseEntity patchCustomerById(@PathVariable("customerId") UUID customerId, CustomerDTO customer,
+                                            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+
+        CustomerDTO patchedCustomer;
+        try {
+            patchedCustomer = customerService.patchCustomerById(customerId, customer, expectedVersion(customerId, ifMatch))
+                    .orElseThrow(NotFoundException::new);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            throw new PreconditionFailedException();
         }
 
-        return new ResponseEntity(HttpStatus.NO_CONTENT);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(ETags.of(patchedCustomer.getVersion()));
+
+        return new ResponseEntity(headers, HttpStatus.NO_CONTENT);
     }
 
     @DeleteMapping(CUSTOMER_PATH_ID)
@@ -43,13 +65,46 @@ public class CustomerController {
     }
 
     @PutMapping(CUSTOMER_PATH_ID)
-    public ResponseEntity updateById(@PathVariable("customerId") UUID customerId, @RequestBody CustomerDTO customer) {
+    public ResponseEntity updateById(@PathVariable("customerId") UUID customerId, @RequestBody CustomerDTO customer,
+                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+
+        CustomerDTO updatedCustomer;
+        try {
+            updatedCustomer = customerService.updateById(customerId, customer, expectedVersion(customerId, ifMatch))
+                    .orElseThrow(NotFoundException::new);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            throw new PreconditionFailedException();
+        }
 
-        if (customerService.updateById(customerId, customer).isEmpty()) {
-            throw new NotFoundException();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(ETags.of(updatedCustomer.getVersion()));
+
+        return new ResponseEntity(headers, HttpStatus.NO_CONTENT);
+    }
+
+    // If-Match with a single tag: its version becomes the condition of the update, like for beers.
+    // Other forms (several tags, *) are checked with a version probe first and the update is unconditional.
+    private Integer expectedVersion(UUID customerId, String ifMatch) {
+        Optional<Integer> version = ETags.singleVersion(ifMatch);
+
+        if (version.isPresent()) {
+            return version.get();
         }
 
-        return new ResponseEntity(HttpStatus.NO_CONTENT);
+        checkIfMatch(customerId, ifMatch);
+        return null;
+    }
+
+    private void checkIfMatch(UUID customerId, String ifMatch) {
+        if (ifMatch == null) {
+            return;
+        }
+
+        String currentETag = ETags.of(customerService.getCustomerVersion(customerId).orElseThrow(NotFoundException::new));
+
+        if (!ETags.matchHits(ifMatch, currentETag)) {
+            throw new PreconditionFailedException();
+        }
     }
 
     @PostMapping(CUSTOMER_PATH)
@@ -65,20 +120,117 @@ public class CustomerController {
         return new ResponseEntity(headers, HttpStatus.CREATED);
     }
 
+    // Default mode: every customer in one JSON array, the shape this endpoint always had. The array is written
+    // while it is read from the database: one query, constant memory, and the first customers leave before the
+    // last ones are read. stream=true, which asked for this before it became the default, still lands here.
     @GetMapping(CUSTOMER_PATH)
-    public List<CustomerDTO> listCustomers() {
+    public ResponseEntity<StreamingResponseBody> listCustomers(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 
         log.debug("List All Customers- in CustomerController");
 
-        return customerService.listCustomers();
+        String etag = catalogETag(ifNoneMatch);
+
+        if (ETags.noneMatchHits(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        StreamingResponseBody body = outputStream -> {
+            // no flush per customer: the generator's buffer goes out whenever it is full
+            SequenceWriter writer = objectMapper.writerFor(CustomerDTO.class)
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                    .writeValuesAsArray(outputStream);
+
+            long count = customerService.exportCustomers(customer -> {
+                try {
+                    writer.write(customer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            writer.close();
+
+            log.debug("Streamed {} customers", count);
+        };
+
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    // Paged mode: chosen when 'pageNumber' or 'pageSize' is present (and stream=true is not).
+    // The body is a Page object rather than an array, so only clients that ask for pages get one.
+    @GetMapping(value = CUSTOMER_PATH, params = {"pageNumber", "!cursor", "stream!=true"})
+    public ResponseEntity<Page<CustomerDTO>> listCustomersPage(@RequestParam(required = false) Integer pageNumber,
+                                                               @RequestParam(required = false) Integer pageSize,
+                                                               @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+        log.debug("List Customers page- in CustomerController");
+
+        String etag = catalogETag(ifNoneMatch);
+
+        if (ETags.noneMatchHits(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        return ResponseEntity.ok().eTag(etag).body(customerService.listCustomers(pageNumber, pageSize));
+    }
+
+    @GetMapping(value = CUSTOMER_PATH, params = {"pageSize", "!pageNumber", "!cursor", "stream!=true"})
+    public ResponseEntity<Page<CustomerDTO>> listCustomersFirstPage(@RequestParam Integer pageSize,
+                                                                    @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return listCustomersPage(null, pageSize, ifNoneMatch);
+    }
+
+    // read the catalog version before the listing: a change in between only makes the tag older, never wrong.
+    // Only a conditional request pays for the probe of writes made outside this instance
+    private String catalogETag(String ifNoneMatch) {
+        return ETags.of(ifNoneMatch == null
+                ? customerService.getCustomerCatalogVersion() : customerService.checkCustomerCatalogVersion());
+    }
+
+    // Keyset mode: chosen when the 'cursor' parameter is present. Send it empty for the first page,
+    // then send the 'nextCursor' of the previous response. Deep pages cost the same as the first one.
+    @GetMapping(value = CUSTOMER_PATH, params = "cursor")
+    public CustomerKeysetPage listCustomersByCursor(@RequestParam(value = "cursor", required = false) String cursor,
+                                                    @RequestParam(required = false) Integer pageSize) {
+        CustomerCursor after = null;
+
+        if (StringUtils.hasText(cursor)) {
+            after = CustomerCursor.decode(cursor).orElseThrow(BadRequestException::new);
+        }
+
+        return customerService.listCustomersByCursor(after, pageSize);
+    }
+
+    // the email is a query parameter rather than a path segment: it is free text
+    @GetMapping(CUSTOMER_BY_EMAIL_PATH)
+    public CustomerDTO getCustomerByEmail(@RequestParam("email") String email) {
+
+        log.debug("Get Customer by email - in CustomerController");
+
+        return customerService.getCustomerByEmail(email).orElseThrow(NotFoundException::new);
     }
 
     @GetMapping(CUSTOMER_PATH_ID)
-    public CustomerDTO getCustomerById(@PathVariable("customerId") UUID id) {
+    public ResponseEntity<CustomerDTO> getCustomerById(@PathVariable("customerId") UUID id,
+                                                       @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 
         log.debug("Get Customers by Id: {}- in CustomerController", id);
 
-        return customerService.getCustomerById(id).orElseThrow(NotFoundException::new);
+        if (ifNoneMatch != null) {
+            // revalidation: only the version is read, nothing is mapped or serialized on a match
+            String currentETag = ETags.of(customerService.getCustomerVersion(id).orElseThrow(NotFoundException::new));
+
+            if (ETags.noneMatchHits(ifNoneMatch, currentETag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(currentETag).build();
+            }
+        }
+
+        CustomerDTO customer = customerService.getCustomerById(id).orElseThrow(NotFoundException::new);
+
+        return ResponseEntity.ok().eTag(ETags.of(customer.getVersion())).body(customer);
     }
 
 }
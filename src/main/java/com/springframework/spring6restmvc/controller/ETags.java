@@ -0,0 +1,70 @@
+package com.springframework.spring6restmvc.controller;
+
+import java.util.Optional;
+
+// Entity tags built from @Version values (single resources) or catalog versions (list pages).
+// A tag is only compared with tags of the same URL, so the version alone is enough.
+final class ETags {
+
+    private ETags() {
+    }
+
+    static String of(Object version) {
+        return "\"" + version + "\"";
+    }
+
+    // the version of an If-Match header holding exactly one strong tag ("3"), empty otherwise
+    static Optional<Integer> singleVersion(String ifMatch) {
+        if (ifMatch == null) {
+            return Optional.empty();
+        }
+
+        String tag = ifMatch.trim();
+        if (tag.length() < 3 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.of(Integer.valueOf(tag.substring(1, tag.length() - 1)));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    // If-None-Match uses the weak comparison: W/"3" matches "3"
+    static boolean noneMatchHits(String ifNoneMatch, String etag) {
+        return matches(ifNoneMatch, etag, true);
+    }
+
+    // If-Match uses the strong comparison: weak tags never match
+    static boolean matchHits(String ifMatch, String etag) {
+        return matches(ifMatch, etag, false);
+    }
+
+    private static boolean matches(String header, String etag, boolean weakComparison) {
+        if (header == null || header.isBlank()) {
+            return false;
+        }
+
+        if (header.trim().equals("*")) {
+            return true;
+        }
+
+        for (String tag : header.split(",")) {
+            String candidate = tag.trim();
+
+            if (candidate.startsWith("W/")) {
+                if (!weakComparison) {
+                    continue;
+                }
+                candidate = candidate.substring(2);
+            }
+
+            if (candidate.equals(etag)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
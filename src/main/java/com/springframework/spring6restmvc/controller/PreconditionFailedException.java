@@ -0,0 +1,28 @@
+package com.springframework.spring6restmvc.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.PRECONDITION_FAILED, reason = "Resource was modified.")
+public class PreconditionFailedException extends RuntimeException {
+    // constructors
+    public PreconditionFailedException() {
+        super();
+    }
+
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+
+    public PreconditionFailedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public PreconditionFailedException(Throwable cause) {
+        super(cause);
+    }
+
+    protected PreconditionFailedException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+}
@@ -10,7 +10,6 @@ import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.annotations.UpdateTimestamp;
-import org.hibernate.type.SqlTypes;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -28,9 +27,9 @@ import java.util.UUID;
 public class Beer {
     @Id
     @GeneratedValue(generator = "UUID") // I will use a generator called UUID
-    @GenericGenerator(name = "UUID", type = org.hibernate.id.UUIDGenerator.class) // Here is that UUID
-    @JdbcTypeCode(SqlTypes.CHAR) // fix: hibernate perceives it as binary. Tell this is a char
-    @Column(length = 36, columnDefinition = "varchar(36)", updatable = false, nullable = false)
+    @GenericGenerator(name = "UUID", type = TimeOrderedUuidGenerator.class) // Here is that UUID
+    @JdbcTypeCode(UuidIdTypeContributor.UUID_ID) // varchar(36), or binary(16) with spring6restmvc.id.binary
+    @Column(updatable = false, nullable = false)
     private UUID id;
     @Version
     private Integer version;
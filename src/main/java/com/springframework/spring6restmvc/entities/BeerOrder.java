@@ -2,11 +2,11 @@ package com.springframework.spring6restmvc.entities;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.Hibernate;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.annotations.UpdateTimestamp;
-import org.hibernate.type.SqlTypes;
 
 import java.sql.Timestamp;
 import java.util.Set;
@@ -32,9 +32,9 @@ public class BeerOrder {
 
     @Id
     @GeneratedValue(generator = "UUID")
-    @GenericGenerator(name = "UUID", type = org.hibernate.id.UUIDGenerator.class)
-    @JdbcTypeCode(SqlTypes.CHAR)
-    @Column(length = 36, columnDefinition = "varchar(36)", updatable = false, nullable = false)
+    @GenericGenerator(name = "UUID", type = TimeOrderedUuidGenerator.class)
+    @JdbcTypeCode(UuidIdTypeContributor.UUID_ID) // varchar(36), or binary(16) with spring6restmvc.id.binary
+    @Column(updatable = false, nullable = false)
     private UUID id;
 
     @Version
@@ -55,10 +55,13 @@ public class BeerOrder {
     public void setCustomer(Customer customer) {
         // establish bidirectional relation
         this.customer = customer; // customer of this order
-        customer.getBeerOrders().add(this); // this order of the customer
+        // this order of the customer. Only if the orders are loaded already: placing an order must not read them all
+        if (Hibernate.isInitialized(customer.getBeerOrders())) {
+            customer.getBeerOrders().add(this);
+        }
     }
 
-    @OneToMany(mappedBy = "beerOrder")
+    @OneToMany(mappedBy = "beerOrder", cascade = CascadeType.PERSIST) // lines are inserted with their order
     private Set<BeerOrderLine> beerOrderLines;
 
     @OneToOne(cascade = CascadeType.PERSIST) // when save or delete BeerOrder, do the required changes in BeerOrderShipment table too.
@@ -66,7 +69,9 @@ public class BeerOrder {
 
     public void setBeerOrderShipment(BeerOrderShipment beerOrderShipment) {
         this.beerOrderShipment = beerOrderShipment;
-        beerOrderShipment.setBeerOrder(this);
+        if (beerOrderShipment != null) { // not shipped yet
+            beerOrderShipment.setBeerOrder(this);
+        }
     }
 
     public boolean isNew() {
@@ -6,7 +6,6 @@ import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.annotations.UpdateTimestamp;
-import org.hibernate.type.SqlTypes;
 
 import java.sql.Timestamp;
 import java.util.UUID;
@@ -20,9 +19,9 @@ import java.util.UUID;
 public class BeerOrderShipment {
     @Id
     @GeneratedValue(generator = "UUID")
-    @GenericGenerator(name = "UUID", type = org.hibernate.id.UUIDGenerator.class)
-    @JdbcTypeCode(SqlTypes.CHAR)
-    @Column(length = 36, columnDefinition = "varchar(36)", updatable = false, nullable = false )
+    @GenericGenerator(name = "UUID", type = TimeOrderedUuidGenerator.class)
+    @JdbcTypeCode(UuidIdTypeContributor.UUID_ID) // varchar(36), or binary(16) with spring6restmvc.id.binary
+    @Column(updatable = false, nullable = false)
     private UUID id;
 
     @Version
@@ -2,12 +2,14 @@ package com.springframework.spring6restmvc.entities;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.JdbcTypeCode;
-import org.hibernate.type.SqlTypes;
+import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
 import java.util.HashSet;
+import java.util.Locale;
 import java.util.Set;
 import java.util.UUID;
 
@@ -18,24 +20,49 @@ import java.util.UUID;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity // make it a jpa entity
+@Table(uniqueConstraints = @UniqueConstraint(name = Customer.EMAIL_INDEX, columnNames = "email"))
 public class Customer {
+
+    // same name as the index of the migration (V8), so a duplicate email is recognized on H2 and MySQL alike
+    public static final String EMAIL_INDEX = "customer_email_idx";
+
     @Id
     @GeneratedValue(generator = "UUID") // I will use a generator called UUID
-    @GenericGenerator(name = "UUID", type = org.hibernate.id.UUIDGenerator.class) // Here is that UUID
-    @JdbcTypeCode(SqlTypes.CHAR) // fix: hibernate perceives it as binary. Tell this is a char
-    @Column(length = 36, columnDefinition = "varchar(36)", updatable = false, nullable = false)
+    @GenericGenerator(name = "UUID", type = TimeOrderedUuidGenerator.class) // Here is that UUID
+    @JdbcTypeCode(UuidIdTypeContributor.UUID_ID) // varchar(36), or binary(16) with spring6restmvc.id.binary
+    @Column(updatable = false, nullable = false)
     private UUID id;
     private String name;
 
     @Version // at the beginning it is 0. After every change, it is incremented by 1
     private Integer version;
 
+    // stored trimmed and in lower case, so the unique index (V8) holds one address in any letter case
+    // and lookups compare it as is
     @Column(length = 255)
     private String email;
+    @CreationTimestamp
     private LocalDateTime createdDate;
+    // moves with every write: CatalogVersions probes its maximum
+    @UpdateTimestamp
     private LocalDateTime lastModifiedDate;
 
     @Builder.Default // builder creates a null set but here we initialized it. So, we say 'use my code as default'
     @OneToMany(mappedBy = "customer") // customer here is a property in the target entity. (BeerOrder must have a property called customer)
     private Set<BeerOrder> beerOrders = new HashSet<>();
+
+    public void setEmail(String email) {
+        this.email = normalizeEmail(email);
+    }
+
+    // the builder does not go through the setter
+    @PrePersist
+    @PreUpdate
+    void normalizeEmailColumn() {
+        email = normalizeEmail(email);
+    }
+
+    public static String normalizeEmail(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
 }
@@ -0,0 +1,65 @@
+package com.springframework.spring6restmvc.entities;
+
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.config.spi.StandardConverters;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.security.SecureRandom;
+import java.util.Properties;
+import java.util.UUID;
+
+// Id generator of all entities. By default it generates random (version 4) UUIDs like org.hibernate.id.UUIDGenerator.
+// With spring6restmvc.id.time-ordered=true (see application-uuidv7.properties) it generates version 7 UUIDs:
+// the first 48 bits are the unix time in ms, so new rows are appended at the end of the primary key index
+// instead of being inserted at random places.
+public class TimeOrderedUuidGenerator implements IdentifierGenerator {
+
+    public static final String TIME_ORDERED_SETTING = "spring6restmvc.id.time-ordered";
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static long lastMillis;
+    private static int sequence;
+
+    private boolean timeOrdered;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) {
+        timeOrdered = serviceRegistry.getService(ConfigurationService.class)
+                .getSetting(TIME_ORDERED_SETTING, StandardConverters.BOOLEAN, false);
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        return timeOrdered ? timeOrderedUuid() : UUID.randomUUID();
+    }
+
+    // RFC 9562 version 7: 48 bits unix ms | version | 12 bits counter | variant | 62 random bits.
+    // The counter keeps ids generated in the same millisecond in order.
+    public static UUID timeOrderedUuid() {
+        long leastSigBits = (RANDOM.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+
+        long millis;
+        int counter;
+        synchronized (TimeOrderedUuidGenerator.class) {
+            long now = System.currentTimeMillis();
+            if (now > lastMillis) {
+                lastMillis = now;
+                sequence = RANDOM.nextInt(1 << 11); // random start, leaves room to count up
+            } else if (++sequence > 0xFFF) {
+                // more than a few thousand ids in one ms (or the clock went back): borrow the next millisecond
+                lastMillis++;
+                sequence = 0;
+            }
+            millis = lastMillis;
+            counter = sequence;
+        }
+
+        long mostSigBits = (millis << 16) | 0x7000 | counter;
+
+        return new UUID(mostSigBits, leastSigBits);
+    }
+}
@@ -0,0 +1,30 @@
+package com.springframework.spring6restmvc.entities;
+
+import org.hibernate.boot.model.TypeContributions;
+import org.hibernate.boot.model.TypeContributor;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.config.spi.StandardConverters;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.descriptor.jdbc.BinaryJdbcType;
+import org.hibernate.type.descriptor.jdbc.VarcharJdbcType;
+
+// Column type of the UUID ids (and of the FKs, which follow the id they reference). Every entity maps its id with
+// @JdbcTypeCode(UUID_ID); this contributor decides what that code stands for: varchar(36) by default, binary(16)
+// with spring6restmvc.id.binary=true (see application-uuidv7.properties). The plain JDBC writes read the same setting.
+// Registered in META-INF/services, so the code is known before the entities are bound.
+public class UuidIdTypeContributor implements TypeContributor {
+
+    public static final String BINARY_SETTING = "spring6restmvc.id.binary";
+
+    // not a java.sql.Types or SqlTypes code
+    public static final int UUID_ID = 9036;
+
+    @Override
+    public void contribute(TypeContributions typeContributions, ServiceRegistry serviceRegistry) {
+        boolean binary = serviceRegistry.getService(ConfigurationService.class)
+                .getSetting(BINARY_SETTING, StandardConverters.BOOLEAN, false);
+
+        typeContributions.getTypeConfiguration().getJdbcTypeRegistry()
+                .addDescriptor(UUID_ID, binary ? BinaryJdbcType.INSTANCE : VarcharJdbcType.INSTANCE);
+    }
+}
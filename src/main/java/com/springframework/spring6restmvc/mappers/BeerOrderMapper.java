@@ -0,0 +1,32 @@
+package com.springframework.spring6restmvc.mappers;
+
+import com.springframework.spring6restmvc.entities.BeerOrder;
+import com.springframework.spring6restmvc.entities.BeerOrderLine;
+import com.springframework.spring6restmvc.entities.BeerOrderShipment;
+import com.springframework.spring6restmvc.model.BeerOrderDTO;
+import com.springframework.spring6restmvc.model.BeerOrderLineDTO;
+import com.springframework.spring6restmvc.model.BeerOrderShipmentDTO;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+// Entity -> DTO only. Reads the lines, their beers and the shipment: load them together
+// (BeerOrderRepository.findWithLinesAndShipmentByIdIn), or every order and line costs its own queries.
+@Mapper//(componentModel = "spring")
+public interface BeerOrderMapper {
+
+    @Mapping(target = "customerId", source = "customer.id")
+    BeerOrderDTO beerOrderToBeerOrderDto(BeerOrder beerOrder);
+
+    @Mapping(target = "beerId", source = "beer.id")
+    @Mapping(target = "beerName", source = "beer.beerName")
+    BeerOrderLineDTO beerOrderLineToBeerOrderLineDto(BeerOrderLine beerOrderLine);
+
+    BeerOrderShipmentDTO beerOrderShipmentToBeerOrderShipmentDto(BeerOrderShipment beerOrderShipment);
+
+    default LocalDateTime timestampToLocalDateTime(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toLocalDateTime();
+    }
+}
@@ -0,0 +1,50 @@
+package com.springframework.spring6restmvc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+
+// Position of the last beer of a keyset page: (beerName, beerStyle, id) is the sort key of the listing.
+// Clients only see it as an opaque continuation token.
+@Builder
+@Data
+@AllArgsConstructor
+public class BeerCursor {
+    private static final String SEPARATOR = "|";
+
+    private String beerName;
+    private BeerStyle beerStyle;
+    private UUID id;
+
+    public static BeerCursor of(BeerDTO beer) {
+        return new BeerCursor(beer.getBeerName(), beer.getBeerStyle(), beer.getId());
+    }
+
+    public String encode() {
+        // the name goes last: it is the only part that may contain the separator
+        String raw = beerStyle.name() + SEPARATOR + id + SEPARATOR + beerName;
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // empty if the token was not produced by encode()
+    public static Optional<BeerCursor> decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\" + SEPARATOR, 3);
+
+            if (parts.length != 3) {
+                return Optional.empty();
+            }
+
+            return Optional.of(new BeerCursor(parts[2], BeerStyle.valueOf(parts[0]), UUID.fromString(parts[1])));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.springframework.spring6restmvc.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Builder
+@Data
+public class BeerImportResultDTO {
+    private long rows;
+    private int batchSize;
+    private long elapsedMillis;
+    private long rowsPerSecond;
+}
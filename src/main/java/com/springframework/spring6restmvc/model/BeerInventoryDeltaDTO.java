@@ -0,0 +1,17 @@
+package com.springframework.spring6restmvc.model;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// a stock movement: positive when beers come in, negative when they go out
+@Builder
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BeerInventoryDeltaDTO {
+    @NotNull
+    private Integer delta;
+}
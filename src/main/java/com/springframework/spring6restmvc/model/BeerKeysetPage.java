@@ -0,0 +1,15 @@
+package com.springframework.spring6restmvc.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+// One page of a keyset (cursor) listing. nextCursor is null on the last page.
+@Builder
+@Data
+public class BeerKeysetPage {
+    private List<BeerDTO> content;
+    private int size;
+    private String nextCursor;
+}
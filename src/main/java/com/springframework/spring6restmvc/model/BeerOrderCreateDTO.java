@@ -0,0 +1,23 @@
+package com.springframework.spring6restmvc.model;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// body of an order placement
+@Builder
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BeerOrderCreateDTO {
+    private String customerRef;
+
+    @Valid
+    @NotEmpty
+    private List<BeerOrderLineCreateDTO> beerOrderLines;
+}
@@ -0,0 +1,25 @@
+package com.springframework.spring6restmvc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Builder
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BeerOrderDTO {
+    private UUID id;
+    private Long version;
+    private UUID customerId;
+    private String customerRef;
+    private List<BeerOrderLineDTO> beerOrderLines;
+    private BeerOrderShipmentDTO beerOrderShipment;
+    private LocalDateTime createdDate;
+    private LocalDateTime lastModifiedDate;
+}
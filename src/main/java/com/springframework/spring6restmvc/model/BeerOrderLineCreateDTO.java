@@ -0,0 +1,23 @@
+package com.springframework.spring6restmvc.model;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Builder
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BeerOrderLineCreateDTO {
+    @NotNull
+    private UUID beerId;
+
+    @NotNull
+    @Positive
+    private Integer orderQuantity;
+}
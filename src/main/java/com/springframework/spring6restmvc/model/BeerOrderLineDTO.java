@@ -0,0 +1,21 @@
+package com.springframework.spring6restmvc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Builder
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BeerOrderLineDTO {
+    private UUID id;
+    private Long version;
+    private UUID beerId;
+    private String beerName;
+    private Integer orderQuantity;
+    private Integer quantityAllocated;
+}
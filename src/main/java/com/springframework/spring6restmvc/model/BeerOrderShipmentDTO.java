@@ -0,0 +1,17 @@
+package com.springframework.spring6restmvc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Builder
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BeerOrderShipmentDTO {
+    private UUID id;
+    private String trackingNumber;
+}
@@ -0,0 +1,14 @@
+package com.springframework.spring6restmvc.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+// counts[i]: number of beers priced in [i * bucketWidth, (i + 1) * bucketWidth), the last bucket also holds the ones above
+@Builder
+@Data
+public class BeerPriceHistogramDTO {
+    private BigDecimal bucketWidth;
+    private long[] counts;
+}
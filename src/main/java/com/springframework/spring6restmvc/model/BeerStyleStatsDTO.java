@@ -0,0 +1,17 @@
+package com.springframework.spring6restmvc.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+// totals of the beers of one style. The prices are null when there is no beer of the style.
+@Builder
+@Data
+public class BeerStyleStatsDTO {
+    private long count;
+    private long quantityOnHand;
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+    private BigDecimal averagePrice;
+}
@@ -0,0 +1,46 @@
+package com.springframework.spring6restmvc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+
+// Position of the last customer of a keyset page: (name, id) is the sort key of the listing.
+// Clients only see it as an opaque continuation token.
+@Builder
+@Data
+@AllArgsConstructor
+public class CustomerCursor {
+    private static final String SEPARATOR = "|";
+
+    // may be null: customers without a name come first
+    private String name;
+    private UUID id;
+
+    public static CustomerCursor of(CustomerDTO customer) {
+        return new CustomerCursor(customer.getName(), customer.getId());
+    }
+
+    public String encode() {
+        // no separator at all for a null name, so it stays different from an empty one
+        String raw = name == null ? id.toString() : id + SEPARATOR + name;
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // empty if the token was not produced by encode()
+    public static Optional<CustomerCursor> decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\" + SEPARATOR, 2);
+
+            return Optional.of(new CustomerCursor(parts.length == 2 ? parts[1] : null, UUID.fromString(parts[0])));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+}
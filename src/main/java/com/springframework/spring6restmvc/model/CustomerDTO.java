@@ -1,5 +1,6 @@
 package com.springframework.spring6restmvc.model;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 
@@ -8,9 +9,11 @@ import java.util.UUID;
 
 @Builder
 @Data
+@AllArgsConstructor // used by the JPQL constructor expressions in CustomerRepository (argument order = field order)
 public class CustomerDTO {
     private UUID id;
     private String name;
+    private String email;
     private Integer version;
     private LocalDateTime createdDate;
     private LocalDateTime lastModifiedDate;
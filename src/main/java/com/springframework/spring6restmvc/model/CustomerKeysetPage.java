@@ -0,0 +1,15 @@
+package com.springframework.spring6restmvc.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+// One page of a keyset (cursor) listing of customers. nextCursor is null on the last page.
+@Builder
+@Data
+public class CustomerKeysetPage {
+    private List<CustomerDTO> content;
+    private int size;
+    private String nextCursor;
+}
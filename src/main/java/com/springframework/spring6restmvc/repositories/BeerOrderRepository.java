@@ -1,9 +1,34 @@
 package com.springframework.spring6restmvc.repositories;
 
 import com.springframework.spring6restmvc.entities.BeerOrder;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 public interface BeerOrderRepository extends JpaRepository<BeerOrder, UUID> {
+
+    // Order history, step 1: the ids of one page of a customer's orders.
+    // The page is cut on the plain order rows: a LIMIT over a fetch join of the lines would cut lines, not orders
+    // (Hibernate then pages in memory instead, HHH90003004).
+    @Query(value = "select o.id from BeerOrder o where o.customer.id = :customerId",
+            countQuery = "select count(o) from BeerOrder o where o.customer.id = :customerId")
+    Page<UUID> findIdsByCustomerId(@Param("customerId") UUID customerId, Pageable pageable);
+
+    // Step 2: those orders with their lines, the beers of the lines and the shipment, in one statement.
+    // No particular order: the caller puts them back in the order of the ids.
+    @EntityGraph(attributePaths = {"beerOrderLines", "beerOrderLines.beer", "beerOrderShipment"})
+    @Query("select o from BeerOrder o where o.id in :ids")
+    List<BeerOrder> findWithLinesAndShipmentByIdIn(@Param("ids") Collection<UUID> ids);
+
+    // [line id, beer id, quantityAllocated] of the lines whose reserved stock is not written to the beers yet
+    // (see StockReservations), replayed on startup
+    @Query("select l.id, l.beer.id, l.quantityAllocated from BeerOrderLine l where l.stockApplied = false")
+    List<Object[]> findStockNotAppliedLines();
 }
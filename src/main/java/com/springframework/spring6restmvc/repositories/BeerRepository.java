@@ -1,17 +1,204 @@
 package com.springframework.spring6restmvc.repositories;
 
 import com.springframework.spring6restmvc.entities.Beer;
+import com.springframework.spring6restmvc.model.BeerDTO;
 import com.springframework.spring6restmvc.model.BeerStyle;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 // CrudRepository could be extended, but JpaRepository already extends it. Besides Jpa repository provides jpa-specific methods: flushing JPA session etc.
 public interface BeerRepository extends JpaRepository<Beer, UUID> {
 
-    Page<Beer> findAllByBeerNameIsLikeIgnoreCase(String beerName, Pageable pageable);
+    // Keyset (seek) listing: same order as the offset listing (id is the tie-breaker), so every row has a unique position.
+    // Null filters are ignored. The order is the one of the beer_name_style_idx index (V6).
+    String KEYSET_FILTER = "(:beerName is null or lower(b.beerName) like lower(:beerName))"
+            + " and (:beerStyle is null or b.beerStyle = :beerStyle)";
+    String KEYSET_ORDER = " order by b.beerName asc, b.beerStyle desc, b.id asc";
+
+    // Listing projection: only the BeerDTO columns are selected, straight into DTOs.
+    // No entity is hydrated, so nothing enters the persistence context and no mapping is needed.
+    String BEER_DTO_SELECT = "select new com.springframework.spring6restmvc.model.BeerDTO("
+            + "b.id, b.version, b.beerName, b.beerStyle, b.upc, b.quantityOnHand, b.price, b.createdDate, b.updateDate)"
+            + " from Beer b";
+    String BEER_COUNT = "select count(b) from Beer b";
+    // lower(b.beerName) everywhere: it is the expression of the beer_name_lower_idx functional index (V6)
+    String NAME_LIKE = " lower(b.beerName) like lower(:beerName)";
+    String STYLE_IS = " b.beerStyle = :beerStyle";
+    String ID_IN = " b.id in :ids";
+
+    // probe of CatalogVersions for writes made elsewhere: one end of the beer_update_date_idx index (V11)
+    @Query("select max(b.updateDate) from Beer b")
+    Optional<LocalDateTime> findLastUpdateDate();
+
+    @Query(value = "select b from Beer b where" + NAME_LIKE, countQuery = BEER_COUNT + " where" + NAME_LIKE)
+    Page<Beer> findAllByBeerNameIsLikeIgnoreCase(@Param("beerName") String beerName, Pageable pageable);
     Page<Beer> findAllByBeerStyle(BeerStyle beerStyle, Pageable pageable);
-    Page<Beer> findAllByBeerNameIsLikeIgnoreCaseAndBeerStyle(String beerName, BeerStyle beerStyle, Pageable pageable);
+    @Query(value = "select b from Beer b where" + NAME_LIKE + " and" + STYLE_IS,
+            countQuery = BEER_COUNT + " where" + NAME_LIKE + " and" + STYLE_IS)
+    Page<Beer> findAllByBeerNameIsLikeIgnoreCaseAndBeerStyle(@Param("beerName") String beerName,
+                                                             @Param("beerStyle") BeerStyle beerStyle, Pageable pageable);
+
+    // Whole catalog in one query for the export. Rows come from the driver in chunks of the fetch size
+    // (MySQL needs useCursorFetch=true for that) and the entities are read-only: no dirty-checking snapshots.
+    // Must be consumed inside a transaction and closed.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("select b from Beer b")
+    Stream<Beer> streamAll();
+
+    // version probe for conditional requests: no entity is loaded
+    @Query("select b.version from Beer b where b.id = :id")
+    Optional<Integer> findVersionById(@Param("id") UUID id);
+
+    // [beerStyle, price, quantityOnHand] before an update of the stats columns, for BeerStyleStats to take them out.
+    // Locked until the transaction ends: the update locks the row anyway, and no other writer can change it in between
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b.beerStyle, b.price, b.quantityOnHand from Beer b where b.id = :id")
+    List<Object[]> findStatsColumnsByIdForUpdate(@Param("id") UUID id);
+
+    // Single-statement writes: no SELECT before the UPDATE, the version is checked and bumped by the statement itself.
+    // A null expectedVersion updates whatever the current version is. Returns the number of updated rows (0 or 1).
+    // The persistence context is flushed before and cleared after, so nothing stale is read back in the same transaction.
+    String VERSION_CHECK = " where b.id = :id and (:expectedVersion is null or b.version = :expectedVersion)";
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Beer b set b.beerName = :beerName, b.beerStyle = :beerStyle, b.upc = :upc, b.price = :price,"
+            + " b.version = b.version + 1, b.updateDate = :updateDate" + VERSION_CHECK)
+    int updateBeer(@Param("id") UUID id,
+                   @Param("expectedVersion") Integer expectedVersion,
+                   @Param("beerName") String beerName,
+                   @Param("beerStyle") BeerStyle beerStyle,
+                   @Param("upc") String upc,
+                   @Param("price") BigDecimal price,
+                   @Param("updateDate") LocalDateTime updateDate);
+
+    // null arguments keep the current value
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Beer b set b.beerName = coalesce(:beerName, b.beerName), b.beerStyle = coalesce(:beerStyle, b.beerStyle),"
+            + " b.upc = coalesce(:upc, b.upc), b.quantityOnHand = coalesce(:quantityOnHand, b.quantityOnHand),"
+            + " b.price = coalesce(:price, b.price), b.version = b.version + 1, b.updateDate = :updateDate" + VERSION_CHECK)
+    int patchBeer(@Param("id") UUID id,
+                  @Param("expectedVersion") Integer expectedVersion,
+                  @Param("beerName") String beerName,
+                  @Param("beerStyle") BeerStyle beerStyle,
+                  @Param("upc") String upc,
+                  @Param("quantityOnHand") Integer quantityOnHand,
+                  @Param("price") BigDecimal price,
+                  @Param("updateDate") LocalDateTime updateDate);
+
+    // [id, quantityOnHand] of every beer (null quantities as 0), loaded by StockReservations on startup
+    @Query("select b.id, coalesce(b.quantityOnHand, 0) from Beer b")
+    List<Object[]> findAllStock();
+
+    @Query("select coalesce(b.quantityOnHand, 0) from Beer b where b.id = :id")
+    Optional<Integer> findQuantityOnHandById(@Param("id") UUID id);
+
+    @Query(value = BEER_DTO_SELECT, countQuery = BEER_COUNT)
+    Page<BeerDTO> findAllBeerDtos(Pageable pageable);
+
+    @Query(value = BEER_DTO_SELECT + " where" + NAME_LIKE, countQuery = BEER_COUNT + " where" + NAME_LIKE)
+    Page<BeerDTO> findBeerDtosByBeerNameLike(@Param("beerName") String beerName, Pageable pageable);
+
+    @Query(value = BEER_DTO_SELECT + " where" + STYLE_IS, countQuery = BEER_COUNT + " where" + STYLE_IS)
+    Page<BeerDTO> findBeerDtosByBeerStyle(@Param("beerStyle") BeerStyle beerStyle, Pageable pageable);
+
+    @Query(value = BEER_DTO_SELECT + " where" + NAME_LIKE + " and" + STYLE_IS,
+            countQuery = BEER_COUNT + " where" + NAME_LIKE + " and" + STYLE_IS)
+    Page<BeerDTO> findBeerDtosByBeerNameLikeAndBeerStyle(@Param("beerName") String beerName,
+                                                          @Param("beerStyle") BeerStyle beerStyle,
+                                                          Pageable pageable);
+
+    // used with the ids resolved by the in-memory name index
+    @Query(value = BEER_DTO_SELECT + " where" + ID_IN, countQuery = BEER_COUNT + " where" + ID_IN)
+    Page<BeerDTO> findBeerDtosByIdIn(@Param("ids") Collection<UUID> ids, Pageable pageable);
+
+    @Query(value = BEER_DTO_SELECT + " where" + ID_IN + " and" + STYLE_IS,
+            countQuery = BEER_COUNT + " where" + ID_IN + " and" + STYLE_IS)
+    Page<BeerDTO> findBeerDtosByIdInAndBeerStyle(@Param("ids") Collection<UUID> ids,
+                                                 @Param("beerStyle") BeerStyle beerStyle,
+                                                 Pageable pageable);
+
+    // [id, beerName] of every beer, to build the name index
+    @Query("select b.id, b.beerName from Beer b")
+    List<Object[]> findAllIdsAndNames();
+
+    // [beerStyle, count, sum(quantityOnHand), min(price), max(price), sum(price)] per style, for BeerStyleStats
+    @Query("select b.beerStyle, count(b), coalesce(sum(b.quantityOnHand), 0), min(b.price), max(b.price), sum(b.price)"
+            + " from Beer b group by b.beerStyle")
+    List<Object[]> findStyleTotals();
+
+    // [id, beerStyle] of the given beers, for BeerStyleStats to apply stock movements to their style
+    @Query("select b.id, b.beerStyle from Beer b where b.id in :ids")
+    List<Object[]> findStylesByIdIn(@Param("ids") Collection<UUID> ids);
+
+    // [id, beerStyle, price, quantityOnHand] rows of the analytics snapshot: scalars only, no entity is hydrated
+    String ANALYTICS_SELECT = "select b.id, b.beerStyle, b.price, b.quantityOnHand from Beer b";
+
+    // whole catalog, in chunks of the fetch size like streamAll. Must be consumed inside a transaction and closed.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(ANALYTICS_SELECT)
+    Stream<Object[]> streamAnalyticsRows();
+
+    @Query(ANALYTICS_SELECT + " where" + ID_IN)
+    List<Object[]> findAnalyticsRowsByIdIn(@Param("ids") Collection<UUID> ids);
+
+    // Slice variants of the listing queries: they fetch pageSize + 1 rows to know if there is a next page
+    // and never run the COUNT(*) query a Page needs.
+    @Query("select b from Beer b")
+    Slice<Beer> findAllSliced(Pageable pageable);
+    @Query("select b from Beer b where" + NAME_LIKE)
+    Slice<Beer> findSliceByBeerNameIsLikeIgnoreCase(@Param("beerName") String beerName, Pageable pageable);
+    Slice<Beer> findSliceByBeerStyle(BeerStyle beerStyle, Pageable pageable);
+    @Query("select b from Beer b where" + NAME_LIKE + " and" + STYLE_IS)
+    Slice<Beer> findSliceByBeerNameIsLikeIgnoreCaseAndBeerStyle(@Param("beerName") String beerName,
+                                                                @Param("beerStyle") BeerStyle beerStyle,
+                                                                Pageable pageable);
+
+    // used by the background refresh of approximate totals
+    @Query(BEER_COUNT + " where" + NAME_LIKE)
+    long countByBeerNameIsLikeIgnoreCase(@Param("beerName") String beerName);
+    long countByBeerStyle(BeerStyle beerStyle);
+    @Query(BEER_COUNT + " where" + NAME_LIKE + " and" + STYLE_IS)
+    long countByBeerNameIsLikeIgnoreCaseAndBeerStyle(@Param("beerName") String beerName,
+                                                     @Param("beerStyle") BeerStyle beerStyle);
+
+    // Returning a List (not a Page) means no count query. The pageable is only used as a LIMIT.
+    @Query("select b from Beer b where " + KEYSET_FILTER + KEYSET_ORDER)
+    List<Beer> findKeysetFirstPage(@Param("beerName") String beerName,
+                                   @Param("beerStyle") BeerStyle beerStyle,
+                                   Pageable limit);
+
+    // Seeks to the rows after the given position instead of skipping OFFSET rows.
+    @Query("select b from Beer b where " + KEYSET_FILTER
+            + " and (b.beerName > :afterName"
+            + " or (b.beerName = :afterName and b.beerStyle < :afterStyle)"
+            + " or (b.beerName = :afterName and b.beerStyle = :afterStyle and b.id > :afterId))"
+            + KEYSET_ORDER)
+    List<Beer> findKeysetPageAfter(@Param("beerName") String beerName,
+                                   @Param("beerStyle") BeerStyle beerStyle,
+                                   @Param("afterName") String afterName,
+                                   @Param("afterStyle") BeerStyle afterStyle,
+                                   @Param("afterId") UUID afterId,
+                                   Pageable limit);
 }
@@ -1,10 +1,63 @@
 package com.springframework.spring6restmvc.repositories;
 
 import com.springframework.spring6restmvc.entities.Customer;
+import com.springframework.spring6restmvc.model.CustomerDTO;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 // CrudRepository could be extended, but JpaRepository already extends it. Besides Jpa repository provides jpa-specific methods: flushing JPA session etc.
 public interface CustomerRepository extends JpaRepository<Customer, UUID> {
+
+    // Listing projection: the CustomerDTO columns straight into DTOs, no entity enters the persistence context
+    String CUSTOMER_DTO_SELECT = "select new com.springframework.spring6restmvc.model.CustomerDTO("
+            + "c.id, c.name, c.email, c.version, c.createdDate, c.lastModifiedDate) from Customer c";
+    // the order of the customer_name_idx index (V7); nulls come first (MySQL and H2)
+    String KEYSET_ORDER = " order by c.name asc, c.id asc";
+
+    // version probe for conditional requests: no entity is loaded
+    @Query("select c.version from Customer c where c.id = :id")
+    Optional<Integer> findVersionById(@Param("id") UUID id);
+
+    // probe of CatalogVersions for writes made elsewhere: one end of the customer_last_modified_date_idx index (V11)
+    @Query("select max(c.lastModifiedDate) from Customer c")
+    Optional<LocalDateTime> findLastModifiedDate();
+
+    // the email must be normalized (Customer.normalizeEmail): an equality on the unique customer_email_idx (V8)
+    Optional<Customer> findByEmail(String email);
+
+    @Query(value = CUSTOMER_DTO_SELECT, countQuery = "select count(c) from Customer c")
+    Page<CustomerDTO> findAllCustomerDtos(Pageable pageable);
+
+    // Keyset (seek) listing, same order as the offset listing. Pageable only carries the limit.
+    @Query(CUSTOMER_DTO_SELECT + KEYSET_ORDER)
+    List<CustomerDTO> findKeysetFirstPage(Pageable limit);
+
+    // rows after the given position; a null afterName is the position of a customer without a name
+    @Query(CUSTOMER_DTO_SELECT + " where (:afterName is null and (c.name is not null or c.id > :afterId))"
+            + " or c.name > :afterName"
+            + " or (c.name = :afterName and c.id > :afterId)" + KEYSET_ORDER)
+    List<CustomerDTO> findKeysetPageAfter(@Param("afterName") String afterName,
+                                          @Param("afterId") UUID afterId,
+                                          Pageable limit);
+
+    // All customers for the streamed listing, in chunks of the fetch size (MySQL needs useCursorFetch=true).
+    // DTOs, so the persistence context stays empty. Must be consumed inside a transaction and closed.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query(CUSTOMER_DTO_SELECT + KEYSET_ORDER)
+    Stream<CustomerDTO> streamAllCustomerDtos();
 }
@@ -0,0 +1,289 @@
+package com.springframework.spring6restmvc.services;
+
+import com.springframework.spring6restmvc.model.BeerDTO;
+import com.springframework.spring6restmvc.model.BeerStyle;
+import com.springframework.spring6restmvc.repositories.BeerRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+// Columnar copy of the catalog for analytics: one primitive array per column (style ordinal, price in cents, quantity),
+// one row per beer, so an aggregate is a plain loop over arrays without a query or a boxed value per row.
+// Large catalogs are split in ranges over the common fork-join pool, each range summed into its own array.
+// Built from the database once the application is ready. Writes only mark their beer as changed (BeerChangedEvent),
+// the changed rows are re-read with one query before the next aggregate: a burst of writes costs one query.
+// Imported beers are not re-read: the import's after-commit listener adds them as saved, on the importing thread.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BeerAnalytics {
+    // below this many rows one thread is faster than splitting the loop
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+    private static final int REFRESH_BATCH_SIZE = 1000;
+    private static final BeerStyle[] STYLES = BeerStyle.values();
+
+    private final BeerRepository beerRepository;
+
+    private final Set<UUID> changedIds = ConcurrentHashMap.newKeySet();
+    private final Object refreshLock = new Object();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // the columns, guarded by lock. Rows [0, size) are used, a removed row is filled with the last one.
+    private UUID[] ids = new UUID[0];
+    private byte[] styles = new byte[0];
+    private long[] priceCents = new long[0];
+    private int[] quantities = new int[0];
+    private int size = 0;
+    private final Map<UUID, Integer> rowsById = new HashMap<>();
+
+    @FunctionalInterface
+    private interface RangeAggregator {
+        // adds rows [from, to) into result
+        void accumulate(long[] result, int from, int to);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        lock.writeLock().lock();
+
+        try {
+            ids = new UUID[0];
+            styles = new byte[0];
+            priceCents = new long[0];
+            quantities = new int[0];
+            size = 0;
+            rowsById.clear();
+
+            try (Stream<Object[]> rows = beerRepository.streamAnalyticsRows()) {
+                rows.forEach(this::put);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        log.debug("Beer analytics snapshot built: {} beers", size);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBeerChanged(BeerChangedEvent event) {
+        changedIds.add(event.getBeerId());
+    }
+
+    // Runs after the chunk committed. A beer already in the columns was read from the database after the commit
+    // (a later change was refreshed first), so it is newer than the imported copy and is kept.
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBeersImported(BeersImportedEvent event) {
+        synchronized (refreshLock) {
+            lock.writeLock().lock();
+
+            try {
+                for (BeerDTO beer : event.getBeers()) {
+                    if (!rowsById.containsKey(beer.getId())) {
+                        put(new Object[]{beer.getId(), beer.getBeerStyle(), beer.getPrice(), beer.getQuantityOnHand()});
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    public int size() {
+        refresh();
+        lock.readLock().lock();
+
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<BeerStyle, Long> quantityByStyle() {
+        long[] sums = aggregate(STYLES.length, (result, from, to) -> {
+            byte[] styles = this.styles;
+            int[] quantities = this.quantities;
+
+            for (int i = from; i < to; i++) {
+                result[styles[i]] += quantities[i];
+            }
+        });
+
+        Map<BeerStyle, Long> result = new EnumMap<>(BeerStyle.class);
+        for (BeerStyle style : STYLES) {
+            result.put(style, sums[style.ordinal()]);
+        }
+
+        return result;
+    }
+
+    // price * quantity on hand, summed per style
+    public Map<BeerStyle, BigDecimal> inventoryValueByStyle() {
+        long[] sums = aggregate(STYLES.length, (result, from, to) -> {
+            byte[] styles = this.styles;
+            long[] priceCents = this.priceCents;
+            int[] quantities = this.quantities;
+
+            for (int i = from; i < to; i++) {
+                result[styles[i]] += priceCents[i] * quantities[i];
+            }
+        });
+
+        Map<BeerStyle, BigDecimal> result = new EnumMap<>(BeerStyle.class);
+        for (BeerStyle style : STYLES) {
+            result.put(style, BigDecimal.valueOf(sums[style.ordinal()], 2));
+        }
+
+        return result;
+    }
+
+    // Number of beers per price range: bucket i holds the prices in [i * bucketWidthCents, (i + 1) * bucketWidthCents),
+    // the last bucket also everything above.
+    public long[] priceHistogram(long bucketWidthCents, int buckets) {
+        if (bucketWidthCents <= 0 || buckets <= 0) {
+            throw new IllegalArgumentException("bucketWidthCents and buckets must be positive");
+        }
+
+        return aggregate(buckets, (result, from, to) -> {
+            long[] priceCents = this.priceCents;
+            int last = buckets - 1;
+
+            for (int i = from; i < to; i++) {
+                long bucket = priceCents[i] / bucketWidthCents;
+                result[(int) Math.max(0, Math.min(bucket, last))]++;
+            }
+        });
+    }
+
+    private long[] aggregate(int length, RangeAggregator aggregator) {
+        refresh();
+        lock.readLock().lock();
+
+        try {
+            int rowCount = size;
+
+            if (rowCount < PARALLEL_THRESHOLD) {
+                long[] result = new long[length];
+                aggregator.accumulate(result, 0, rowCount);
+                return result;
+            }
+
+            int ranges = (rowCount + PARALLEL_THRESHOLD - 1) / PARALLEL_THRESHOLD;
+
+            return IntStream.range(0, ranges).parallel()
+                    .mapToObj(range -> {
+                        long[] result = new long[length];
+                        aggregator.accumulate(result, range * PARALLEL_THRESHOLD, Math.min(rowCount, (range + 1) * PARALLEL_THRESHOLD));
+                        return result;
+                    })
+                    .reduce(BeerAnalytics::sum)
+                    .orElseGet(() -> new long[length]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Re-reads the beers changed since the last refresh: a row that is gone was deleted.
+    // One refresh at a time, so an older read can never overwrite a newer one.
+    void refresh() {
+        if (changedIds.isEmpty()) {
+            return;
+        }
+
+        synchronized (refreshLock) {
+            List<UUID> changed = new ArrayList<>();
+            for (Iterator<UUID> iterator = changedIds.iterator(); iterator.hasNext(); ) {
+                changed.add(iterator.next());
+                iterator.remove();
+            }
+
+            for (int from = 0; from < changed.size(); from += REFRESH_BATCH_SIZE) {
+                List<UUID> batch = changed.subList(from, Math.min(changed.size(), from + REFRESH_BATCH_SIZE));
+                List<Object[]> rows = beerRepository.findAnalyticsRowsByIdIn(batch);
+
+                lock.writeLock().lock();
+
+                try {
+                    Set<UUID> deleted = new HashSet<>(batch);
+                    for (Object[] row : rows) {
+                        put(row);
+                        deleted.remove((UUID) row[0]);
+                    }
+                    deleted.forEach(this::remove);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    // [id, beerStyle, price, quantityOnHand], see BeerRepository.ANALYTICS_SELECT
+    private void put(Object[] row) {
+        UUID id = (UUID) row[0];
+        Integer existing = rowsById.get(id);
+        int index = existing != null ? existing : append(id);
+
+        BigDecimal price = (BigDecimal) row[2];
+        Integer quantity = (Integer) row[3];
+
+        styles[index] = (byte) ((BeerStyle) row[1]).ordinal();
+        priceCents[index] = price == null ? 0 : price.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        quantities[index] = quantity == null ? 0 : quantity;
+    }
+
+    private int append(UUID id) {
+        if (size == ids.length) {
+            int capacity = Math.max(16, size + (size >> 1));
+
+            ids = Arrays.copyOf(ids, capacity);
+            styles = Arrays.copyOf(styles, capacity);
+            priceCents = Arrays.copyOf(priceCents, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+        }
+
+        ids[size] = id;
+        rowsById.put(id, size);
+
+        return size++;
+    }
+
+    private void remove(UUID id) {
+        Integer index = rowsById.remove(id);
+
+        if (index == null) {
+            return;
+        }
+
+        // keep the rows dense: the last row takes the place of the removed one
+        int last = --size;
+        if (index != last) {
+            ids[index] = ids[last];
+            styles[index] = styles[last];
+            priceCents[index] = priceCents[last];
+            quantities[index] = quantities[last];
+            rowsById.put(ids[index], index);
+        }
+        ids[last] = null;
+    }
+
+    private static long[] sum(long[] first, long[] second) {
+        long[] result = first.clone();
+        for (int i = 0; i < result.length; i++) {
+            result[i] += second[i];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,46 @@
+package com.springframework.spring6restmvc.services;
+
+import com.springframework.spring6restmvc.model.BeerDTO;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+// Published by the beer write paths. Listeners use @TransactionalEventListener,
+// so they only see changes that were committed.
+@Getter
+@AllArgsConstructor
+public class BeerChangedEvent {
+
+    public enum Type { SAVED, UPDATED, DELETED }
+
+    private final Type type;
+    private final UUID beerId;
+    // SAVED: state after the change. UPDATED: only id, new version and the written columns (the rest is null,
+    // the update statement did not read the row). DELETED: state before the delete if it was read, otherwise null
+    private final BeerDTO beer;
+    // UPDATED by a stock movement: the quantity added to quantity_on_hand (negative when taken). Null otherwise
+    private final Long quantityDelta;
+    // UPDATED of the style, price or quantity: their values before the update (the rest is null). Null otherwise
+    private final BeerDTO previous;
+
+    public static BeerChangedEvent saved(BeerDTO beer) {
+        return new BeerChangedEvent(Type.SAVED, beer.getId(), beer, null, null);
+    }
+
+    public static BeerChangedEvent updated(BeerDTO changes, BeerDTO previous) {
+        return new BeerChangedEvent(Type.UPDATED, changes.getId(), changes, null, previous);
+    }
+
+    public static BeerChangedEvent stockMoved(UUID beerId, long quantityDelta) {
+        return new BeerChangedEvent(Type.UPDATED, beerId, BeerDTO.builder().id(beerId).build(), quantityDelta, null);
+    }
+
+    public static BeerChangedEvent deleted(UUID beerId) {
+        return new BeerChangedEvent(Type.DELETED, beerId, null, null, null);
+    }
+
+    public static BeerChangedEvent deleted(BeerDTO beer) {
+        return new BeerChangedEvent(Type.DELETED, beer.getId(), beer, null, null);
+    }
+}
@@ -0,0 +1,85 @@
+package com.springframework.spring6restmvc.services;
+
+import com.springframework.spring6restmvc.model.BeerStyle;
+import com.springframework.spring6restmvc.repositories.BeerRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Approximate totals for the count-free beer listing.
+// Requests only read the last known count; the counting itself happens on a background schedule,
+// so a listing request never pays for a COUNT(*) over the LIKE predicate.
+// Filters are user input: at most maximum-size of them are kept, and a filter not listed within expire-after-access
+// is dropped by the next refresh instead of being counted.
+@Slf4j
+@Component
+public class BeerCountCache {
+    private static final long UNKNOWN = -1L;
+
+    private final BeerRepository beerRepository;
+
+    private final long expireAfterAccessNanos;
+    // the refresh sets the counts in place and never touches lastListed: only listings keep a filter alive
+    private final Cache<Filter, Entry> counts;
+
+    public BeerCountCache(BeerRepository beerRepository,
+                          @Value("${beer.count-cache.maximum-size:256}") long maximumSize,
+                          @Value("${beer.count-cache.expire-after-access:PT10M}") Duration expireAfterAccess) {
+        this.beerRepository = beerRepository;
+        this.expireAfterAccessNanos = expireAfterAccess.toNanos();
+        this.counts = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .build();
+    }
+
+    public Optional<Long> getApproximateCount(String beerName, BeerStyle beerStyle) {
+        Filter filter = new Filter(StringUtils.hasText(beerName) ? beerName.toLowerCase() : null, beerStyle);
+        // first time we see this filter: let the next refresh count it
+        Entry entry = counts.get(filter, key -> new Entry());
+        entry.lastListed = System.nanoTime();
+        long count = entry.count.get();
+
+        return count == UNKNOWN ? Optional.empty() : Optional.of(count);
+    }
+
+    @Scheduled(fixedDelayString = "${beer.count-cache.refresh-ms:30000}")
+    public void refresh() {
+        long now = System.nanoTime();
+        counts.asMap().forEach((filter, entry) -> {
+            if (now - entry.lastListed > expireAfterAccessNanos) {
+                counts.asMap().remove(filter, entry);
+            } else {
+                entry.count.set(count(filter));
+            }
+        });
+
+        log.debug("Refreshed {} approximate beer counts", counts.estimatedSize());
+    }
+
+    private long count(Filter filter) {
+        if (filter.beerName() != null && filter.beerStyle() != null) {
+            return beerRepository.countByBeerNameIsLikeIgnoreCaseAndBeerStyle("%" + filter.beerName() + "%", filter.beerStyle());
+        } else if (filter.beerName() != null) {
+            return beerRepository.countByBeerNameIsLikeIgnoreCase("%" + filter.beerName() + "%");
+        } else if (filter.beerStyle() != null) {
+            return beerRepository.countByBeerStyle(filter.beerStyle());
+        }
+        return beerRepository.count();
+    }
+
+    private record Filter(String beerName, BeerStyle beerStyle) {
+    }
+
+    private static class Entry {
+        final AtomicLong count = new AtomicLong(UNKNOWN);
+        volatile long lastListed = System.nanoTime();
+    }
+}
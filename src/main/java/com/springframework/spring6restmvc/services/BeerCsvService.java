@@ -1,10 +1,29 @@
 package com.springframework.spring6restmvc.services;
 
+import com.springframework.spring6restmvc.entities.Beer;
 import com.springframework.spring6restmvc.model.BeerCSVRecord;
 
 import java.io.File;
+import java.io.Reader;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public interface BeerCsvService {
     List<BeerCSVRecord> convertCSV(File file);
+
+    List<BeerCSVRecord> convertCSV(Reader reader);
+
+    // lazy: records are parsed one by one while the stream is consumed. Close the stream (try-with-resources) when done.
+    Stream<BeerCSVRecord> streamCSV(File file);
+
+    // lazy like above; closing the stream closes the reader
+    Stream<BeerCSVRecord> streamCSV(Reader reader);
+
+    // parallel mode: the file is cut at record boundaries and the pieces are parsed on the common fork-join pool.
+    // batchConsumer runs on the calling thread, one batch per piece (in file order if ordered is true). Returns the record count.
+    long parseCSVParallel(File file, boolean ordered, Consumer<List<BeerCSVRecord>> batchConsumer);
+
+    // new (not yet saved) beer for a csv record
+    Beer toBeer(BeerCSVRecord beerCSVRecord);
 }
@@ -1,27 +1,224 @@
 package com.springframework.spring6restmvc.services;
 
+import com.opencsv.bean.CsvToBean;
 import com.opencsv.bean.CsvToBeanBuilder;
+import com.springframework.spring6restmvc.entities.Beer;
 import com.springframework.spring6restmvc.model.BeerCSVRecord;
+import com.springframework.spring6restmvc.model.BeerStyle;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Service
 public class BeerCsvServiceImpl implements BeerCsvService {
+
+    // ~25k records of beers.csv per piece: big enough to amortize the task, small enough to keep all cores busy
+    static final long PARALLEL_CHUNK_BYTES = 4L * 1024 * 1024;
+
     @Override
     public List<BeerCSVRecord> convertCSV(File file) {
 
+        try (Stream<BeerCSVRecord> records = streamCSV(file)) {
+            return records.toList();
+        }
+    }
+
+    @Override
+    public List<BeerCSVRecord> convertCSV(Reader reader) {
+        List<BeerCSVRecord> beerCSVRecords = new CsvToBeanBuilder(reader)
+                .withType(BeerCSVRecord.class)
+                .build().parse();
+
+        return beerCSVRecords;
+    }
+
+    @Override
+    public Stream<BeerCSVRecord> streamCSV(File file) {
+
         try {
-            List<BeerCSVRecord> beerCSVRecords = new CsvToBeanBuilder(new FileReader(file))
-                    .withType(BeerCSVRecord.class)
-                    .build().parse();
+            return streamCSV(Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-            return beerCSVRecords;
-        }catch (FileNotFoundException e){
-            throw new RuntimeException(e);
+    @Override
+    public Stream<BeerCSVRecord> streamCSV(Reader reader) {
+        Reader buffered = reader instanceof BufferedReader ? reader : new BufferedReader(reader);
+
+        // iterator() reads and binds one line at a time on the calling thread (parse() and stream() read the whole input first)
+        CsvToBean<BeerCSVRecord> csvToBean = new CsvToBeanBuilder<BeerCSVRecord>(buffered)
+                .withType(BeerCSVRecord.class)
+                .build();
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(csvToBean.iterator(), Spliterator.ORDERED), false)
+                .onClose(() -> {
+                    try {
+                        buffered.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    @Override
+    public long parseCSVParallel(File file, boolean ordered, Consumer<List<BeerCSVRecord>> batchConsumer) {
+        return parseCSVParallel(file, PARALLEL_CHUNK_BYTES, ForkJoinPool.commonPool(), ordered, batchConsumer);
+    }
+
+    long parseCSVParallel(File file, long chunkBytes, ForkJoinPool pool, boolean ordered,
+                          Consumer<List<BeerCSVRecord>> batchConsumer) {
+        CsvChunks layout;
+        byte[] header;
+        try {
+            layout = CsvChunks.split(file.toPath(), chunkBytes);
+            header = readRange(file.toPath(), new CsvChunks.Chunk(0, layout.headerEnd()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+
+        // at most this many parsed pieces wait in memory for the consumer
+        int window = pool.getParallelism() * 2;
+        Iterator<CsvChunks.Chunk> remaining = layout.chunks().iterator();
+        long records = 0;
+
+        if (ordered) {
+            Deque<Future<List<BeerCSVRecord>>> inFlight = new ArrayDeque<>();
+
+            while (remaining.hasNext() || !inFlight.isEmpty()) {
+                while (inFlight.size() < window && remaining.hasNext()) {
+                    CsvChunks.Chunk chunk = remaining.next();
+                    inFlight.add(pool.submit(() -> parseChunk(file.toPath(), header, chunk)));
+                }
+
+                List<BeerCSVRecord> batch = await(inFlight.poll());
+                batchConsumer.accept(batch);
+                records += batch.size();
+            }
+        } else {
+            CompletionService<List<BeerCSVRecord>> completed = new ExecutorCompletionService<>(pool);
+            int pending = 0;
+
+            while (remaining.hasNext() || pending > 0) {
+                while (pending < window && remaining.hasNext()) {
+                    CsvChunks.Chunk chunk = remaining.next();
+                    completed.submit(() -> parseChunk(file.toPath(), header, chunk));
+                    pending++;
+                }
+
+                List<BeerCSVRecord> batch = await(take(completed));
+                pending--;
+                batchConsumer.accept(batch);
+                records += batch.size();
+            }
+        }
+
+        return records;
+    }
+
+    // Each piece is parsed as its own small csv: the header line followed by the piece's records.
+    // On the worker thread (streamCSV's iterator), not with parse(): that would start a pool of its own per piece
+    private List<BeerCSVRecord> parseChunk(Path file, byte[] header, CsvChunks.Chunk chunk) throws IOException {
+        InputStream in = new SequenceInputStream(new ByteArrayInputStream(header),
+                new ByteArrayInputStream(readRange(file, chunk)));
+
+        try (Stream<BeerCSVRecord> records = streamCSV(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return records.toList();
+        }
+    }
+
+    private static byte[] readRange(Path file, CsvChunks.Chunk chunk) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(chunk.length());
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, chunk.start() + buffer.position()) < 0) {
+                    throw new EOFException("File shorter than expected: " + file);
+                }
+            }
+        }
+
+        return buffer.array();
+    }
+
+    private static <T> Future<T> take(CompletionService<T> completed) {
+        try {
+            return completed.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while parsing csv", e);
+        }
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while parsing csv", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof IOException ioException) {
+                throw new UncheckedIOException(ioException);
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Override
+    public Beer toBeer(BeerCSVRecord beerCSVRecord) {
+        BeerStyle beerStyle = switch (beerCSVRecord.getStyle()) {
+            case "American Pale Lager" -> BeerStyle.LAGER;
+            case "American Pale Ale (APA)", "American Black Ale", "Belgian Dark Ale", "American Blonde Ale"
+                -> BeerStyle.ALE;
+            case "American IPA", "American Double / Imperial IPA", "Belgian IPA" -> BeerStyle.IPA;
+            case "American Porter" -> BeerStyle.PORTER;
+            case "Oatmeal Stout", "American Stout" -> BeerStyle.STOUT;
+            case "Saison / Farmhouse Ale" -> BeerStyle.SAISON;
+            case "Fruit / Vegetable Beer", "Winter Warmer", "Berliner Weissbier" -> BeerStyle.WHEAT;
+            case "English Pale Ale" -> BeerStyle.PALE_ALE;
+            default -> BeerStyle.PILSNER;
+        };
+
+        return Beer.builder()
+                .beerName(StringUtils.abbreviate(beerCSVRecord.getBeer(), 50))
+                .beerStyle(beerStyle)
+                .price(BigDecimal.TEN)
+                .upc(beerCSVRecord.getRow().toString())
+                .quantityOnHand(beerCSVRecord.getCount())
+                .build();
     }
 }
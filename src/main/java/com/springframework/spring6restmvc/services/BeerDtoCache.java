@@ -0,0 +1,71 @@
+package com.springframework.spring6restmvc.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.springframework.spring6restmvc.model.BeerDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+// Read-through cache of BeerDTOs by id: a hit skips both the database and the mapper.
+// Bounded by size and time to live. Committed writes replace an entry that is there, but only with a newer @Version,
+// so an update that is processed late can never bring an older state back. Writes do not add entries: imports and
+// saves of beers nobody reads would push the read ones out.
+// Callers get their own copy, the cached DTOs are never handed out (BeerDTO is mutable).
+@Component
+public class BeerDtoCache {
+
+    private final Cache<UUID, BeerDTO> cache;
+
+    public BeerDtoCache(@Value("${beer.cache.maximum-size:10000}") long maximumSize,
+                        @Value("${beer.cache.expire-after-write:PT10M}") Duration expireAfterWrite) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    // Missing beers are not cached: the loader runs again on the next call.
+    public Optional<BeerDTO> get(UUID id, Function<UUID, Optional<BeerDTO>> loader) {
+        return Optional.ofNullable(cache.get(id, key -> loader.apply(key).map(BeerDtoCache::copy).orElse(null)))
+                .map(BeerDtoCache::copy);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long estimatedSize() {
+        return cache.estimatedSize();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBeerChanged(BeerChangedEvent event) {
+        // a partial update does not carry the whole beer: the next read loads it again
+        if (event.getType() != BeerChangedEvent.Type.SAVED) {
+            cache.invalidate(event.getBeerId());
+            return;
+        }
+
+        BeerDTO saved = copy(event.getBeer());
+        cache.asMap().computeIfPresent(event.getBeerId(), (id, cached) -> isNewer(saved, cached) ? saved : cached);
+    }
+
+    private static BeerDTO copy(BeerDTO beer) {
+        return beer.toBuilder().build();
+    }
+
+    private static boolean isNewer(BeerDTO saved, BeerDTO cached) {
+        if (cached.getVersion() == null || saved.getVersion() == null) {
+            return true;
+        }
+        return saved.getVersion() >= cached.getVersion();
+    }
+}
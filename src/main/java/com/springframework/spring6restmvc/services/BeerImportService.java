@@ -0,0 +1,18 @@
+package com.springframework.spring6restmvc.services;
+
+import com.springframework.spring6restmvc.model.BeerImportResultDTO;
+
+import java.io.File;
+import java.io.Reader;
+
+public interface BeerImportService {
+
+    // saves every beer of a csv (same columns as csvdata/beers.csv)
+    BeerImportResultDTO importCsv(Reader csv);
+
+    // same as importCsv, but the file is parsed in parallel (see BeerCsvService.parseCSVParallel)
+    BeerImportResultDTO importCsvParallel(File csv);
+
+    // saves every beer of a newline delimited json stream (one BeerDTO per line, same format as the export)
+    BeerImportResultDTO importNdjson(Reader ndjson);
+}
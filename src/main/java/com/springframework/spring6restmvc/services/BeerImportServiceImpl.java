@@ -0,0 +1,181 @@
+package com.springframework.spring6restmvc.services;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springframework.spring6restmvc.entities.Beer;
+import com.springframework.spring6restmvc.mappers.BeerMapper;
+import com.springframework.spring6restmvc.model.BeerCSVRecord;
+import com.springframework.spring6restmvc.model.BeerDTO;
+import com.springframework.spring6restmvc.model.BeerImportResultDTO;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+// Bulk import: beers are inserted in chunks of beer.import.batch-size, one transaction per chunk.
+// Each chunk goes to the database as JDBC batches of the same size (one round trip per batch instead of per beer,
+// and a single multi-row INSERT on MySQL with rewriteBatchedStatements=true), then the persistence context is
+// cleared so it does not grow with the file.
+// Rows are validated before a chunk is written: an invalid row fails the import with the violations (a 400),
+// the chunks before it stay imported. A committed chunk publishes one BeersImportedEvent.
+@Slf4j
+@Service
+public class BeerImportServiceImpl implements BeerImportService {
+
+    private final BeerCsvService beerCsvService;
+    private final BeerMapper beerMapper;
+    private final ObjectMapper objectMapper;
+    private final EntityManager entityManager;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    public BeerImportServiceImpl(BeerCsvService beerCsvService,
+                                 BeerMapper beerMapper,
+                                 ObjectMapper objectMapper,
+                                 EntityManager entityManager,
+                                 ApplicationEventPublisher eventPublisher,
+                                 Validator validator,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${beer.import.batch-size:1000}") int batchSize) {
+        this.beerCsvService = beerCsvService;
+        this.beerMapper = beerMapper;
+        this.objectMapper = objectMapper;
+        this.entityManager = entityManager;
+        this.eventPublisher = eventPublisher;
+        this.validator = validator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public BeerImportResultDTO importCsv(Reader csv) {
+        long start = System.nanoTime();
+
+        // records are parsed while the previous batches are written: only one batch is in memory at a time
+        try (Stream<BeerCSVRecord> records = beerCsvService.streamCSV(csv)) {
+            return result(importAll(records.map(beerCsvService::toBeer).iterator()), start);
+        }
+    }
+
+    @Override
+    public BeerImportResultDTO importCsvParallel(File csv) {
+        long start = System.nanoTime();
+        long[] rows = {0};
+
+        // pieces are parsed on the fork-join pool; inserts stay on this thread, in whatever order the pieces finish
+        beerCsvService.parseCSVParallel(csv, false, records ->
+                rows[0] += importAll(records.stream().map(beerCsvService::toBeer).iterator()));
+
+        return result(rows[0], start);
+    }
+
+    @Override
+    public BeerImportResultDTO importNdjson(Reader ndjson) {
+        long start = System.nanoTime();
+
+        try (MappingIterator<BeerDTO> dtos = objectMapper.readerFor(BeerDTO.class).readValues(ndjson)) {
+            Iterator<Beer> beers = new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return dtos.hasNext();
+                }
+
+                @Override
+                public Beer next() {
+                    Beer beer = beerMapper.beerDtoToBeer(dtos.next());
+                    // ids and versions are assigned by this database, not taken from the file
+                    beer.setId(null);
+                    beer.setVersion(null);
+                    return beer;
+                }
+            };
+
+            return result(importAll(beers), start);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    long importAll(Iterator<Beer> beers) {
+        long rows = 0;
+        List<Beer> batch = new ArrayList<>(batchSize);
+
+        while (beers.hasNext()) {
+            batch.add(beers.next());
+
+            if (batch.size() == batchSize || !beers.hasNext()) {
+                insertBatch(batch);
+                rows += batch.size();
+                batch.clear();
+            }
+        }
+
+        return rows;
+    }
+
+    void insertBatch(List<Beer> beers) {
+        validate(beers);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+
+            List<BeerDTO> imported = new ArrayList<>(beers.size());
+            for (Beer beer : beers) {
+                // new entities (no id yet): persist, never merge, so there is no SELECT per beer
+                entityManager.persist(beer);
+                imported.add(beerMapper.beerToBeerDto(beer));
+            }
+
+            entityManager.flush();
+            entityManager.clear();
+
+            eventPublisher.publishEvent(new BeersImportedEvent(imported));
+        });
+    }
+
+    // the same constraints Hibernate checks on insert, but before the chunk is written and thrown as they are
+    private void validate(List<Beer> beers) {
+        Set<ConstraintViolation<Beer>> violations = new HashSet<>();
+        for (Beer beer : beers) {
+            violations.addAll(validator.validate(beer));
+        }
+
+        if (!violations.isEmpty()) {
+            throw new ConstraintViolationException(violations);
+        }
+    }
+
+    BeerImportResultDTO result(long rows, long startNanos) {
+        long elapsedMillis = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+        long rowsPerSecond = rows * 1000 / elapsedMillis;
+
+        log.debug("Imported {} beers in {} ms ({} rows/s)", rows, elapsedMillis, rowsPerSecond);
+
+        return BeerImportResultDTO.builder()
+                .rows(rows)
+                .batchSize(batchSize)
+                .elapsedMillis(elapsedMillis)
+                .rowsPerSecond(rowsPerSecond)
+                .build();
+    }
+}
@@ -0,0 +1,15 @@
+package com.springframework.spring6restmvc.services;
+
+import java.util.UUID;
+
+public interface BeerInventoryService {
+
+    // records a stock movement; it reaches quantityOnHand with the next flush, which never takes the stock below zero
+    void addDelta(UUID beerId, long delta);
+
+    // sum of the movements not written yet
+    long getPendingDelta(UUID beerId);
+
+    // writes the pending movements, returns how many beers were updated
+    int flush();
+}
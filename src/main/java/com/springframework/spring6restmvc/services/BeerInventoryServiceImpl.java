@@ -0,0 +1,158 @@
+package com.springframework.spring6restmvc.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Stock movements are added to a LongAdder per beer (striped: concurrent movements on the same beer do not
+// contend on one counter, and nothing touches the database or the @Version on the request path).
+// A schedule drains the counters and applies the sums with one JDBC batch of relative updates:
+// quantity_on_hand = quantity_on_hand + ?, so movements never overwrite each other.
+// The stock never goes below zero, reservations included: a sum that takes stock first reserves it in StockReservations
+// (only what no order holds), and only that is written. The rest is logged and dropped.
+@Slf4j
+@Service
+public class BeerInventoryServiceImpl implements BeerInventoryService {
+
+    static final String ADD_QUANTITY = "update beer set quantity_on_hand = coalesce(quantity_on_hand, 0) + ?,"
+            + " update_date = ?, version = version + 1 where id = ? and coalesce(quantity_on_hand, 0) + ? >= 0";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final StockReservations stockReservations;
+    private final boolean binaryUuids;
+
+    // one counter per beer that ever moved (bounded by the catalog). Entries are never removed:
+    // an add racing with a removal could be lost, a zero counter costs a few bytes.
+    private final Map<UUID, LongAdder> pending = new ConcurrentHashMap<>();
+
+    public BeerInventoryServiceImpl(JdbcTemplate jdbcTemplate,
+                                    PlatformTransactionManager transactionManager,
+                                    ApplicationEventPublisher eventPublisher,
+                                    StockReservations stockReservations,
+                                    @Value("${spring.jpa.properties.spring6restmvc.id.binary:false}")
+                                    boolean binaryUuids) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.stockReservations = stockReservations;
+        this.binaryUuids = binaryUuids;
+    }
+
+    @Override
+    public void addDelta(UUID beerId, long delta) {
+        pending.computeIfAbsent(beerId, id -> new LongAdder()).add(delta);
+    }
+
+    @Override
+    public long getPendingDelta(UUID beerId) {
+        LongAdder adder = pending.get(beerId);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${beer.inventory.flush-ms:1000}")
+    public synchronized int flush() {
+        // sumThenReset takes every cell atomically: a concurrent add lands either in this flush or in the next one
+        List<UUID> beerIds = new ArrayList<>();
+        List<Long> deltas = new ArrayList<>();
+        List<Integer> reservations = new ArrayList<>();
+        List<Object[]> batchArgs = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+
+        pending.forEach((beerId, adder) -> {
+            long delta = adder.sumThenReset();
+            int reserved = 0;
+
+            if (delta < 0) {
+                // reserved before it is written, so no order can get it in between
+                reserved = stockReservations.reserveUpTo(beerId, (int) Math.min(-delta, Integer.MAX_VALUE));
+                if (reserved < -delta) {
+                    log.warn("Stock movements of beer {} take {} but only {} are not reserved by orders: {} dropped",
+                            beerId, -delta, reserved, -delta - reserved);
+                }
+                delta = -reserved;
+            }
+
+            if (delta != 0) {
+                beerIds.add(beerId);
+                deltas.add(delta);
+                reservations.add(reserved);
+                batchArgs.add(new Object[]{delta, now, JdbcUuids.parameter(beerId, binaryUuids), delta});
+            }
+        });
+
+        if (batchArgs.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            long[] applied = transactionTemplate.execute(status -> {
+                int[] rows = jdbcTemplate.batchUpdate(ADD_QUANTITY, batchArgs);
+                long[] moved = new long[rows.length];
+
+                for (int i = 0; i < rows.length; i++) {
+                    // no row: a deleted beer (its movements are dropped) or less on hand than reserved (written by others)
+                    moved[i] = rows[i] != 0 ? deltas.get(i)
+                            : deltas.get(i) < 0 ? -stockReservations.emptyStock(beerIds.get(i), -deltas.get(i)) : 0;
+
+                    if (moved[i] != 0) {
+                        eventPublisher.publishEvent(BeerChangedEvent.stockMoved(beerIds.get(i), moved[i]));
+                    }
+                }
+                return moved;
+            });
+
+            // committed: the reservable stock follows
+            int updated = 0;
+            for (int i = 0; i < applied.length; i++) {
+                if (reservations.get(i) > 0) {
+                    stockReservations.taken(beerIds.get(i), reservations.get(i), -applied[i]);
+                } else if (applied[i] != 0) {
+                    stockReservations.onHandChanged(beerIds.get(i), applied[i]);
+                }
+                if (applied[i] != 0) {
+                    updated++;
+                }
+            }
+
+            log.debug("Flushed stock movements of {} beers", updated);
+
+            return updated;
+        } catch (RuntimeException e) {
+            // nothing was written: give the movements back to the counters for the next flush
+            for (int i = 0; i < beerIds.size(); i++) {
+                if (reservations.get(i) > 0) {
+                    stockReservations.release(beerIds.get(i), reservations.get(i));
+                }
+                addDelta(beerIds.get(i), deltas.get(i));
+            }
+            throw e;
+        }
+    }
+
+    // write what is still pending on a graceful shutdown
+    @PreDestroy
+    public void flushOnShutdown() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Stock movements could not be written on shutdown: {}", pending, e);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.springframework.spring6restmvc.services;
+
+import com.springframework.spring6restmvc.repositories.BeerRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// In-memory trigram index over beer names, so '%name%' searches do not need a full table scan.
+// A search returns the ids of the beers whose (lower case) name contains the text, and only those rows are fetched.
+// Built from the database once the application is ready, then kept up to date by BeerChangedEvents
+// (changes that come in while it is rebuilt are replayed on the new index). Those events only come from this
+// instance: writes made by other instances or straight to the database are picked up by a rebuild every
+// beer.name-index.rebuild-ms, which bounds how long a search can miss them.
+// A text matching more than beer.name-index.max-candidates beers is left to the LIKE query: the ids are bound
+// as an IN list, which only pays off while it is short.
+@Slf4j
+@Component
+public class BeerNameIndex {
+    static final int GRAM_LENGTH = 3;
+
+    private final BeerRepository beerRepository;
+    private final int maxCandidates;
+
+    // trigram -> ids of the beers having it in their name
+    private volatile Map<String, Set<UUID>> postings = new ConcurrentHashMap<>();
+    private volatile Map<UUID, String> names = new ConcurrentHashMap<>();
+    private volatile boolean ready = false;
+    private List<BeerChangedEvent> changesDuringRebuild = null; // guarded by this
+    private final Object rebuildLock = new Object();
+
+    public BeerNameIndex(BeerRepository beerRepository,
+                         @Value("${beer.name-index.max-candidates:1000}") int maxCandidates) {
+        this.beerRepository = beerRepository;
+        this.maxCandidates = maxCandidates;
+    }
+
+    // One rebuild at a time: the startup one and a scheduled one must not share changesDuringRebuild
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${beer.name-index.rebuild-ms:300000}", initialDelayString = "${beer.name-index.rebuild-ms:300000}")
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            rebuildFromDatabase();
+        }
+    }
+
+    private void rebuildFromDatabase() {
+        synchronized (this) {
+            changesDuringRebuild = new ArrayList<>();
+        }
+
+        Map<String, Set<UUID>> newPostings = new ConcurrentHashMap<>();
+        Map<UUID, String> newNames = new ConcurrentHashMap<>();
+
+        for (Object[] row : beerRepository.findAllIdsAndNames()) {
+            UUID id = (UUID) row[0];
+            String name = normalize((String) row[1]);
+
+            newNames.put(id, name);
+            grams(name).forEach(gram -> newPostings.computeIfAbsent(gram, k -> ConcurrentHashMap.newKeySet()).add(id));
+        }
+
+        synchronized (this) {
+            postings = newPostings;
+            names = newNames;
+            // the query may or may not have seen them: put and remove give the same result either way
+            changesDuringRebuild.forEach(this::apply);
+            changesDuringRebuild = null;
+            ready = true;
+        }
+
+        log.debug("Beer name index built: {} beers, {} trigrams", newNames.size(), newPostings.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onBeerChanged(BeerChangedEvent event) {
+        if (changesDuringRebuild != null) {
+            changesDuringRebuild.add(event);
+        }
+        apply(event);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onBeersImported(BeersImportedEvent event) {
+        event.getBeers().forEach(beer -> onBeerChanged(BeerChangedEvent.saved(beer)));
+    }
+
+    private void apply(BeerChangedEvent event) {
+        if (event.getType() == BeerChangedEvent.Type.DELETED) {
+            remove(event.getBeerId());
+        } else if (event.getBeer().getBeerName() != null) { // null: a partial update that kept the name
+            put(event.getBeerId(), event.getBeer().getBeerName());
+        }
+    }
+
+    // Empty if the index cannot answer: not built yet, text shorter than a trigram or containing LIKE wildcards,
+    // or more than maxCandidates matches. The caller falls back to the LIKE query then.
+    public Optional<Set<UUID>> findIdsByNameContaining(String text) {
+        String query = normalize(text);
+
+        if (!ready || query.length() < GRAM_LENGTH || query.contains("%") || query.contains("_")) {
+            return Optional.empty();
+        }
+
+        Map<String, Set<UUID>> currentPostings = postings;
+        Map<UUID, String> currentNames = names;
+
+        // start from the rarest trigram, every other one can only narrow the candidates down
+        List<Set<UUID>> candidateSets = new ArrayList<>();
+        for (String gram : grams(query)) {
+            Set<UUID> ids = currentPostings.get(gram);
+            if (ids == null) {
+                return Optional.of(Collections.emptySet());
+            }
+            candidateSets.add(ids);
+        }
+        candidateSets.sort(Comparator.comparingInt(Set::size));
+
+        Set<UUID> result = new HashSet<>();
+        for (UUID id : candidateSets.get(0)) {
+            // trigrams may match out of order, the name itself decides
+            String name = currentNames.get(id);
+            if (name != null && name.contains(query) && result.add(id) && result.size() > maxCandidates) {
+                return Optional.empty();
+            }
+        }
+
+        return Optional.of(result);
+    }
+
+    synchronized void put(UUID id, String beerName) {
+        remove(id);
+
+        String name = normalize(beerName);
+        names.put(id, name);
+        grams(name).forEach(gram -> postings.computeIfAbsent(gram, k -> ConcurrentHashMap.newKeySet()).add(id));
+    }
+
+    synchronized void remove(UUID id) {
+        String oldName = names.remove(id);
+
+        if (oldName != null) {
+            grams(oldName).forEach(gram -> postings.computeIfPresent(gram, (k, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            }));
+        }
+    }
+
+    private static String normalize(String name) {
+        return name == null ? "" : name.toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<String> grams(String name) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= name.length(); i++) {
+            grams.add(name.substring(i, i + GRAM_LENGTH));
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,18 @@
+package com.springframework.spring6restmvc.services;
+
+import com.springframework.spring6restmvc.model.BeerOrderCreateDTO;
+import com.springframework.spring6restmvc.model.BeerOrderDTO;
+import org.springframework.data.domain.Page;
+
+import java.util.Optional;
+import java.util.UUID;
+
+public interface BeerOrderService {
+
+    // newest first, with their lines and shipment. Empty if there is no such customer
+    Optional<Page<BeerOrderDTO>> listOrdersOfCustomer(UUID customerId, Integer pageNumber, Integer pageSize);
+
+    // Saves the order and allocates the stock of its lines. Empty if there is no such customer,
+    // UnknownBeerException if a line names a beer that does not exist
+    Optional<BeerOrderDTO> placeOrder(UUID customerId, BeerOrderCreateDTO beerOrder);
+}
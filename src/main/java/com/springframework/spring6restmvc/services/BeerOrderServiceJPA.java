@@ -0,0 +1,129 @@
+package com.springframework.spring6restmvc.services;
+
+import com.springframework.spring6restmvc.entities.Beer;
+import com.springframework.spring6restmvc.entities.BeerOrder;
+import com.springframework.spring6restmvc.entities.BeerOrderLine;
+import com.springframework.spring6restmvc.entities.Customer;
+import com.springframework.spring6restmvc.mappers.BeerOrderMapper;
+import com.springframework.spring6restmvc.model.BeerOrderCreateDTO;
+import com.springframework.spring6restmvc.model.BeerOrderDTO;
+import com.springframework.spring6restmvc.model.BeerOrderLineCreateDTO;
+import com.springframework.spring6restmvc.repositories.BeerOrderRepository;
+import com.springframework.spring6restmvc.repositories.BeerRepository;
+import com.springframework.spring6restmvc.repositories.CustomerRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+public class BeerOrderServiceJPA implements BeerOrderService {
+    private final BeerOrderRepository beerOrderRepository;
+    private final CustomerRepository customerRepository;
+    private final BeerRepository beerRepository;
+    private final BeerOrderMapper beerOrderMapper;
+    private final StockReservations stockReservations;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final static Integer DEFAULT_PAGE = 0;
+    private final static Integer DEFAULT_PAGE_SIZE = 25;
+    private final static Integer MAX_PAGE_SIZE = 1000;
+
+    // same rules as the other listings: pages start at 1, default size 25, at most 1000
+    public PageRequest buildPageRequest(Integer pageNumber, Integer pageSize) {
+        int queryPageNumber = pageNumber != null && pageNumber > 0 ? pageNumber - 1 : DEFAULT_PAGE;
+        int queryPageSize = pageSize == null ? DEFAULT_PAGE_SIZE : Math.min(pageSize, MAX_PAGE_SIZE);
+
+        // the order of the beer_order_customer_created_idx index (V9); id makes it a total order
+        return PageRequest.of(queryPageNumber, queryPageSize, Sort.by(Sort.Order.desc("createdDate"), Sort.Order.desc("id")));
+    }
+
+    // A fixed number of statements whatever the page holds: existence check, page of ids (+ count when needed),
+    // then one fetch of those orders with everything the DTOs show. Mapping never touches a lazy association.
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Page<BeerOrderDTO>> listOrdersOfCustomer(UUID customerId, Integer pageNumber, Integer pageSize) {
+        if (!customerRepository.existsById(customerId)) {
+            return Optional.empty();
+        }
+
+        PageRequest pageRequest = buildPageRequest(pageNumber, pageSize);
+        Page<UUID> ids = beerOrderRepository.findIdsByCustomerId(customerId, pageRequest);
+
+        if (ids.isEmpty()) {
+            return Optional.of(new PageImpl<>(List.of(), pageRequest, ids.getTotalElements()));
+        }
+
+        Map<UUID, BeerOrder> ordersById = beerOrderRepository.findWithLinesAndShipmentByIdIn(ids.getContent()).stream()
+                .collect(Collectors.toMap(BeerOrder::getId, Function.identity()));
+
+        // back in the order of the page
+        return Optional.of(ids.map(id -> beerOrderMapper.beerOrderToBeerOrderDto(ordersById.get(id))));
+    }
+
+    // One short transaction and no row lock: customer, beers of the lines (one IN query), the stock reserved in memory,
+    // then the order insert and one JDBC batch of all its lines (hibernate.jdbc.batch_size, order_inserts groups
+    // them per table: two tables, so at least two round trips).
+    // The stock is taken off the beers later, in batches (StockReservations).
+    @Override
+    @Transactional
+    public Optional<BeerOrderDTO> placeOrder(UUID customerId, BeerOrderCreateDTO beerOrderCreate) {
+        Optional<Customer> customer = customerRepository.findById(customerId);
+        if (customer.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Map<UUID, Integer> quantities = new HashMap<>();
+        for (BeerOrderLineCreateDTO line : beerOrderCreate.getBeerOrderLines()) {
+            quantities.merge(line.getBeerId(), line.getOrderQuantity(), Integer::sum);
+        }
+
+        Map<UUID, Beer> beers = beerRepository.findAllById(quantities.keySet()).stream()
+                .collect(Collectors.toMap(Beer::getId, Function.identity()));
+
+        if (beers.size() < quantities.size()) {
+            throw new UnknownBeerException(quantities.keySet().stream().filter(id -> !beers.containsKey(id)).toList());
+        }
+
+        // all or nothing per order: if one beer is short, no line is allocated (the order is backordered)
+        boolean reserved = stockReservations.reserve(quantities);
+
+        BeerOrder beerOrder = BeerOrder.builder()
+                .customerRef(beerOrderCreate.getCustomerRef())
+                .customer(customer.get())
+                .beerOrderLines(new LinkedHashSet<>())
+                .build();
+
+        for (BeerOrderLineCreateDTO line : beerOrderCreate.getBeerOrderLines()) {
+            beerOrder.getBeerOrderLines().add(BeerOrderLine.builder()
+                    .beerOrder(beerOrder)
+                    .beer(beers.get(line.getBeerId()))
+                    .orderQuantity(line.getOrderQuantity())
+                    .quantityAllocated(reserved ? line.getOrderQuantity() : 0)
+                    .stockApplied(!reserved)
+                    .build());
+        }
+
+        if (reserved) {
+            // from here a rollback gives the stock back
+            eventPublisher.publishEvent(new StockReservedEvent(quantities, beerOrder.getBeerOrderLines()));
+        }
+
+        // the lines are cascaded. Flushed here so the response has the timestamps and versions; the lines still go as one batch
+        return Optional.of(beerOrderMapper.beerOrderToBeerOrderDto(beerOrderRepository.saveAndFlush(beerOrder)));
+    }
+}
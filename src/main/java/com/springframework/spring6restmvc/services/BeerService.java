@@ -1,22 +1,51 @@
 package com.springframework.spring6restmvc.services;
 
+import com.springframework.spring6restmvc.model.BeerCursor;
 import com.springframework.spring6restmvc.model.BeerDTO;
+import com.springframework.spring6restmvc.model.BeerKeysetPage;
 import com.springframework.spring6restmvc.model.BeerStyle;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.UUID;
 
 public interface BeerService {
     Page<BeerDTO> listBeers(String beerName, BeerStyle beerStyle, Boolean isShowInventory, Integer pageNumber, Integer pageSize);
 
+    // like listBeers, but without the total count
+    Slice<BeerDTO> listBeersSlice(String beerName, BeerStyle beerStyle, Boolean isShowInventory, Integer pageNumber, Integer pageSize);
+
+    // last total computed in the background for the filter, empty if not known yet
+    Optional<Long> getApproximateBeerCount(String beerName, BeerStyle beerStyle);
+
+    // cursor == null means the first page
+    BeerKeysetPage listBeersByCursor(String beerName, BeerStyle beerStyle, Boolean isShowInventory, BeerCursor cursor, Integer pageSize);
+
+    // hands every beer to the consumer, one at a time, and returns how many there were
+    long exportBeers(Consumer<BeerDTO> consumer);
+
     BeerDTO saveNewBeer(BeerDTO beer);
 
     Optional<BeerDTO> getBeerById(UUID id);
 
-    Optional<BeerDTO> updateById(UUID beerId, BeerDTO beer);
+    // only the @Version of the beer, for ETag checks
+    Optional<Integer> getBeerVersion(UUID id);
+
+    // changes whenever any beer changes, for ETags of list pages. No database access
+    String getBeerCatalogVersion();
+
+    // the same after a probe for writes made outside this instance: for conditional requests (If-None-Match)
+    String checkBeerCatalogVersion();
+
+    // expectedVersion (from If-Match) makes the write conditional: a beer with another version is not changed and
+    // ObjectOptimisticLockingFailureException is thrown. null writes whatever the current version is.
+    // The returned beer holds the id, the new version and the written values. Empty if there is no such beer.
+    Optional<BeerDTO> updateById(UUID beerId, BeerDTO beer, Integer expectedVersion);
 
     Boolean deleteById(UUID beerId);
 
-    Optional<BeerDTO> patchBeerById(UUID beerId, BeerDTO beer);
+    // same contract as updateById, only the non-empty values of the patch are written
+    Optional<BeerDTO> patchBeerById(UUID beerId, BeerDTO beer, Integer expectedVersion);
 }
@@ -1,26 +1,69 @@
 package com.springframework.spring6restmvc.services;
 
+import com.springframework.spring6restmvc.model.BeerCursor;
 import com.springframework.spring6restmvc.model.BeerDTO;
+import com.springframework.spring6restmvc.model.BeerKeysetPage;
 import com.springframework.spring6restmvc.model.BeerStyle;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.*;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// BeerService without a database. Safe for any number of concurrent readers and writers:
+// - beerMap holds the beers by id. A stored BeerDTO is never changed: a write stores a new copy, readers get their own copy.
+// - byName / byStyle are sorted indexes in the listing order, so a page is read off an index instead of sorting every beer.
+// - writes of one beer run one at a time (ConcurrentHashMap.compute), writes of other beers and all reads are not blocked.
 @Slf4j
 @Service
 public class BeerServiceImpl implements BeerService {
 
-    private final Map<UUID, BeerDTO> beerMap;
+    private final static int DEFAULT_PAGE_SIZE = 25;
+    private final static int MAX_PAGE_SIZE = 1000;
+
+    // the order of the JPA listing: name asc, style desc, id asc.
+    // Ids compare as unsigned numbers, which is the order of their text form (what the database sorts).
+    private static final Comparator<BeerKey> LISTING_ORDER = Comparator
+            .comparing(BeerKey::beerName, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+            .thenComparing(BeerKey::beerStyle, Comparator.nullsLast(Comparator.<BeerStyle>reverseOrder()))
+            .thenComparing(BeerKey::id, BeerServiceImpl::compareIds);
+
+    private static final Sort LISTING_SORT = Sort.by(Sort.Order.asc("beerName"), Sort.Order.desc("beerStyle"), Sort.Order.asc("id"));
+
+    private final Map<UUID, BeerDTO> beerMap = new ConcurrentHashMap<>();
+
+    private final NavigableSet<BeerKey> byName = new ConcurrentSkipListSet<>(LISTING_ORDER);
+
+    // both filled once here and never changed structurally afterwards, only their values are
+    private final Map<BeerStyle, NavigableSet<BeerKey>> byStyle = new EnumMap<>(BeerStyle.class);
+    private final Map<BeerStyle, AtomicInteger> styleCounts = new EnumMap<>(BeerStyle.class); // size() of a skip list walks it
+
+    private final AtomicLong catalogVersion = new AtomicLong();
 
     public BeerServiceImpl() {
 
-        beerMap = new HashMap<>();
+        for (BeerStyle style : BeerStyle.values()) {
+            byStyle.put(style, new ConcurrentSkipListSet<>(LISTING_ORDER));
+            styleCounts.put(style, new AtomicInteger());
+        }
 
         BeerDTO beer1 = BeerDTO.builder()
                 .id(UUID.randomUUID())
@@ -58,32 +101,104 @@ public class BeerServiceImpl implements BeerService {
                 .updateDate(LocalDateTime.now())
                 .build();
 
-        beerMap.put(beer1.getId(), beer1);
-        beerMap.put(beer2.getId(), beer2);
-        beerMap.put(beer3.getId(), beer3);
+        write(beer1.getId(), existing -> beer1);
+        write(beer2.getId(), existing -> beer2);
+        write(beer3.getId(), existing -> beer3);
     }
 
     @Override
     public Page<BeerDTO> listBeers(String beerName, BeerStyle beerStyle, Boolean isShowInventory, Integer pageNumber, Integer pageSize) {
-        return new PageImpl<>(new ArrayList<>(beerMap.values()));
+        PageRequest pageRequest = buildPageRequest(pageNumber, pageSize);
+
+        List<BeerDTO> content = copies(matching(beerName, beerStyle, null)
+                .skip(pageRequest.getOffset())
+                .limit(pageRequest.getPageSize()), isShowInventory);
+
+        return new PageImpl<>(content, pageRequest, count(beerName, beerStyle));
+    }
+
+    @Override
+    public Slice<BeerDTO> listBeersSlice(String beerName, BeerStyle beerStyle, Boolean isShowInventory, Integer pageNumber, Integer pageSize) {
+        PageRequest pageRequest = buildPageRequest(pageNumber, pageSize);
+
+        // one extra beer tells whether there is a next slice
+        List<BeerDTO> content = copies(matching(beerName, beerStyle, null)
+                .skip(pageRequest.getOffset())
+                .limit(pageRequest.getPageSize() + 1L), isShowInventory);
+
+        boolean hasNext = content.size() > pageRequest.getPageSize();
+
+        return new SliceImpl<>(hasNext ? content.subList(0, pageRequest.getPageSize()) : content, pageRequest, hasNext);
+    }
+
+    @Override
+    public Optional<Long> getApproximateBeerCount(String beerName, BeerStyle beerStyle) {
+        // exact in memory
+        return Optional.of(count(beerName, beerStyle));
+    }
+
+    @Override
+    public BeerKeysetPage listBeersByCursor(String beerName, BeerStyle beerStyle, Boolean isShowInventory, BeerCursor cursor, Integer pageSize) {
+        int size = buildPageRequest(null, pageSize).getPageSize();
+
+        BeerKey after = cursor == null ? null : new BeerKey(cursor.getBeerName(), cursor.getBeerStyle(), cursor.getId());
+
+        List<BeerDTO> beers = copies(matching(beerName, beerStyle, after).limit(size + 1L), isShowInventory);
+
+        boolean hasNext = beers.size() > size;
+        List<BeerDTO> content = hasNext ? beers.subList(0, size) : beers;
+
+        return BeerKeysetPage.builder()
+                .content(content)
+                .size(size)
+                .nextCursor(hasNext ? BeerCursor.of(content.get(content.size() - 1)).encode() : null)
+                .build();
     }
 
     @Override
     public Optional<BeerDTO> getBeerById(UUID id) {
 
         log.debug("Get Beer by Id - in service. Id: {}", id);
-        log.debug("The beer is: {}", beerMap.get(id));
 
-        return Optional.of(beerMap.get(id));
+        return Optional.ofNullable(beerMap.get(id)).map(BeerServiceImpl::copy);
+    }
+
+    @Override
+    public Optional<Integer> getBeerVersion(UUID id) {
+        return Optional.ofNullable(beerMap.get(id)).map(BeerDTO::getVersion);
+    }
+
+    @Override
+    public String getBeerCatalogVersion() {
+        return Long.toString(catalogVersion.get());
+    }
+
+    // nobody else writes the map
+    @Override
+    public String checkBeerCatalogVersion() {
+        return getBeerCatalogVersion();
+    }
+
+    @Override
+    public long exportBeers(Consumer<BeerDTO> consumer) {
+        long count = 0;
+
+        for (BeerDTO beer : beerMap.values()) {
+            consumer.accept(copy(beer));
+            count++;
+        }
+
+        return count;
     }
 
     @Override
     public BeerDTO saveNewBeer(BeerDTO beer) {
+        LocalDateTime now = LocalDateTime.now();
 
         BeerDTO savedBeer = BeerDTO.builder()
                 .id(UUID.randomUUID())
-                .createdDate(LocalDateTime.now())
-                .updateDate(LocalDateTime.now())
+                .createdDate(now)
+                .updateDate(now)
                 .version(1)
                 .beerName(beer.getBeerName())
                 .beerStyle(beer.getBeerStyle())
@@ -92,67 +207,208 @@ public class BeerServiceImpl implements BeerService {
                 .price(beer.getPrice())
                 .build();
 
-        beerMap.put(savedBeer.getId(), savedBeer);
-
-        return savedBeer;
+        return copy(write(savedBeer.getId(), existing -> savedBeer));
     }
 
     @Override
-    public Optional<BeerDTO> updateById(UUID beerId, BeerDTO beer) {
-        BeerDTO existing = beerMap.get(beerId);
+    public Optional<BeerDTO> updateById(UUID beerId, BeerDTO beer, Integer expectedVersion) {
+        return Optional.ofNullable(write(beerId, existing -> {
+            if (existing == null) {
+                return null;
+            }
+            checkVersion(existing, expectedVersion);
+
+            BeerDTO updated = copy(existing);
+            updated.setBeerName(beer.getBeerName());
+            updated.setBeerStyle(beer.getBeerStyle());
+            updated.setUpc(beer.getUpc());
+            // like BeerServiceJPA: a PUT does not write the stock, it moves through the inventory (or a PATCH)
+            updated.setPrice(beer.getPrice());
+            updated.setUpdateDate(LocalDateTime.now());
+            updated.setVersion(existing.getVersion() + 1);
+
+            log.debug("Beer after update: {}", updated);
+
+            return updated;
+        })).map(BeerServiceImpl::copy);
+    }
 
-        log.debug("Beer before update: {}", existing);
+    @Override
+    public Boolean deleteById(UUID beerId) {
+        log.debug("Deleting Beer with id: {}", beerId);
 
-        existing.setBeerName(beer.getBeerName());
-        existing.setBeerStyle(beer.getBeerStyle());
-        existing.setUpc(beer.getUpc());
-        existing.setQuantityOnHand(beer.getQuantityOnHand());
-        existing.setPrice(beer.getPrice());
-        existing.setUpdateDate(LocalDateTime.now());
+        AtomicBoolean deleted = new AtomicBoolean();
 
-        log.debug("Beer after update: {}", existing);
+        write(beerId, existing -> {
+            deleted.set(existing != null);
+            return null;
+        });
 
-        return Optional.of(existing);
+        return deleted.get();
     }
 
     @Override
-    public Boolean deleteById(UUID beerId) {
-        log.debug("Deleting Beer with id: {}", beerId);
+    public Optional<BeerDTO> patchBeerById(UUID beerId, BeerDTO beer, Integer expectedVersion) {
+        return Optional.ofNullable(write(beerId, existing -> {
+            if (existing == null) {
+                return null;
+            }
+            checkVersion(existing, expectedVersion);
+
+            BeerDTO patched = copy(existing);
+
+            if (StringUtils.hasText(beer.getBeerName())) {
+                patched.setBeerName(beer.getBeerName());
+            }
+
+            if (beer.getBeerStyle() != null) {
+                patched.setBeerStyle(beer.getBeerStyle());
+            }
+
+            if (StringUtils.hasText(beer.getUpc())) {
+                patched.setUpc(beer.getUpc());
+            }
+
+            if (beer.getQuantityOnHand() != null) {
+                patched.setQuantityOnHand(beer.getQuantityOnHand());
+            }
+
+            if (beer.getPrice() != null) {
+                patched.setPrice(beer.getPrice());
+            }
+
+            patched.setUpdateDate(LocalDateTime.now());
+            patched.setVersion(existing.getVersion() + 1);
 
-        beerMap.remove(beerId);
+            log.debug("Beer after patch: {}", patched);
 
-        return true;
+            return patched;
+        })).map(BeerServiceImpl::copy);
     }
 
-    @Override
-    public Optional<BeerDTO> patchBeerById(UUID beerId, BeerDTO beer) {
-        BeerDTO existing = beerMap.get(beerId);
+    // same paging rules as BeerServiceJPA: pages start at 1, default size 25, at most 1000
+    PageRequest buildPageRequest(Integer pageNumber, Integer pageSize) {
+        int queryPageNumber = pageNumber != null && pageNumber > 0 ? pageNumber - 1 : 0;
+        int queryPageSize = pageSize == null ? DEFAULT_PAGE_SIZE : Math.min(pageSize, MAX_PAGE_SIZE);
+
+        return PageRequest.of(queryPageNumber, queryPageSize, LISTING_SORT);
+    }
 
-        log.debug("Beer before patch: {}", existing);
+    // The only way beers are changed. change gets the stored beer (null if none) and returns the beer to store
+    // (null removes it, the same instance changes nothing). It runs inside compute, so it must not touch beerMap.
+    private BeerDTO write(UUID id, UnaryOperator<BeerDTO> change) {
+        return beerMap.compute(id, (key, existing) -> {
+            BeerDTO changed = change.apply(existing);
+
+            if (changed != existing) {
+                reindex(existing, changed);
+                catalogVersion.incrementAndGet();
+            }
+
+            return changed;
+        });
+    }
 
-        if (StringUtils.hasText(beer.getBeerName())) {
-            existing.setBeerName(beer.getBeerName());
+    private void reindex(BeerDTO existing, BeerDTO changed) {
+        BeerKey oldKey = existing == null ? null : BeerKey.of(existing);
+        BeerKey newKey = changed == null ? null : BeerKey.of(changed);
+
+        if (Objects.equals(oldKey, newKey)) {
+            return;
         }
 
-        if (beer.getBeerStyle() != null) {
-            existing.setBeerStyle(beer.getBeerStyle());
+        if (newKey != null) {
+            byName.add(newKey);
+
+            if (newKey.beerStyle() != null) {
+                byStyle.get(newKey.beerStyle()).add(newKey);
+                styleCounts.get(newKey.beerStyle()).incrementAndGet();
+            }
+        }
+
+        if (oldKey != null) {
+            byName.remove(oldKey);
+
+            if (oldKey.beerStyle() != null) {
+                byStyle.get(oldKey.beerStyle()).remove(oldKey);
+                styleCounts.get(oldKey.beerStyle()).decrementAndGet();
+            }
         }
+    }
+
+    // The stored beers matching the filters, in listing order, after the given position (null: from the start).
+    // Index entries are checked against the stored beer, so an entry left behind by a write that is still running is
+    // skipped. A rename adds the new key before it stores the new beer: a read can pass the old key while the old
+    // beer is still stored and reach the new key after it was replaced, so ids already listed are dropped.
+    // A beer renamed at the very moment of the read can still be missing from the page, or show up on two pages.
+    private Stream<BeerDTO> matching(String beerName, BeerStyle beerStyle, BeerKey after) {
+        NavigableSet<BeerKey> index = beerStyle == null ? byName : byStyle.get(beerStyle);
 
-        if (StringUtils.hasText(beer.getUpc())) {
-            existing.setUpc(beer.getUpc());
+        if (after != null) {
+            index = index.tailSet(after, false);
         }
 
-        if (beer.getQuantityOnHand() != null) {
-            existing.setQuantityOnHand(beer.getQuantityOnHand());
+        String nameFilter = StringUtils.hasText(beerName) ? beerName.toLowerCase() : null;
+        Set<UUID> listed = new HashSet<>();
+
+        return index.stream()
+                .filter(key -> nameFilter == null || key.lowerCaseName().contains(nameFilter))
+                .map(key -> {
+                    BeerDTO beer = beerMap.get(key.id());
+
+                    return beer != null && key.matches(beer) ? beer : null;
+                })
+                .filter(beer -> beer != null && listed.add(beer.getId()));
+    }
+
+    private long count(String beerName, BeerStyle beerStyle) {
+        if (StringUtils.hasText(beerName)) {
+            return matching(beerName, beerStyle, null).count();
         }
 
-        if (beer.getPrice() != null) {
-            existing.setPrice(beer.getPrice());
+        return beerStyle == null ? beerMap.size() : styleCounts.get(beerStyle).get();
+    }
+
+    private static List<BeerDTO> copies(Stream<BeerDTO> beers, Boolean isShowInventory) {
+        List<BeerDTO> content = beers.map(BeerServiceImpl::copy).collect(Collectors.toList());
+
+        if (isShowInventory != null && !isShowInventory) {
+            content.forEach(beer -> beer.setQuantityOnHand(null));
         }
 
-        log.debug("Beer after patch: {}", existing);
+        return content;
+    }
 
-        return Optional.of(existing);
+    private static BeerDTO copy(BeerDTO beer) {
+        return new BeerDTO(beer.getId(), beer.getVersion(), beer.getBeerName(), beer.getBeerStyle(), beer.getUpc(),
+                beer.getQuantityOnHand(), beer.getPrice(), beer.getCreatedDate(), beer.getUpdateDate());
     }
 
+    private static int compareIds(UUID first, UUID second) {
+        int result = Long.compareUnsigned(first.getMostSignificantBits(), second.getMostSignificantBits());
+
+        return result != 0 ? result : Long.compareUnsigned(first.getLeastSignificantBits(), second.getLeastSignificantBits());
+    }
+
+    private void checkVersion(BeerDTO existing, Integer expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(existing.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(BeerDTO.class, existing.getId());
+        }
+    }
+
+    // position of a beer in the indexes
+    private record BeerKey(String beerName, BeerStyle beerStyle, UUID id, String lowerCaseName) {
+
+        BeerKey(String beerName, BeerStyle beerStyle, UUID id) {
+            this(beerName, beerStyle, id, beerName == null ? "" : beerName.toLowerCase());
+        }
+
+        static BeerKey of(BeerDTO beer) {
+            return new BeerKey(beer.getBeerName(), beer.getBeerStyle(), beer.getId());
+        }
+
+        boolean matches(BeerDTO beer) {
+            return Objects.equals(beerName, beer.getBeerName()) && beerStyle == beer.getBeerStyle();
+        }
+    }
 }
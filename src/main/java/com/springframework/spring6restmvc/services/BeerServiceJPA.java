@@ -2,19 +2,37 @@ package com.springframework.spring6restmvc.services;
 
 import com.springframework.spring6restmvc.entities.Beer;
 import com.springframework.spring6restmvc.mappers.BeerMapper;
+import com.springframework.spring6restmvc.model.BeerCursor;
 import com.springframework.spring6restmvc.model.BeerDTO;
+import com.springframework.spring6restmvc.model.BeerKeysetPage;
 import com.springframework.spring6restmvc.model.BeerStyle;
 import com.springframework.spring6restmvc.repositories.BeerRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Primary;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @Primary // this implementation of the BeerService will be primarily used by spring
@@ -22,12 +40,21 @@ import java.util.concurrent.atomic.AtomicReference;
 public class BeerServiceJPA implements BeerService {
     private final BeerRepository beerRepository;
     private final BeerMapper beerMapper;
+    private final BeerCountCache beerCountCache;
+    private final BeerNameIndex beerNameIndex;
+    private final BeerDtoCache beerDtoCache;
+    private final CatalogVersions catalogVersions;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EntityManager entityManager;
+    private final Validator validator;
 
     private final static Integer DEFAULT_PAGE = 0;
     private final static Integer DEFAULT_PAGE_SIZE = 25;
     private final static Integer MAX_PAGE_SIZE = 1000;
+    private final static int EXPORT_CLEAR_INTERVAL = 1000;
 
-    public PageRequest buildPageRequest(Integer pageNumber, Integer pageSize) {
+    // static: no collaborator is needed to turn the query parameters into a page request
+    public static PageRequest buildPageRequest(Integer pageNumber, Integer pageSize) {
         int queryPageNumber;
         int queryPageSize;
 
@@ -48,7 +75,9 @@ public class BeerServiceJPA implements BeerService {
         }
 
         // use Sort just for experiencing how to use:
-        Sort sort = Sort.by(Sort.Order.asc("beerName"), Sort.Order.desc("beerStyle"));
+        // the order of the beer_name_style_idx / beer_style_name_idx indexes (V6), so pages are read in index order without a sort.
+        // id makes it a total order: rows with the same name and style keep their page between requests
+        Sort sort = Sort.by(Sort.Order.asc("beerName"), Sort.Order.desc("beerStyle"), Sort.Order.asc("id"));
 
         return PageRequest.of(queryPageNumber, queryPageSize, sort);
     }
@@ -56,7 +85,7 @@ public class BeerServiceJPA implements BeerService {
     @Override
     public Page<BeerDTO> listBeers(String beerName, BeerStyle beerStyle, Boolean isShowInventory, Integer pageNumber, Integer pageSize) {
 
-        Page<Beer> beerPage;
+        Page<BeerDTO> beerPage;
         PageRequest pageRequest = buildPageRequest(pageNumber, pageSize);
 
         if (StringUtils.hasText(beerName) && beerStyle == null) {
@@ -66,71 +95,200 @@ public class BeerServiceJPA implements BeerService {
         } else if (StringUtils.hasText(beerName) && beerStyle != null) {
             beerPage = listBeerByNameAndStyle(beerName, beerStyle, pageRequest);
         } else {
-            beerPage = beerRepository.findAll(pageRequest);
+            beerPage = beerRepository.findAllBeerDtos(pageRequest);
         }
 
+        // projected DTOs are plain objects: clearing a field here never reaches the database
         if (isShowInventory != null && !isShowInventory) {
             beerPage.forEach(beer -> beer.setQuantityOnHand(null));
         }
 
-        // map method of the Page object.
-        return beerPage.map(beerMapper::beerToBeerDto);
+        return beerPage;
     }
 
-    Page<Beer> listBeerByName(String beerName, PageRequest pageRequest) {
-        return beerRepository.findAllByBeerNameIsLikeIgnoreCase("%" + beerName + "%", pageRequest);
+    @Override
+    public Slice<BeerDTO> listBeersSlice(String beerName, BeerStyle beerStyle, Boolean isShowInventory, Integer pageNumber, Integer pageSize) {
+
+        Slice<Beer> beerSlice;
+        PageRequest pageRequest = buildPageRequest(pageNumber, pageSize);
+
+        if (StringUtils.hasText(beerName) && beerStyle == null) {
+            beerSlice = beerRepository.findSliceByBeerNameIsLikeIgnoreCase("%" + beerName + "%", pageRequest);
+        } else if (!StringUtils.hasText(beerName) && beerStyle != null) {
+            beerSlice = beerRepository.findSliceByBeerStyle(beerStyle, pageRequest);
+        } else if (StringUtils.hasText(beerName) && beerStyle != null) {
+            beerSlice = beerRepository.findSliceByBeerNameIsLikeIgnoreCaseAndBeerStyle("%" + beerName + "%", beerStyle, pageRequest);
+        } else {
+            beerSlice = beerRepository.findAllSliced(pageRequest);
+        }
+
+        if (isShowInventory != null && !isShowInventory) {
+            beerSlice.forEach(beer -> beer.setQuantityOnHand(null));
+        }
+
+        return beerSlice.map(beerMapper::beerToBeerDto);
+    }
+
+    @Override
+    public Optional<Long> getApproximateBeerCount(String beerName, BeerStyle beerStyle) {
+        return beerCountCache.getApproximateCount(beerName, beerStyle);
+    }
+
+    @Override
+    public BeerKeysetPage listBeersByCursor(String beerName, BeerStyle beerStyle, Boolean isShowInventory, BeerCursor cursor, Integer pageSize) {
+
+        // same size rules as the offset listing
+        int queryPageSize = buildPageRequest(null, pageSize).getPageSize();
+
+        // ask for one extra row: if it comes back, there is a next page (no count query needed to know it)
+        PageRequest limit = PageRequest.of(0, queryPageSize + 1);
+        String nameFilter = StringUtils.hasText(beerName) ? "%" + beerName + "%" : null;
+
+        List<Beer> beers;
+
+        if (cursor == null) {
+            beers = beerRepository.findKeysetFirstPage(nameFilter, beerStyle, limit);
+        } else {
+            beers = beerRepository.findKeysetPageAfter(nameFilter, beerStyle,
+                    cursor.getBeerName(), cursor.getBeerStyle(), cursor.getId(), limit);
+        }
+
+        boolean hasNext = beers.size() > queryPageSize;
+
+        List<BeerDTO> content = beers.stream()
+                .limit(queryPageSize)
+                .map(beerMapper::beerToBeerDto)
+                .collect(Collectors.toList());
+
+        String nextCursor = hasNext ? BeerCursor.of(content.get(content.size() - 1)).encode() : null;
+
+        if (isShowInventory != null && !isShowInventory) {
+            content.forEach(beer -> beer.setQuantityOnHand(null));
+        }
+
+        return BeerKeysetPage.builder()
+                .content(content)
+                .size(queryPageSize)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    // The name index resolves the matching ids in memory, so only those rows are read.
+    // The LIKE query (a full scan) is the fallback when the index cannot answer or matches too many beers
+    // for an IN list.
+    Page<BeerDTO> listBeerByName(String beerName, PageRequest pageRequest) {
+        Optional<Set<UUID>> ids = beerNameIndex.findIdsByNameContaining(beerName);
+
+        if (ids.isPresent()) {
+            return ids.get().isEmpty() ? Page.empty(pageRequest) : beerRepository.findBeerDtosByIdIn(ids.get(), pageRequest);
+        }
+
+        return beerRepository.findBeerDtosByBeerNameLike("%" + beerName + "%", pageRequest);
     }
 
-    Page<Beer> listBeerByStyle(BeerStyle style, PageRequest pageRequest) {
-        return beerRepository.findAllByBeerStyle(style, pageRequest);
+    Page<BeerDTO> listBeerByStyle(BeerStyle style, PageRequest pageRequest) {
+        return beerRepository.findBeerDtosByBeerStyle(style, pageRequest);
     }
 
-    Page<Beer> listBeerByNameAndStyle(String beerName, BeerStyle style, PageRequest pageRequest) {
-        return beerRepository.findAllByBeerNameIsLikeIgnoreCaseAndBeerStyle(
-                "%" + beerName + "%", style, pageRequest);
+    Page<BeerDTO> listBeerByNameAndStyle(String beerName, BeerStyle style, PageRequest pageRequest) {
+        Optional<Set<UUID>> ids = beerNameIndex.findIdsByNameContaining(beerName);
+
+        if (ids.isPresent()) {
+            return ids.get().isEmpty() ? Page.empty(pageRequest) : beerRepository.findBeerDtosByIdInAndBeerStyle(ids.get(), style, pageRequest);
+        }
+
+        return beerRepository.findBeerDtosByBeerNameLikeAndBeerStyle("%" + beerName + "%", style, pageRequest);
+    }
+
+    // One query for the whole catalog. The persistence context is cleared every EXPORT_CLEAR_INTERVAL beers,
+    // so memory stays flat no matter how many beers are exported.
+    @Override
+    @Transactional(readOnly = true)
+    public long exportBeers(Consumer<BeerDTO> consumer) {
+        long count = 0;
+
+        try (Stream<Beer> beers = beerRepository.streamAll()) {
+            Iterator<Beer> iterator = beers.iterator();
+
+            while (iterator.hasNext()) {
+                consumer.accept(beerMapper.beerToBeerDto(iterator.next()));
+
+                if (++count % EXPORT_CLEAR_INTERVAL == 0) {
+                    entityManager.clear();
+                }
+            }
+        }
+
+        return count;
     }
 
     @Override
     public BeerDTO saveNewBeer(BeerDTO beerDTO) {
-        return beerMapper.beerToBeerDto(
+        BeerDTO savedBeer = beerMapper.beerToBeerDto(
                 beerRepository.save(beerMapper.beerDtoToBeer(beerDTO))
         );
+
+        eventPublisher.publishEvent(BeerChangedEvent.saved(savedBeer));
+
+        return savedBeer;
     }
 
     @Override
     public Optional<BeerDTO> getBeerById(UUID id) {
-        return Optional.ofNullable(
-                beerMapper.beerToBeerDto(beerRepository.findById(id).orElse(null))
-        );
+        return beerDtoCache.get(id, beerId -> Optional.ofNullable(
+                beerMapper.beerToBeerDto(beerRepository.findById(beerId).orElse(null))
+        ));
+    }
+
+    @Override
+    public Optional<Integer> getBeerVersion(UUID id) {
+        return beerRepository.findVersionById(id);
     }
 
     @Override
-    public Optional<BeerDTO> updateById(UUID beerId, BeerDTO beer) {
+    public String getBeerCatalogVersion() {
+        return catalogVersions.current(Beer.class);
+    }
 
-        // cannot reach object created in stream, So, create a reference for it here and reach over reference
-        AtomicReference<Optional<BeerDTO>> atomicReference = new AtomicReference<>();
+    @Override
+    public String checkBeerCatalogVersion() {
+        return catalogVersions.checked(Beer.class);
+    }
 
-        beerRepository.findById(beerId).ifPresentOrElse(foundBeer -> {
-            foundBeer.setBeerName(beer.getBeerName());
-            foundBeer.setBeerStyle(beer.getBeerStyle());
-            foundBeer.setUpc(beer.getUpc());
-            foundBeer.setPrice(beer.getPrice());
+    // One UPDATE ... WHERE id = ? AND version = ? instead of findById + save (SELECT, then UPDATE at flush).
+    // Bean validation of the entity does not run for update statements, so the values are validated here.
+    @Override
+    @Transactional
+    public Optional<BeerDTO> updateById(UUID beerId, BeerDTO beer, Integer expectedVersion) {
+        BeerDTO changes = BeerDTO.builder()
+                .id(beerId)
+                .beerName(beer.getBeerName())
+                .beerStyle(beer.getBeerStyle())
+                .upc(beer.getUpc())
+                .price(beer.getPrice())
+                .updateDate(LocalDateTime.now())
+                .build();
+
+        if (!validate(changes, false)) {
+            return Optional.empty();
+        }
 
-            atomicReference.set(Optional.of(
-                    beerMapper
-                            .beerToBeerDto(beerRepository.save(foundBeer))
-            ));
-        }, () -> {
-            atomicReference.set(Optional.empty());
-        });
+        BeerDTO previous = previousStatsColumns(changes);
+        int updated = beerRepository.updateBeer(beerId, expectedVersion, changes.getBeerName(), changes.getBeerStyle(),
+                changes.getUpc(), changes.getPrice(), changes.getUpdateDate());
 
-        return atomicReference.get();
+        return updated(beerId, expectedVersion, updated, changes, previous);
     }
 
+    // the beer is read anyway to delete it: the event carries what was deleted
     @Override
+    @Transactional
     public Boolean deleteById(UUID beerId) {
-        if (beerRepository.existsById(beerId)) {
-            beerRepository.deleteById(beerId);
+        Optional<Beer> beer = beerRepository.findById(beerId);
+
+        if (beer.isPresent()) {
+            beerRepository.delete(beer.get());
+            eventPublisher.publishEvent(BeerChangedEvent.deleted(beerMapper.beerToBeerDto(beer.get())));
             return true;
         }
 
@@ -138,41 +296,89 @@ public class BeerServiceJPA implements BeerService {
     }
 
     @Override
-    public Optional<BeerDTO> patchBeerById(UUID beerId, BeerDTO beer) {
-        AtomicReference<Optional<BeerDTO>> atomicReference = new AtomicReference<>();
+    @Transactional
+    public Optional<BeerDTO> patchBeerById(UUID beerId, BeerDTO beer, Integer expectedVersion) {
+        BeerDTO changes = BeerDTO.builder()
+                .id(beerId)
+                .beerName(StringUtils.hasText(beer.getBeerName()) ? beer.getBeerName() : null)
+                .beerStyle(beer.getBeerStyle())
+                .upc(StringUtils.hasText(beer.getUpc()) ? beer.getUpc() : null)
+                .quantityOnHand(beer.getQuantityOnHand())
+                .price(beer.getPrice())
+                .updateDate(LocalDateTime.now())
+                .build();
+
+        if (!validate(changes, true)) {
+            return Optional.empty();
+        }
 
-        beerRepository.findById(beerId).ifPresentOrElse(existing -> {
+        BeerDTO previous = previousStatsColumns(changes);
+        int updated = beerRepository.patchBeer(beerId, expectedVersion, changes.getBeerName(), changes.getBeerStyle(),
+                changes.getUpc(), changes.getQuantityOnHand(), changes.getPrice(), changes.getUpdateDate());
 
-            if (StringUtils.hasText(beer.getBeerName())) {
-                existing.setBeerName(beer.getBeerName());
-            }
+        return updated(beerId, expectedVersion, updated, changes, previous);
+    }
 
-            if (beer.getBeerStyle() != null) {
-                existing.setBeerStyle(beer.getBeerStyle());
+    // The new version is known without reading the row when the update was conditional. An unconditional update
+    // leaves it out: reading it afterwards would be one more statement and could see another writer's version.
+    // When nothing was updated, a version probe tells a missing beer from a stale expectedVersion.
+    private Optional<BeerDTO> updated(UUID beerId, Integer expectedVersion, int updated, BeerDTO changes, BeerDTO previous) {
+        if (updated == 0) {
+            if (expectedVersion != null && beerRepository.findVersionById(beerId).isPresent()) {
+                throw new ObjectOptimisticLockingFailureException(Beer.class, beerId);
             }
+            return Optional.empty();
+        }
 
-            if (beer.getQuantityOnHand() != null) {
-                existing.setQuantityOnHand(beer.getQuantityOnHand());
-            }
+        changes.setVersion(expectedVersion != null ? expectedVersion + 1 : null);
 
-            if (StringUtils.hasText(beer.getUpc())) {
-                existing.setUpc(beer.getUpc());
-            }
+        eventPublisher.publishEvent(BeerChangedEvent.updated(changes, previous));
 
-            if (beer.getPrice() != null) {
-                existing.setPrice(beer.getPrice());
-            }
+        return Optional.of(changes);
+    }
 
-            atomicReference.set(
-                    Optional.of(
-                          beerMapper.beerToBeerDto(beerRepository.save(existing))
-                    )
-            );
+    // The style, price and quantity the update replaces, read under the row lock the update takes anyway: the event
+    // carries them so BeerStyleStats can apply the update as a delta. Null when none of them is written or no beer
+    private BeerDTO previousStatsColumns(BeerDTO changes) {
+        if (changes.getBeerStyle() == null && changes.getPrice() == null && changes.getQuantityOnHand() == null) {
+            return null;
+        }
 
-        }, () -> {
-            atomicReference.set(Optional.empty());
-        });
+        // [beerStyle, price, quantityOnHand]
+        return beerRepository.findStatsColumnsByIdForUpdate(changes.getId()).stream()
+                .findFirst()
+                .map(row -> BeerDTO.builder()
+                        .id(changes.getId())
+                        .beerStyle((BeerStyle) row[0])
+                        .price((BigDecimal) row[1])
+                        .quantityOnHand((Integer) row[2])
+                        .build())
+                .orElse(null);
+    }
+
+    // The constraints of the Beer entity, checked value by value (a patch skips the values it does not write).
+    // Invalid values of an unknown beer are a not found (false), like before; the probe only runs for invalid values.
+    private boolean validate(BeerDTO changes, boolean skipNulls) {
+        Set<ConstraintViolation<Beer>> violations = new HashSet<>();
+
+        validateValue(violations, "beerName", changes.getBeerName(), skipNulls);
+        validateValue(violations, "beerStyle", changes.getBeerStyle(), skipNulls);
+        validateValue(violations, "upc", changes.getUpc(), skipNulls);
+        validateValue(violations, "quantityOnHand", changes.getQuantityOnHand(), true);
+        validateValue(violations, "price", changes.getPrice(), skipNulls);
 
-       return atomicReference.get();
+        if (violations.isEmpty()) {
+            return true;
+        }
+        if (!beerRepository.existsById(changes.getId())) {
+            return false;
+        }
+        throw new ConstraintViolationException(violations);
+    }
+
+    private void validateValue(Set<ConstraintViolation<Beer>> violations, String property, Object value, boolean skipNull) {
+        if (value != null || !skipNull) {
+            violations.addAll(validator.validateValue(Beer.class, property, value));
+        }
     }
 }
@@ -0,0 +1,295 @@
+package com.springframework.spring6restmvc.services;
+
+import com.springframework.spring6restmvc.model.BeerDTO;
+import com.springframework.spring6restmvc.model.BeerStyle;
+import com.springframework.spring6restmvc.model.BeerStyleStatsDTO;
+import com.springframework.spring6restmvc.repositories.BeerRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+// Per-style totals (count, quantity on hand, min / max / average price), read without touching the database:
+// a request only copies one entry per style. They follow the committed changes as deltas:
+// - new beers (SAVED events of the write paths, BeersImportedEvents of imports) are added to the totals right away
+// - updates carry the style, price and quantity they replaced (the update locks and reads the row first): the old
+//   values are taken out and the new ones added. Only the old min or max price of a style cannot be taken out
+// - stock movements (inventory and order flushes) carry their quantity delta: the next refresh (beer.stats.refresh-ms)
+//   adds them to the style of their beers, found with one lookup by id
+// - deleted beers are taken out of the totals, like the old values of an update
+// What cannot be followed (a min / max price taken out, an event without the old values) marks the totals as changed
+// and the next refresh recomputes them with one GROUP BY. Every beer.stats.reconcile-ms they are recomputed anyway,
+// for changes made outside the application. Changes that land while a recompute reads are applied to its result too.
+@Slf4j
+@Component
+public class BeerStyleStats {
+
+    private final BeerRepository beerRepository;
+    private final long reconcileNanos;
+
+    private static final int STYLE_LOOKUP_BATCH_SIZE = 1000;
+
+    private final AtomicBoolean changed = new AtomicBoolean(false);
+    private final Map<UUID, Long> quantityDeltas = new ConcurrentHashMap<>();
+    private volatile long lastReconcile = 0;
+
+    // replaced as a whole, never changed in place
+    private volatile Map<BeerStyle, Totals> totals = emptyTotals();
+
+    // non-null while a reconcile reads: the changes it has to apply to its result (guarded by this)
+    private List<Predicate<Map<BeerStyle, Totals>>> changesDuringReconcile;
+
+    public BeerStyleStats(BeerRepository beerRepository,
+                          @Value("${beer.stats.reconcile-ms:60000}") long reconcileMillis) {
+        this.beerRepository = beerRepository;
+        this.reconcileNanos = Duration.ofMillis(reconcileMillis).toNanos();
+    }
+
+    public Map<BeerStyle, BeerStyleStatsDTO> getStats() {
+        Map<BeerStyle, BeerStyleStatsDTO> result = new EnumMap<>(BeerStyle.class);
+        totals.forEach((style, styleTotals) -> result.put(style, styleTotals.toDto()));
+
+        return result;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBeerChanged(BeerChangedEvent event) {
+        BeerDTO beer = event.getBeer();
+
+        switch (event.getType()) {
+            case SAVED -> {
+                if (beer.getBeerStyle() != null) {
+                    change(newTotals -> add(newTotals, beer));
+                }
+            }
+            case UPDATED -> {
+                if (event.getQuantityDelta() != null) {
+                    quantityDeltas.merge(event.getBeerId(), event.getQuantityDelta(), Long::sum);
+                } else if (beer.getBeerStyle() != null || beer.getPrice() != null || beer.getQuantityOnHand() != null) {
+                    BeerDTO previous = event.getPrevious();
+
+                    if (previous == null || previous.getBeerStyle() == null
+                            || !change(newTotals -> replace(newTotals, previous, merged(previous, beer)))) {
+                        changed.set(true);
+                    }
+                }
+            }
+            case DELETED -> {
+                if (beer == null || beer.getBeerStyle() == null || !change(newTotals -> remove(newTotals, beer))) {
+                    changed.set(true);
+                }
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBeersImported(BeersImportedEvent event) {
+        change(newTotals -> {
+            for (BeerDTO beer : event.getBeers()) {
+                if (beer.getBeerStyle() != null) {
+                    add(newTotals, beer);
+                }
+            }
+            return true;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${beer.stats.refresh-ms:1000}")
+    public void refresh() {
+        if (changed.getAndSet(false) || System.nanoTime() - lastReconcile > reconcileNanos) {
+            reconcile();
+        } else {
+            applyQuantityDeltas();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcile() {
+        // one step: the queued movements were committed before the query, so it reads them; what comes after is kept
+        synchronized (this) {
+            quantityDeltas.clear();
+            changesDuringReconcile = new ArrayList<>();
+        }
+
+        try {
+            Map<BeerStyle, Totals> newTotals = emptyTotals();
+
+            // [beerStyle, count, sum(quantityOnHand), min(price), max(price), sum(price)]
+            for (Object[] row : beerRepository.findStyleTotals()) {
+                newTotals.put((BeerStyle) row[0], new Totals(((Number) row[1]).longValue(), ((Number) row[2]).longValue(),
+                        (BigDecimal) row[3], (BigDecimal) row[4], (BigDecimal) row[5]));
+            }
+
+            synchronized (this) {
+                for (Predicate<Map<BeerStyle, Totals>> change : changesDuringReconcile) {
+                    if (!change.test(newTotals)) {
+                        changed.set(true);
+                    }
+                }
+
+                totals = Collections.unmodifiableMap(newTotals);
+                lastReconcile = System.nanoTime();
+            }
+        } finally {
+            synchronized (this) {
+                changesDuringReconcile = null;
+            }
+        }
+
+        log.debug("Beer style totals reconciled");
+    }
+
+    private void applyQuantityDeltas() {
+        if (quantityDeltas.isEmpty()) {
+            return;
+        }
+
+        Map<UUID, Long> deltas = new HashMap<>();
+        for (UUID beerId : quantityDeltas.keySet()) {
+            Long delta = quantityDeltas.remove(beerId);
+            if (delta != null && delta != 0) {
+                deltas.put(beerId, delta);
+            }
+        }
+
+        Map<BeerStyle, Long> deltasByStyle = new EnumMap<>(BeerStyle.class);
+        List<UUID> beerIds = new ArrayList<>(deltas.keySet());
+        for (int from = 0; from < beerIds.size(); from += STYLE_LOOKUP_BATCH_SIZE) {
+            // [id, beerStyle]; deleted beers are not found, their stock went with them
+            for (Object[] row : beerRepository.findStylesByIdIn(
+                    beerIds.subList(from, Math.min(from + STYLE_LOOKUP_BATCH_SIZE, beerIds.size())))) {
+                deltasByStyle.merge((BeerStyle) row[1], deltas.get((UUID) row[0]), Long::sum);
+            }
+        }
+
+        change(newTotals -> {
+            deltasByStyle.forEach((style, delta) ->
+                    newTotals.computeIfPresent(style, (key, styleTotals) -> styleTotals.plusQuantity(delta)));
+            return true;
+        });
+    }
+
+    // Applies the change to a copy of the totals and installs it; a change returning false cannot be followed and
+    // leaves the totals as they were. While a reconcile reads, the change is kept for its result as well.
+    private synchronized boolean change(Predicate<Map<BeerStyle, Totals>> change) {
+        Map<BeerStyle, Totals> newTotals = new EnumMap<>(totals);
+
+        if (!change.test(newTotals)) {
+            return false;
+        }
+
+        totals = Collections.unmodifiableMap(newTotals);
+        if (changesDuringReconcile != null) {
+            changesDuringReconcile.add(change);
+        }
+        return true;
+    }
+
+    private static boolean add(Map<BeerStyle, Totals> totals, BeerDTO beer) {
+        totals.merge(beer.getBeerStyle(), Totals.of(beer), Totals::plus);
+        return true;
+    }
+
+    // false if the totals cannot follow: the beer held the min or max price of its style
+    private static boolean remove(Map<BeerStyle, Totals> totals, BeerDTO beer) {
+        Totals styleTotals = totals.get(beer.getBeerStyle());
+        Totals removed = Totals.of(beer);
+
+        if (styleTotals.count() <= 1) {
+            totals.put(beer.getBeerStyle(), Totals.EMPTY);
+            return styleTotals.count() == 1;
+        }
+        if (removed.minPrice().compareTo(styleTotals.minPrice()) <= 0
+                || removed.maxPrice().compareTo(styleTotals.maxPrice()) >= 0) {
+            return false;
+        }
+
+        totals.put(beer.getBeerStyle(), new Totals(styleTotals.count() - 1,
+                styleTotals.quantityOnHand() - removed.quantityOnHand(), styleTotals.minPrice(), styleTotals.maxPrice(),
+                styleTotals.priceSum().subtract(removed.priceSum())));
+        return true;
+    }
+
+    // same style and price (a PUT sends them again): only the quantity moves, whatever the price was
+    private static boolean replace(Map<BeerStyle, Totals> totals, BeerDTO previous, BeerDTO updated) {
+        if (previous.getBeerStyle() == updated.getBeerStyle() && samePrice(previous, updated)) {
+            long delta = Totals.of(updated).quantityOnHand() - Totals.of(previous).quantityOnHand();
+            totals.computeIfPresent(updated.getBeerStyle(), (key, styleTotals) -> styleTotals.plusQuantity(delta));
+            return true;
+        }
+
+        return remove(totals, previous) && add(totals, updated);
+    }
+
+    private static boolean samePrice(BeerDTO previous, BeerDTO updated) {
+        return Totals.of(previous).priceSum().compareTo(Totals.of(updated).priceSum()) == 0;
+    }
+
+    // the values after an update: the written ones, the previous ones for what was not written
+    private static BeerDTO merged(BeerDTO previous, BeerDTO changes) {
+        return BeerDTO.builder()
+                .beerStyle(changes.getBeerStyle() != null ? changes.getBeerStyle() : previous.getBeerStyle())
+                .price(changes.getPrice() != null ? changes.getPrice() : previous.getPrice())
+                .quantityOnHand(changes.getQuantityOnHand() != null ? changes.getQuantityOnHand() : previous.getQuantityOnHand())
+                .build();
+    }
+
+    private static Map<BeerStyle, Totals> emptyTotals() {
+        Map<BeerStyle, Totals> empty = new EnumMap<>(BeerStyle.class);
+        for (BeerStyle style : BeerStyle.values()) {
+            empty.put(style, Totals.EMPTY);
+        }
+        return empty;
+    }
+
+    // prices are null when count is 0
+    private record Totals(long count, long quantityOnHand, BigDecimal minPrice, BigDecimal maxPrice, BigDecimal priceSum) {
+        static final Totals EMPTY = new Totals(0, 0, null, null, null);
+
+        static Totals of(BeerDTO beer) {
+            BigDecimal price = beer.getPrice() == null ? BigDecimal.ZERO : beer.getPrice();
+
+            return new Totals(1, beer.getQuantityOnHand() == null ? 0 : beer.getQuantityOnHand(), price, price, price);
+        }
+
+        Totals plus(Totals other) {
+            if (count == 0) {
+                return other;
+            }
+
+            return new Totals(count + other.count, quantityOnHand + other.quantityOnHand,
+                    minPrice.min(other.minPrice), maxPrice.max(other.maxPrice), priceSum.add(other.priceSum));
+        }
+
+        Totals plusQuantity(long delta) {
+            return new Totals(count, quantityOnHand + delta, minPrice, maxPrice, priceSum);
+        }
+
+        BeerStyleStatsDTO toDto() {
+            return BeerStyleStatsDTO.builder()
+                    .count(count)
+                    .quantityOnHand(quantityOnHand)
+                    .minPrice(minPrice)
+                    .maxPrice(maxPrice)
+                    .averagePrice(count == 0 ? null : priceSum.divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP))
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.springframework.spring6restmvc.services;
+
+import com.springframework.spring6restmvc.model.BeerDTO;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+// Published once per import chunk instead of a BeerChangedEvent per beer, so a large import does not run every
+// listener once per row. Listeners use @TransactionalEventListener: they only see chunks that were committed.
+@Getter
+@AllArgsConstructor
+public class BeersImportedEvent {
+    // the new beers, as saved
+    private final List<BeerDTO> beers;
+}
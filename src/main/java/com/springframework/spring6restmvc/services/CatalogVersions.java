@@ -0,0 +1,84 @@
+package com.springframework.spring6restmvc.services;
+
+import com.springframework.spring6restmvc.entities.Beer;
+import com.springframework.spring6restmvc.entities.Customer;
+import com.springframework.spring6restmvc.repositories.BeerRepository;
+import com.springframework.spring6restmvc.repositories.CustomerRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Version of a whole catalog (all beers, all customers), used as the ETag of list pages. Reading it costs no query:
+// a counter moved by the committed writes made through the services of this instance.
+// Writes this instance does not hear about (other instances, scripts) are looked for only when a client asks whether
+// its page is still current (If-None-Match): one read of the indexed last update date (V11). When that date moved since
+// the previous probe, the counter moves as well, so the tag of the client no longer matches.
+// Deletes made elsewhere leave the date as it is: they are seen with the next write of this instance.
+@Component
+@RequiredArgsConstructor
+public class CatalogVersions {
+
+    private final BeerRepository beerRepository;
+    private final CustomerRepository customerRepository;
+
+    // changes on every start, so tags handed out by a previous run never match
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private final Map<Class<?>, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Optional<LocalDateTime>> lastUpdates = new ConcurrentHashMap<>();
+
+    public String current(Class<?> catalog) {
+        return epoch + "-" + counter(catalog).get();
+    }
+
+    // for conditional requests only: probes the data first
+    public String checked(Class<?> catalog) {
+        Optional<LocalDateTime> lastUpdate = lastUpdate(catalog);
+
+        // the first probe has nothing to compare with: the tag of the client may be older than it
+        if (!lastUpdate.equals(lastUpdates.put(catalog, lastUpdate))) {
+            increment(catalog);
+        }
+
+        return current(catalog);
+    }
+
+    public void increment(Class<?> catalog) {
+        counter(catalog).incrementAndGet();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBeerChanged(BeerChangedEvent event) {
+        increment(Beer.class);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBeersImported(BeersImportedEvent event) {
+        increment(Beer.class);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCustomerChanged(CustomerChangedEvent event) {
+        increment(Customer.class);
+    }
+
+    private Optional<LocalDateTime> lastUpdate(Class<?> catalog) {
+        if (catalog == Beer.class) {
+            return beerRepository.findLastUpdateDate();
+        }
+        if (catalog == Customer.class) {
+            return customerRepository.findLastModifiedDate();
+        }
+        return Optional.empty();
+    }
+
+    private AtomicLong counter(Class<?> catalog) {
+        return versions.computeIfAbsent(catalog, key -> new AtomicLong());
+    }
+}
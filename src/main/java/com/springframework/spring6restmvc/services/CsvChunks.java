@@ -0,0 +1,62 @@
+package com.springframework.spring6restmvc.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Splits a csv file into byte ranges that each hold whole records, so the ranges can be parsed independently.
+// A line break only ends a record outside of a quoted field. Escaped quotes ("") toggle twice, so the state stays right,
+// and '"' / '\n' never occur inside a multi-byte UTF-8 character.
+record CsvChunks(long headerEnd, List<Chunk> chunks) {
+
+    record Chunk(long start, long end) {
+        int length() {
+            return Math.toIntExact(end - start);
+        }
+    }
+
+    static CsvChunks split(Path file, long chunkBytes) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        long headerEnd = -1;
+        long chunkStart = 0;
+        long position = 0;
+        boolean inQuotes = false;
+
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[1 << 16];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                for (int i = 0; i < read; i++) {
+                    position++;
+                    byte b = buffer[i];
+
+                    if (b == '"') {
+                        inQuotes = !inQuotes;
+                    } else if (b == '\n' && !inQuotes) {
+                        if (headerEnd < 0) {
+                            headerEnd = position;
+                            chunkStart = position;
+                        } else if (position - chunkStart >= chunkBytes) {
+                            chunks.add(new Chunk(chunkStart, position));
+                            chunkStart = position;
+                        }
+                    }
+                }
+            }
+        }
+
+        if (headerEnd < 0) {
+            // header only (or empty file): nothing to parse
+            return new CsvChunks(position, chunks);
+        }
+
+        if (position > chunkStart) {
+            chunks.add(new Chunk(chunkStart, position)); // last record may have no line break
+        }
+
+        return new CsvChunks(headerEnd, chunks);
+    }
+}
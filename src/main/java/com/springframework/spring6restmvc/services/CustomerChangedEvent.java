@@ -0,0 +1,28 @@
+package com.springframework.spring6restmvc.services;
+
+import com.springframework.spring6restmvc.model.CustomerDTO;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+// Published by the customer write paths. Listeners use @TransactionalEventListener,
+// so they only see changes that were committed.
+@Getter
+@AllArgsConstructor
+public class CustomerChangedEvent {
+
+    public enum Type { SAVED, DELETED }
+
+    private final Type type;
+    private final UUID customerId;
+    private final CustomerDTO customer; // state after the change, null when deleted
+
+    public static CustomerChangedEvent saved(CustomerDTO customer) {
+        return new CustomerChangedEvent(Type.SAVED, customer.getId(), customer);
+    }
+
+    public static CustomerChangedEvent deleted(UUID customerId) {
+        return new CustomerChangedEvent(Type.DELETED, customerId, null);
+    }
+}
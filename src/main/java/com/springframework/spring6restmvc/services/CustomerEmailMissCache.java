@@ -0,0 +1,55 @@
+package com.springframework.spring6restmvc.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+
+// Emails known not to belong to any customer, so repeated lookups of unknown emails (typos, sign-up checks,
+// probing) do not reach the database. Only misses are kept: a found customer is always read fresh.
+// A committed save forgets its email. A miss is only recorded if no save was committed while it was looked up,
+// otherwise a customer created in the meantime could stay hidden until the entry expires.
+@Component
+public class CustomerEmailMissCache {
+
+    private final Cache<String, Boolean> misses;
+    private long generation = 0; // number of saves seen, guarded by this
+
+    public CustomerEmailMissCache(@Value("${customer.email-miss-cache.maximum-size:10000}") long maximumSize,
+                                  @Value("${customer.email-miss-cache.expire-after-write:PT5M}") Duration expireAfterWrite) {
+        this.misses = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .build();
+    }
+
+    public boolean isKnownMiss(String email) {
+        return misses.getIfPresent(email) != null;
+    }
+
+    // read before the lookup, handed back to recordMiss
+    public synchronized long generation() {
+        return generation;
+    }
+
+    public synchronized void recordMiss(String email, long lookupGeneration) {
+        if (generation == lookupGeneration) {
+            misses.put(email, Boolean.TRUE);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCustomerChanged(CustomerChangedEvent event) {
+        if (event.getType() == CustomerChangedEvent.Type.SAVED && event.getCustomer().getEmail() != null) {
+            forget(event.getCustomer().getEmail());
+        }
+    }
+
+    private synchronized void forget(String email) {
+        generation++;
+        misses.invalidate(email);
+    }
+}
@@ -1,22 +1,46 @@
 package com.springframework.spring6restmvc.services;
 
+import com.springframework.spring6restmvc.model.CustomerCursor;
 import com.springframework.spring6restmvc.model.CustomerDTO;
+import com.springframework.spring6restmvc.model.CustomerKeysetPage;
+import org.springframework.data.domain.Page;
 
-import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public interface CustomerService {
 
-    List<CustomerDTO> listCustomers();
+    // sorted by name, then id. Pages start at 1
+    Page<CustomerDTO> listCustomers(Integer pageNumber, Integer pageSize);
+
+    // cursor == null means the first page
+    CustomerKeysetPage listCustomersByCursor(CustomerCursor cursor, Integer pageSize);
+
+    // hands every customer to the consumer, in listing order, one at a time, and returns how many there were
+    long exportCustomers(Consumer<CustomerDTO> consumer);
 
     Optional<CustomerDTO> getCustomerById(UUID id);
 
+    // ignores the letter case and surrounding blanks of the email
+    Optional<CustomerDTO> getCustomerByEmail(String email);
+
+    // only the @Version of the customer, for ETag checks
+    Optional<Integer> getCustomerVersion(UUID id);
+
+    // changes whenever any customer changes, for ETags of list pages. No database access
+    String getCustomerCatalogVersion();
+
+    // the same after a probe for writes made outside this instance: for conditional requests (If-None-Match)
+    String checkCustomerCatalogVersion();
+
     CustomerDTO createNewCustomer(CustomerDTO customer);
 
-    Optional<CustomerDTO> updateById(UUID customerId, CustomerDTO customer);
+    // expectedVersion (from If-Match) makes the write conditional, like for beers: a customer with another version is
+    // not changed and ObjectOptimisticLockingFailureException is thrown. null writes whatever the current version is.
+    Optional<CustomerDTO> updateById(UUID customerId, CustomerDTO customer, Integer expectedVersion);
 
     Boolean deleteById(UUID customerId);
 
-    Optional<CustomerDTO> patchCustomerById(UUID customerId, CustomerDTO customer);
+    Optional<CustomerDTO> patchCustomerById(UUID customerId, CustomerDTO customer, Integer expectedVersion);
 }
@@ -1,17 +1,31 @@
 package com.springframework.spring6restmvc.services;
 
+import com.springframework.spring6restmvc.model.CustomerCursor;
 import com.springframework.spring6restmvc.model.CustomerDTO;
+import com.springframework.spring6restmvc.model.CustomerKeysetPage;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
 public class CustomerServiceImpl implements CustomerService {
 
+    // same order as the JPA listing: name asc (no name first), id asc
+    private static final Comparator<CustomerDTO> LISTING_ORDER = Comparator
+            .comparing(CustomerDTO::getName, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+            .thenComparing(customer -> customer.getId().toString());
+
     private final Map<UUID, CustomerDTO> customerMap;
 
     public CustomerServiceImpl() {
@@ -47,11 +61,52 @@ public class CustomerServiceImpl implements CustomerService {
     }
 
     @Override
-    public List<CustomerDTO> listCustomers() {
+    public Page<CustomerDTO> listCustomers(Integer pageNumber, Integer pageSize) {
+
+        log.debug("List Customers- in CustomerService");
+
+        PageRequest pageRequest = CustomerServiceJPA.buildPageRequest(pageNumber, pageSize);
+
+        List<CustomerDTO> content = sorted()
+                .skip(pageRequest.getOffset())
+                .limit(pageRequest.getPageSize())
+                .collect(Collectors.toList());
+
+        return new PageImpl<>(content, pageRequest, customerMap.size());
+    }
+
+    @Override
+    public CustomerKeysetPage listCustomersByCursor(CustomerCursor cursor, Integer pageSize) {
+        int size = CustomerServiceJPA.buildPageRequest(null, pageSize).getPageSize();
+
+        CustomerDTO after = cursor == null ? null : CustomerDTO.builder().name(cursor.getName()).id(cursor.getId()).build();
+
+        List<CustomerDTO> customers = sorted()
+                .filter(customer -> after == null || LISTING_ORDER.compare(customer, after) > 0)
+                .limit(size + 1)
+                .collect(Collectors.toList());
+
+        boolean hasNext = customers.size() > size;
+        List<CustomerDTO> content = new ArrayList<>(customers.subList(0, Math.min(size, customers.size())));
+
+        return CustomerKeysetPage.builder()
+                .content(content)
+                .size(size)
+                .nextCursor(hasNext ? CustomerCursor.of(content.get(content.size() - 1)).encode() : null)
+                .build();
+    }
+
+    @Override
+    public long exportCustomers(Consumer<CustomerDTO> consumer) {
+        // the customers handed out, not the map size read afterwards
+        List<CustomerDTO> customers = sorted().collect(Collectors.toList());
+        customers.forEach(consumer);
 
-        log.debug("List All Customers- in CustomerService");
+        return customers.size();
+    }
 
-        return new ArrayList<>(customerMap.values());
+    private Stream<CustomerDTO> sorted() {
+        return customerMap.values().stream().sorted(LISTING_ORDER);
     }
 
     @Override
@@ -62,6 +117,29 @@ public class CustomerServiceImpl implements CustomerService {
         return Optional.of(customerMap.get(id));
     }
 
+    @Override
+    public Optional<CustomerDTO> getCustomerByEmail(String email) {
+        return customerMap.values().stream()
+                .filter(customer -> customer.getEmail() != null && customer.getEmail().equalsIgnoreCase(email.trim()))
+                .findFirst();
+    }
+
+    @Override
+    public Optional<Integer> getCustomerVersion(UUID id) {
+        return Optional.ofNullable(customerMap.get(id)).map(CustomerDTO::getVersion);
+    }
+
+    @Override
+    public String getCustomerCatalogVersion() {
+        // not tracked in memory: every list is considered changed
+        return UUID.randomUUID().toString();
+    }
+
+    @Override
+    public String checkCustomerCatalogVersion() {
+        return getCustomerCatalogVersion();
+    }
+
     @Override
     public CustomerDTO createNewCustomer(CustomerDTO customer) {
 
@@ -71,6 +149,7 @@ public class CustomerServiceImpl implements CustomerService {
                 .lastModifiedDate(LocalDateTime.now())
                 .version(1)
                 .name(customer.getName())
+                .email(customer.getEmail())
                 .build();
 
         customerMap.put(savedCustomer.getId(), savedCustomer);
@@ -79,13 +158,16 @@ public class CustomerServiceImpl implements CustomerService {
     }
 
     @Override
-    public Optional<CustomerDTO> updateById(UUID customerId, CustomerDTO customer) {
+    public Optional<CustomerDTO> updateById(UUID customerId, CustomerDTO customer, Integer expectedVersion) {
         CustomerDTO existing = customerMap.get(customerId);
+        checkVersion(existing, expectedVersion);
 
         log.debug("Customer before update: {}", existing);
 
         existing.setName(customer.getName());
+        existing.setEmail(customer.getEmail());
         existing.setLastModifiedDate(LocalDateTime.now());
+        existing.setVersion(existing.getVersion() + 1);
 
         log.debug("Customer after update: {}", existing);
 
@@ -102,17 +184,25 @@ public class CustomerServiceImpl implements CustomerService {
     }
 
     @Override
-    public Optional<CustomerDTO> patchCustomerById(UUID customerId, CustomerDTO customer) {
+    public Optional<CustomerDTO> patchCustomerById(UUID customerId, CustomerDTO customer, Integer expectedVersion) {
         CustomerDTO existing = customerMap.get(customerId);
+        checkVersion(existing, expectedVersion);
 
         log.debug("Customer before patch: {}", existing);
 
         if (StringUtils.hasText(customer.getName())) {
             existing.setName(customer.getName());
         }
+        existing.setVersion(existing.getVersion() + 1);
 
         log.debug("Customer after patch: {}", existing);
 
         return Optional.of(existing);
     }
+
+    private void checkVersion(CustomerDTO existing, Integer expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(existing.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(CustomerDTO.class, existing.getId());
+        }
+    }
 }
\ No newline at end of file
@@ -1,18 +1,29 @@
 package com.springframework.spring6restmvc.services;
 
+import com.springframework.spring6restmvc.entities.Customer;
 import com.springframework.spring6restmvc.mappers.CustomerMapper;
+import com.springframework.spring6restmvc.model.CustomerCursor;
 import com.springframework.spring6restmvc.model.CustomerDTO;
+import com.springframework.spring6restmvc.model.CustomerKeysetPage;
 import com.springframework.spring6restmvc.repositories.CustomerRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Primary;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @Primary // this implementation of the CustomerService will be used primarily by Spring
@@ -20,13 +31,67 @@ import java.util.stream.Collectors;
 public class CustomerServiceJPA implements CustomerService {
     private final CustomerRepository customerRepository;
     private final CustomerMapper customerMapper;
+    private final CatalogVersions catalogVersions;
+    private final CustomerEmailMissCache customerEmailMissCache;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final static Integer DEFAULT_PAGE = 0;
+    private final static Integer DEFAULT_PAGE_SIZE = 25;
+    private final static Integer MAX_PAGE_SIZE = 1000;
+
+    // same rules as the beer listing: pages start at 1, default size 25, at most 1000. A size below 1 gets the default
+    // instead of failing in PageRequest.of. Static: the in-memory CustomerServiceImpl pages by the same rules
+    public static PageRequest buildPageRequest(Integer pageNumber, Integer pageSize) {
+        int queryPageNumber = pageNumber != null && pageNumber > 0 ? pageNumber - 1 : DEFAULT_PAGE;
+        int queryPageSize = pageSize == null || pageSize < 1 ? DEFAULT_PAGE_SIZE : Math.min(pageSize, MAX_PAGE_SIZE);
+
+        // the order of the customer_name_idx index (V7); id makes it a total order
+        return PageRequest.of(queryPageNumber, queryPageSize, Sort.by(Sort.Order.asc("name"), Sort.Order.asc("id")));
+    }
 
     @Override
-    public List<CustomerDTO> listCustomers() {
-        return customerRepository.findAll()
-                .stream()
-                .map(customerMapper::customerToCustomerDto)
-                .collect(Collectors.toList());
+    public Page<CustomerDTO> listCustomers(Integer pageNumber, Integer pageSize) {
+        return customerRepository.findAllCustomerDtos(buildPageRequest(pageNumber, pageSize));
+    }
+
+    @Override
+    public CustomerKeysetPage listCustomersByCursor(CustomerCursor cursor, Integer pageSize) {
+        int queryPageSize = buildPageRequest(null, pageSize).getPageSize();
+
+        // one extra row tells whether there is a next page
+        PageRequest limit = PageRequest.of(0, queryPageSize + 1);
+
+        List<CustomerDTO> customers = cursor == null
+                ? customerRepository.findKeysetFirstPage(limit)
+                : customerRepository.findKeysetPageAfter(cursor.getName(), cursor.getId(), limit);
+
+        boolean hasNext = customers.size() > queryPageSize;
+        List<CustomerDTO> content = hasNext ? customers.subList(0, queryPageSize) : customers;
+
+        return CustomerKeysetPage.builder()
+                .content(content)
+                .size(queryPageSize)
+                .nextCursor(hasNext ? CustomerCursor.of(content.get(content.size() - 1)).encode() : null)
+                .build();
+    }
+
+    // One query read in chunks of the fetch size. The rows are DTOs, not entities,
+    // so memory stays flat no matter how many customers there are.
+    @Override
+    @Transactional(readOnly = true)
+    public long exportCustomers(Consumer<CustomerDTO> consumer) {
+        long count = 0;
+
+        try (Stream<CustomerDTO> customers = customerRepository.streamAllCustomerDtos()) {
+            Iterator<CustomerDTO> iterator = customers.iterator();
+
+            while (iterator.hasNext()) {
+                consumer.accept(iterator.next());
+                count++;
+            }
+        }
+
+        return count;
     }
 
     @Override
@@ -36,25 +101,65 @@ public class CustomerServiceJPA implements CustomerService {
         );
     }
 
+    @Override
+    public Optional<CustomerDTO> getCustomerByEmail(String email) {
+        String normalizedEmail = Customer.normalizeEmail(email);
+
+        if (!StringUtils.hasText(normalizedEmail) || customerEmailMissCache.isKnownMiss(normalizedEmail)) {
+            return Optional.empty();
+        }
+
+        long generation = customerEmailMissCache.generation();
+        Optional<CustomerDTO> customer = customerRepository.findByEmail(normalizedEmail)
+                .map(customerMapper::customerToCustomerDto);
+
+        if (customer.isEmpty()) {
+            customerEmailMissCache.recordMiss(normalizedEmail, generation);
+        }
+
+        return customer;
+    }
+
+    @Override
+    public Optional<Integer> getCustomerVersion(UUID id) {
+        return customerRepository.findVersionById(id);
+    }
+
+    @Override
+    public String getCustomerCatalogVersion() {
+        return catalogVersions.current(Customer.class);
+    }
+
+    @Override
+    public String checkCustomerCatalogVersion() {
+        return catalogVersions.checked(Customer.class);
+    }
+
     @Override
     public CustomerDTO createNewCustomer(CustomerDTO customer) {
-        return customerMapper.customerToCustomerDto(
+        CustomerDTO savedCustomer = customerMapper.customerToCustomerDto(
                 customerRepository.save(customerMapper.customerDtoToCustomer(customer))
         );
+
+        eventPublisher.publishEvent(CustomerChangedEvent.saved(savedCustomer));
+
+        return savedCustomer;
     }
 
     @Override
-    public Optional<CustomerDTO> updateById(UUID customerId, CustomerDTO customer) {
+    @Transactional
+    public Optional<CustomerDTO> updateById(UUID customerId, CustomerDTO customer, Integer expectedVersion) {
         AtomicReference<Optional<CustomerDTO>> atomicReference = new AtomicReference<>();
 
         customerRepository.findById(customerId).ifPresentOrElse((existing) -> {
+            checkVersion(existing, expectedVersion);
             existing.setName(customer.getName());
+            existing.setEmail(customer.getEmail());
 
-            atomicReference.set(
-                    Optional.of(
-                            customerMapper.customerToCustomerDto(customerRepository.save(existing))
-                    )
-            );
+            CustomerDTO savedCustomer = customerMapper.customerToCustomerDto(customerRepository.saveAndFlush(existing));
+            eventPublisher.publishEvent(CustomerChangedEvent.saved(savedCustomer));
+
+            atomicReference.set(Optional.of(savedCustomer));
         }, () -> {
             atomicReference.set(
                     Optional.empty()
@@ -68,29 +173,43 @@ public class CustomerServiceJPA implements CustomerService {
     public Boolean deleteById(UUID customerId) {
         if (customerRepository.existsById(customerId)) {
             customerRepository.deleteById(customerId);
+            eventPublisher.publishEvent(CustomerChangedEvent.deleted(customerId));
             return true;
         }
         return false;
     }
 
     @Override
-    public Optional<CustomerDTO> patchCustomerById(UUID customerId, CustomerDTO customer) {
+    @Transactional
+    public Optional<CustomerDTO> patchCustomerById(UUID customerId, CustomerDTO customer, Integer expectedVersion) {
         AtomicReference<Optional<CustomerDTO>> atomicReference = new AtomicReference<>();
 
         customerRepository.findById(customerId).ifPresentOrElse(existing -> {
+            checkVersion(existing, expectedVersion);
             if (StringUtils.hasText(customer.getName())) {
                 existing.setName(customer.getName());
             }
 
-            atomicReference.set(
-                    Optional.of(
-                            customerMapper.customerToCustomerDto(customerRepository.save(existing))
-                    )
-            );
+            if (StringUtils.hasText(customer.getEmail())) {
+                existing.setEmail(customer.getEmail());
+            }
+
+            CustomerDTO savedCustomer = customerMapper.customerToCustomerDto(customerRepository.saveAndFlush(existing));
+            eventPublisher.publishEvent(CustomerChangedEvent.saved(savedCustomer));
+
+            atomicReference.set(Optional.of(savedCustomer));
         }, () -> {
             atomicReference.set(Optional.empty());
         });
 
         return atomicReference.get();
     }
+
+    // The loaded version must be the expected one. The flush then updates with "where id = ? and version = ?" on that
+    // version (@Version), so a write committed since the read fails the update instead of being overwritten.
+    private void checkVersion(Customer existing, Integer expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(existing.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(Customer.class, existing.getId());
+        }
+    }
 }
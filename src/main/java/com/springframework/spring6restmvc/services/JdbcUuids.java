@@ -0,0 +1,23 @@
+package com.springframework.spring6restmvc.services;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+// Plain JDBC writes: ids are bound in the same column format hibernate uses. Binary when spring6restmvc.id.binary
+// is set (see UuidIdTypeContributor and application-uuidv7.properties)
+final class JdbcUuids {
+
+    private JdbcUuids() {
+    }
+
+    static Object parameter(UUID id, boolean binary) {
+        if (!binary) {
+            return id.toString();
+        }
+
+        return ByteBuffer.allocate(16)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .array();
+    }
+}
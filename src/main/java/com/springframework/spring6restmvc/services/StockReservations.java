@@ -0,0 +1,327 @@
+package com.springframework.spring6restmvc.services;
+
+import com.springframework.spring6restmvc.entities.BeerOrderLine;
+import com.springframework.spring6restmvc.repositories.BeerOrderRepository;
+import com.springframework.spring6restmvc.repositories.BeerRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongUnaryOperator;
+
+// Stock of the beers, reserved by orders in memory: no row lock, so orders of the same (hot) beer do not queue
+// on one InnoDB row. Per beer one AtomicLong packs [on hand (as written in the database) | reserved, not written yet];
+// a reservation is a compareAndSet that only succeeds if on hand - reserved covers it.
+// - an order reserves all its beers or none (reserve gives back what it took when one beer is short)
+// - committed orders queue their lines; every beer.reservations.flush-ms the queue is written with one JDBC batch:
+//   quantity_on_hand - sum per beer, and the lines are marked stock_applied. A rolled back order gives its stock back
+// - on startup, before the web server takes requests, the lines saved but not marked (a crash before the flush)
+//   are replayed, then the counters are loaded
+// - stock written by others follows: inventory movements (BeerInventoryServiceImpl) and patched quantities (UPDATED events).
+//   Movements that take stock reserve it first (reserveUpTo), like an order: they only get what no order holds
+// - a take never leaves a negative stock: a beer with less on hand than its lines (a patch lowered it) is emptied,
+//   the rest is logged and dropped
+@Slf4j
+@Component
+public class StockReservations implements SmartInitializingSingleton {
+
+    static final String TAKE_QUANTITY = "update beer set quantity_on_hand = coalesce(quantity_on_hand, 0) - ?,"
+            + " update_date = ?, version = version + 1 where id = ? and coalesce(quantity_on_hand, 0) >= ?";
+    static final String LOCK_QUANTITY = "select coalesce(quantity_on_hand, 0) from beer where id = ? for update";
+    static final String CLEAR_QUANTITY = "update beer set quantity_on_hand = 0, update_date = ?, version = version + 1"
+            + " where id = ?";
+    static final String MARK_APPLIED = "update beer_order_line set stock_applied = true where id = ?";
+
+    private final BeerRepository beerRepository;
+    private final BeerOrderRepository beerOrderRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean binaryUuids;
+
+    private final Map<UUID, AtomicLong> stock = new ConcurrentHashMap<>();
+    private final Map<UUID, ReservedLine> committed = new ConcurrentHashMap<>(); // by line id: a line is written once
+
+    public StockReservations(BeerRepository beerRepository,
+                             BeerOrderRepository beerOrderRepository,
+                             JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             ApplicationEventPublisher eventPublisher,
+                             @Value("${spring.jpa.properties.spring6restmvc.id.binary:false}")
+                             boolean binaryUuids) {
+        this.beerRepository = beerRepository;
+        this.beerOrderRepository = beerOrderRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.binaryUuids = binaryUuids;
+    }
+
+    // Quantity per beer. True if all of it is reserved, false (and nothing reserved) if a beer is short or unknown.
+    public boolean reserve(Map<UUID, Integer> quantities) {
+        List<Map.Entry<UUID, Integer>> taken = new ArrayList<>(quantities.size());
+
+        for (Map.Entry<UUID, Integer> entry : quantities.entrySet()) {
+            AtomicLong beerStock = stockOf(entry.getKey());
+
+            if (beerStock == null || !tryReserve(beerStock, entry.getValue())) {
+                taken.forEach(reserved -> release(reserved.getKey(), reserved.getValue()));
+                return false;
+            }
+            taken.add(entry);
+        }
+
+        return true;
+    }
+
+    // on hand - reserved, what an order could still get. 0 for unknown beers
+    public long available(UUID beerId) {
+        AtomicLong beerStock = stockOf(beerId);
+        if (beerStock == null) {
+            return 0;
+        }
+
+        long packed = beerStock.get();
+        return (long) onHand(packed) - reserved(packed);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onStockReservedCommitted(StockReservedEvent event) {
+        for (BeerOrderLine line : event.getLines()) {
+            if (line.getQuantityAllocated() > 0) {
+                committed.putIfAbsent(line.getId(), new ReservedLine(line.getId(), line.getBeer().getId(), line.getQuantityAllocated()));
+            }
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_ROLLBACK)
+    public void onStockReservedRolledBack(StockReservedEvent event) {
+        event.getQuantities().forEach(this::release);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBeerChanged(BeerChangedEvent event) {
+        if (event.getType() == BeerChangedEvent.Type.DELETED) {
+            stock.remove(event.getBeerId());
+        } else if (event.getType() == BeerChangedEvent.Type.UPDATED && event.getBeer().getQuantityOnHand() != null) {
+            // a patch wrote the quantity on hand as it is: the reservations not written yet still apply to it
+            update(event.getBeerId(), packed -> pack(event.getBeer().getQuantityOnHand(), reserved(packed)));
+        }
+    }
+
+    // stock moved in the database by someone else (e.g. an inventory movement), already committed
+    public void onHandChanged(UUID beerId, long delta) {
+        update(beerId, packed -> pack((int) (onHand(packed) + delta), reserved(packed)));
+    }
+
+    // Reserves what orders could still get, up to quantity, for a movement that takes stock. Returns the amount reserved:
+    // the caller writes it, then calls taken (committed) or release (rolled back). 0 for unknown beers
+    public int reserveUpTo(UUID beerId, int quantity) {
+        AtomicLong beerStock = stockOf(beerId);
+        if (beerStock == null) {
+            return 0;
+        }
+
+        while (true) {
+            long packed = beerStock.get();
+            int reserved = (int) Math.max(0, Math.min(quantity, (long) onHand(packed) - reserved(packed)));
+            if (reserved == 0 || beerStock.compareAndSet(packed, pack(onHand(packed), reserved(packed) + reserved))) {
+                return reserved;
+            }
+        }
+    }
+
+    // a reservation of reserveUpTo written and committed: taken (at most reserved) left the stock on hand
+    public void taken(UUID beerId, int reserved, long taken) {
+        update(beerId, packed -> pack((int) (onHand(packed) - taken), reserved(packed) - reserved));
+    }
+
+    public void release(UUID beerId, int quantity) {
+        update(beerId, packed -> pack(onHand(packed), reserved(packed) - quantity));
+    }
+
+    // Takes what is on hand instead of a quantity it does not cover, in the caller's transaction.
+    // Returns the amount really taken (0 for a deleted beer)
+    long emptyStock(UUID beerId, long quantity) {
+        Object id = JdbcUuids.parameter(beerId, binaryUuids);
+
+        List<Long> onHand = jdbcTemplate.queryForList(LOCK_QUANTITY, Long.class, id);
+        if (onHand.isEmpty()) {
+            return 0;
+        }
+
+        long taken = Math.max(0, Math.min(onHand.get(0), quantity));
+        if (taken > 0) {
+            jdbcTemplate.update(CLEAR_QUANTITY, LocalDateTime.now(), id);
+        }
+
+        log.warn("Stock of beer {}: {} to take but {} on hand: {} taken, {} dropped",
+                beerId, quantity, onHand.get(0), taken, quantity - taken);
+
+        return taken;
+    }
+
+    @Scheduled(fixedDelayString = "${beer.reservations.flush-ms:200}")
+    public synchronized int flush() {
+        List<ReservedLine> lines = new ArrayList<>();
+        for (UUID lineId : committed.keySet()) {
+            ReservedLine line = committed.remove(lineId);
+            if (line != null) {
+                lines.add(line);
+            }
+        }
+
+        if (lines.isEmpty()) {
+            return 0;
+        }
+
+        // one update per beer, the rows locked in id order
+        SortedMap<UUID, Integer> quantities = new TreeMap<>();
+        lines.forEach(line -> quantities.merge(line.beerId(), line.quantity(), Integer::sum));
+
+        Map<UUID, Long> taken;
+        try {
+            taken = transactionTemplate.execute(status -> {
+                LocalDateTime now = LocalDateTime.now();
+                List<UUID> beerIds = new ArrayList<>(quantities.keySet());
+                int[] rows = jdbcTemplate.batchUpdate(TAKE_QUANTITY, quantities.entrySet().stream()
+                        .map(entry -> new Object[]{entry.getValue(), now, JdbcUuids.parameter(entry.getKey(), binaryUuids),
+                                entry.getValue()})
+                        .toList());
+                jdbcTemplate.batchUpdate(MARK_APPLIED, lines.stream()
+                        .map(line -> new Object[]{JdbcUuids.parameter(line.lineId(), binaryUuids)})
+                        .toList());
+
+                Map<UUID, Long> moved = new HashMap<>();
+                for (int i = 0; i < rows.length; i++) {
+                    UUID beerId = beerIds.get(i);
+                    int quantity = quantities.get(beerId);
+                    // no row: a deleted beer, or less on hand than the lines take
+                    long beerTaken = rows[i] != 0 ? quantity : emptyStock(beerId, quantity);
+
+                    moved.put(beerId, beerTaken);
+                    if (beerTaken != 0) {
+                        eventPublisher.publishEvent(BeerChangedEvent.stockMoved(beerId, -beerTaken));
+                    }
+                }
+                return moved;
+            });
+        } catch (RuntimeException e) {
+            // nothing was written: the lines go back to the queue for the next flush
+            lines.forEach(line -> committed.putIfAbsent(line.lineId(), line));
+            throw e;
+        }
+
+        // written: moves from reserved to (less) on hand, available does not change
+        quantities.forEach((beerId, quantity) -> taken(beerId, quantity, taken.get(beerId)));
+
+        log.debug("Wrote the stock of {} reserved order lines", lines.size());
+
+        return lines.size();
+    }
+
+    // all beans are there, the web server does not take requests yet: no order can reserve before the recovery
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    // Recovery: lines committed before a crash but not written yet are queued again and count as reserved,
+    // every other beer starts with its quantity on hand.
+    // Lines already queued and counters already there (loaded on first use) are kept, so their reservations stay.
+    public synchronized void rebuild() {
+        Map<UUID, Integer> reserved = new HashMap<>();
+
+        // [line id, beer id, quantityAllocated]
+        for (Object[] row : beerOrderRepository.findStockNotAppliedLines()) {
+            ReservedLine line = new ReservedLine((UUID) row[0], (UUID) row[1], ((Number) row[2]).intValue());
+            if (committed.putIfAbsent(line.lineId(), line) == null) {
+                reserved.merge(line.beerId(), line.quantity(), Integer::sum);
+            }
+        }
+
+        // [id, quantityOnHand]
+        for (Object[] row : beerRepository.findAllStock()) {
+            UUID beerId = (UUID) row[0];
+            int replayed = reserved.getOrDefault(beerId, 0);
+            AtomicLong loaded = stock.putIfAbsent(beerId, new AtomicLong(pack(((Number) row[1]).intValue(), replayed)));
+            if (loaded != null && replayed > 0) {
+                loaded.updateAndGet(packed -> pack(onHand(packed), reserved(packed) + replayed));
+            }
+        }
+
+        log.debug("Stock of {} beers loaded, {} reserved order lines to write", stock.size(), committed.size());
+
+        flush();
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // still in the database as stock_applied = 0: replayed on the next start
+            log.warn("Reserved stock could not be written on shutdown", e);
+        }
+    }
+
+    // beers created after the rebuild are loaded on first use. Null if there is no such beer
+    private AtomicLong stockOf(UUID beerId) {
+        return stock.computeIfAbsent(beerId, id -> beerRepository.findQuantityOnHandById(id)
+                .map(quantityOnHand -> new AtomicLong(pack(quantityOnHand, 0)))
+                .orElse(null));
+    }
+
+    private static boolean tryReserve(AtomicLong beerStock, int quantity) {
+        while (true) {
+            long packed = beerStock.get();
+            if ((long) onHand(packed) - reserved(packed) < quantity) {
+                return false;
+            }
+            if (beerStock.compareAndSet(packed, pack(onHand(packed), reserved(packed) + quantity))) {
+                return true;
+            }
+        }
+    }
+
+    private void update(UUID beerId, LongUnaryOperator change) {
+        AtomicLong beerStock = stock.get(beerId);
+        if (beerStock != null) {
+            beerStock.updateAndGet(change);
+        }
+    }
+
+    static long pack(int onHand, int reserved) {
+        return ((long) onHand << 32) | (reserved & 0xFFFFFFFFL);
+    }
+
+    static int onHand(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    static int reserved(long packed) {
+        return (int) packed;
+    }
+
+    private record ReservedLine(UUID lineId, UUID beerId, int quantity) {
+    }
+}
@@ -0,0 +1,20 @@
+package com.springframework.spring6restmvc.services;
+
+import com.springframework.spring6restmvc.entities.BeerOrderLine;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+// Published by placeOrder once the stock of an order is reserved in StockReservations:
+// after commit its lines are queued for writing, after a rollback the quantities are given back.
+@Getter
+@AllArgsConstructor
+public class StockReservedEvent {
+    // reserved quantity per beer
+    private final Map<UUID, Integer> quantities;
+    // the order's lines, their ids are assigned when the order is saved
+    private final Collection<BeerOrderLine> lines;
+}
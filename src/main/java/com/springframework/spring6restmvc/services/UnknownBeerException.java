@@ -0,0 +1,18 @@
+package com.springframework.spring6restmvc.services;
+
+import lombok.Getter;
+
+import java.util.List;
+import java.util.UUID;
+
+// an order names beers that do not exist
+@Getter
+public class UnknownBeerException extends RuntimeException {
+
+    private final List<UUID> beerIds;
+
+    public UnknownBeerException(List<UUID> beerIds) {
+        super("Unknown beers: " + beerIds);
+        this.beerIds = beerIds;
+    }
+}
@@ -0,0 +1,7 @@
+-- Stock reserved in memory for order lines is taken off beer.quantity_on_hand asynchronously, in batches.
+-- stock_applied = 0 marks the lines whose quantity is not written yet; they are replayed on startup.
+-- Existing lines were allocated by row updates, their stock is already written.
+alter table beer_order_line add column stock_applied bit not null default 1;
+
+-- the startup recovery reads the (few) lines still to be written
+create index beer_order_line_stock_applied_idx on beer_order_line (stock_applied);
@@ -0,0 +1,4 @@
+-- Probe of the list ETags (CatalogVersions) for writes made outside the instance: max(update date) is read
+-- from one end of the index instead of a scan of the table.
+create index beer_update_date_idx on beer (update_date);
+create index customer_last_modified_date_idx on customer (last_modified_date);
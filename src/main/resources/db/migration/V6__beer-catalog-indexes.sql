@@ -0,0 +1,11 @@
+-- The beer listing always sorts by beer_name asc, beer_style desc (id as tie-breaker).
+-- Unfiltered pages (and the keyset listing) read this index in order: no filesort.
+create index beer_name_style_idx on beer (beer_name asc, beer_style desc, id asc);
+
+-- Style filter: equality on beer_style, then the rows are already in beer_name (then id) order.
+-- (beer_style desc is constant inside one style, MySQL drops it from the sort.)
+create index beer_style_name_idx on beer (beer_style, beer_name, id);
+
+-- Case-insensitive name filter. Functional index (MySQL 8.0.13+): the queries must use exactly lower(beer_name).
+-- Prefix searches ('ipa%') become range scans; '%ipa%' still scans, but only this narrow index.
+create index beer_name_lower_idx on beer ((lower(beer_name)));
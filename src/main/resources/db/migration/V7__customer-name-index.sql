@@ -0,0 +1,3 @@
+-- The customer listing sorts by name (id as tie-breaker). Offset pages, keyset pages and the streamed listing
+-- read this index in order: no filesort, and a keyset page seeks straight to its first row.
+create index customer_name_idx on customer (name, id);
@@ -0,0 +1,6 @@
+-- Emails are stored trimmed and in lower case (Customer.normalizeEmail): one unique index then serves the
+-- case-insensitive lookup by email and rejects the same address written in another case.
+-- Fails if two customers already share an address (in any case): merge them first.
+update customer set email = lower(trim(email)) where email is not null;
+
+create unique index customer_email_idx on customer (email);
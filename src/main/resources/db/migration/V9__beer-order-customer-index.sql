@@ -0,0 +1,3 @@
+-- Order history of a customer, newest first: equality on customer_id, then the rows are already in
+-- (created_date, id) order, so a page is read off the index without a filesort.
+create index beer_order_customer_created_idx on beer_order (customer_id, created_date desc, id desc);
@@ -0,0 +1,75 @@
+package com.springframework.spring6restmvc.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class BoundedDataSourceTest {
+
+    DataSource pool = mock(DataSource.class);
+    Connection pooledConnection = mock(Connection.class);
+
+    BoundedDataSource boundedDataSource = new BoundedDataSource(pool, 2, Duration.ofMillis(50));
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        given(pool.getConnection()).willReturn(pooledConnection);
+    }
+
+    @Test
+    void testPermitIsHeldUntilClose() throws SQLException {
+        Connection first = boundedDataSource.getConnection();
+        Connection second = boundedDataSource.getConnection();
+        assertThat(boundedDataSource.availablePermits()).isZero();
+
+        // a third caller waits, then gives up after the acquire timeout
+        assertThrows(SQLTransientConnectionException.class, () -> boundedDataSource.getConnection());
+
+        first.close();
+        first.close(); // twice: still one permit
+        assertThat(boundedDataSource.availablePermits()).isEqualTo(1);
+        verify(pooledConnection, times(2)).close();
+
+        second.close();
+        assertThat(boundedDataSource.availablePermits()).isEqualTo(2);
+    }
+
+    @Test
+    void testPermitIsReleasedWhenThePoolFails() throws SQLException {
+        given(pool.getConnection()).willThrow(new SQLTransientConnectionException("pool exhausted"));
+
+        assertThrows(SQLTransientConnectionException.class, () -> boundedDataSource.getConnection());
+
+        assertThat(boundedDataSource.availablePermits()).isEqualTo(2);
+    }
+
+    @Test
+    void testOtherCallsReachTheConnection() throws SQLException {
+        given(pooledConnection.getAutoCommit()).willReturn(true);
+
+        try (Connection connection = boundedDataSource.getConnection()) {
+            assertThat(connection.getAutoCommit()).isTrue();
+        }
+    }
+
+    @Test
+    void testDataSourceIsOnlyBoundedWithVirtualThreads() {
+        Object processed = VirtualThreadsConfig.boundedDataSourcePostProcessor(2, Duration.ofMillis(50))
+                .postProcessAfterInitialization(pool, "dataSource");
+
+        // platform threads (this build runs on Java 17): the pool is used as it is
+        assertThat(processed instanceof BoundedDataSource).isEqualTo(VirtualThreads.isAvailable());
+    }
+}
@@ -4,8 +4,11 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.springframework.spring6restmvc.entities.Beer;
 import com.springframework.spring6restmvc.mappers.BeerMapper;
 import com.springframework.spring6restmvc.model.BeerDTO;
+import com.springframework.spring6restmvc.model.BeerKeysetPage;
 import com.springframework.spring6restmvc.model.BeerStyle;
 import com.springframework.spring6restmvc.repositories.BeerRepository;
+import com.springframework.spring6restmvc.services.BeerInventoryService;
+import com.springframework.spring6restmvc.services.StockReservations;
 import org.hamcrest.core.IsNull;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -15,6 +18,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
@@ -23,13 +27,19 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.context.WebApplicationContext;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 
@@ -47,6 +57,12 @@ class BeerControllerIT {
     @Autowired
     BeerMapper beerMapper;
 
+    @Autowired
+    BeerInventoryService beerInventoryService;
+
+    @Autowired
+    StockReservations stockReservations;
+
     // Let's use MockMvc to mock request from client. To do so, we need MockMvc bean in the WebApplicationContext
     @Autowired
     WebApplicationContext wac;
@@ -62,6 +78,227 @@ class BeerControllerIT {
         mockMvc = MockMvcBuilders.webAppContextSetup(wac).build();
     }
 
+    @Test
+    void testListBeersETagFollowsWritesOutsideTheServices() {
+        // the probe runs for conditional requests: once to know the data, then the tag holds
+        String first = beerController.listBeers(null, null, null, 1, 25, null).getHeaders().getETag();
+        String etag = beerController.listBeers(null, null, null, 1, 25, first).getHeaders().getETag();
+        assertThat(beerController.listBeers(null, null, null, 1, 25, etag).getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+
+        Beer beer = beerRepository.findAll().get(0);
+        String beerName = beer.getBeerName();
+
+        // saved with the repository: no event, only the data tells
+        beer.setBeerName("Renamed Beer");
+        beerRepository.save(beer);
+
+        try {
+            ResponseEntity<Page<BeerDTO>> page = beerController.listBeers(null, null, null, 1, 25, etag);
+
+            assertThat(page.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(page.getHeaders().getETag()).isNotEqualTo(etag);
+        } finally {
+            Beer renamed = beerRepository.findById(beer.getId()).orElseThrow();
+            renamed.setBeerName(beerName);
+            beerRepository.save(renamed);
+        }
+    }
+
+    @Test
+    void testExportBeers() throws Exception {
+        // the body is written asynchronously: wait for it, then check one line per beer
+        MvcResult result = mockMvc.perform(get(BeerController.BEER_EXPORT_PATH)
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON));
+
+        String[] lines = result.getResponse().getContentAsString().trim().split("\n");
+
+        assertThat((long) lines.length).isEqualTo(beerRepository.count());
+        assertThat(objectMapper.readValue(lines[0], BeerDTO.class).getId()).isNotNull();
+    }
+
+    @Test
+    @Transactional
+    @Rollback
+    void testImportBeersCsv() throws Exception {
+        long before = beerRepository.count();
+
+        String csv = """
+                "row","count.x","abv","ibu","id","beer","style","brewery_id","ounces","style2","count.y","brewery","city","state","label"
+                "1",1,0.05,NA,1436,"Import Beer 1","American Pale Lager",408,12,NA,409,"Brewery","Bend","OR","Label"
+                "2",2,0.066,NA,2265,"Import Beer 2","American IPA",177,12,NA,178,"Brewery","Gary","IN","Label"
+                "3",3,0.071,NA,2264,"Import Beer 3","Oatmeal Stout",177,12,NA,178,"Brewery","Gary","IN","Label"
+                """;
+
+        mockMvc.perform(multipart(BeerImportController.BEER_IMPORT_PATH)
+                        .file(new MockMultipartFile("file", "beers.csv", "text/csv", csv.getBytes(StandardCharsets.UTF_8))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.rows", is(3)));
+
+        assertThat(beerRepository.count()).isEqualTo(before + 3);
+    }
+
+    // not in a test transaction: the import commits (or rolls back) its chunks itself
+    @Test
+    void testImportBeersCsvInvalidRow() throws Exception {
+        long before = beerRepository.count();
+
+        // blank beer name: the row fails the Beer constraints
+        String csv = """
+                "row","count.x","abv","ibu","id","beer","style","brewery_id","ounces","style2","count.y","brewery","city","state","label"
+                "1",1,0.05,NA,1436,"","American Pale Lager",408,12,NA,409,"Brewery","Bend","OR","Label"
+                """;
+
+        mockMvc.perform(multipart(BeerImportController.BEER_IMPORT_PATH)
+                        .file(new MockMultipartFile("file", "beers.csv", "text/csv", csv.getBytes(StandardCharsets.UTF_8))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.length()", is(1)));
+
+        assertThat(beerRepository.count()).isEqualTo(before);
+    }
+
+    @Test
+    @Transactional
+    @Rollback
+    void testImportBeersNdjson() throws Exception {
+        long before = beerRepository.count();
+
+        String ndjson = objectMapper.writeValueAsString(BeerDTO.builder()
+                        .beerName("Import Beer")
+                        .beerStyle(BeerStyle.ALE)
+                        .upc("12345")
+                        .price(BigDecimal.TEN)
+                        .quantityOnHand(10)
+                        .build()) + "\n";
+
+        mockMvc.perform(multipart(BeerImportController.BEER_IMPORT_PATH)
+                        .file(new MockMultipartFile("file", "beers.ndjson", MediaType.APPLICATION_NDJSON_VALUE,
+                                ndjson.getBytes(StandardCharsets.UTF_8))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.rows", is(1)));
+
+        assertThat(beerRepository.count()).isEqualTo(before + 1);
+    }
+
+    @Test
+    void testInventoryDeltas() throws Exception {
+        Beer beer = beerRepository.findAll().get(0);
+        int before = beer.getQuantityOnHand();
+
+        mockMvc.perform(post(BeerInventoryController.BEER_INVENTORY_PATH, beer.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"delta\": 5}"))
+                .andExpect(status().isAccepted());
+        mockMvc.perform(post(BeerInventoryController.BEER_INVENTORY_PATH, beer.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"delta\": -2}"))
+                .andExpect(status().isAccepted());
+
+        // movements are applied by the flush (scheduled, or right now)
+        beerInventoryService.flush();
+        assertThat(beerRepository.findById(beer.getId()).get().getQuantityOnHand()).isEqualTo(before + 3);
+
+        // not rolled back by a test transaction (the flush commits): put the stock back
+        beerInventoryService.addDelta(beer.getId(), -3);
+        beerInventoryService.flush();
+        assertThat(beerRepository.findById(beer.getId()).get().getQuantityOnHand()).isEqualTo(before);
+    }
+
+    @Test
+    void testInventoryDeltaNeverTakesTheStockBelowZero() {
+        Beer beer = beerRepository.findAll().get(0);
+        int before = beer.getQuantityOnHand();
+
+        beerInventoryService.addDelta(beer.getId(), -(before + 10));
+        assertThat(beerInventoryService.flush()).isEqualTo(1);
+        assertThat(beerRepository.findById(beer.getId()).get().getQuantityOnHand()).isZero();
+
+        // the 10 taken too many are dropped, not owed
+        beerInventoryService.addDelta(beer.getId(), before);
+        beerInventoryService.flush();
+        assertThat(beerRepository.findById(beer.getId()).get().getQuantityOnHand()).isEqualTo(before);
+    }
+
+    @Test
+    void testInventoryDeltaNeverTakesReservedStock() {
+        Beer beer = beerRepository.findAll().get(1);
+        int before = beer.getQuantityOnHand();
+        // an order holds all of it, not written yet
+        assertThat(stockReservations.reserve(Map.of(beer.getId(), before))).isTrue();
+
+        beerInventoryService.addDelta(beer.getId(), -5);
+        assertThat(beerInventoryService.flush()).isZero();
+        assertThat(beerRepository.findById(beer.getId()).get().getQuantityOnHand()).isEqualTo(before);
+
+        stockReservations.release(beer.getId(), before);
+    }
+
+    @Test
+    void testInventoryDeltaNotFound() throws Exception {
+        mockMvc.perform(post(BeerInventoryController.BEER_INVENTORY_PATH, UUID.randomUUID())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"delta\": 5}"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testListBeersWithoutCount() throws Exception {
+
+        mockMvc.perform(get(BeerController.BEER_PATH)
+                        .queryParam("beerStyle", BeerStyle.IPA.name())
+                        .queryParam("withCount", "false")
+                        .queryParam("pageNumber", "1")
+                        .queryParam("pageSize", "500"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.size()", is(500)))
+                .andExpect(jsonPath("$.last", is(false)))
+                .andExpect(jsonPath("$.totalElements").doesNotExist());
+    }
+
+    @Test
+    void testListBeersByCursorVisitsEveryBeerOnce() {
+        Set<UUID> seen = new HashSet<>();
+        String cursor = "";
+        int pages = 0;
+
+        // follow the continuation tokens until the last page
+        do {
+            BeerKeysetPage page = beerController.listBeersByCursor(null, null, null, cursor, 1000);
+            page.getContent().forEach(beer -> assertThat(seen.add(beer.getId())).isTrue());
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertThat(pages).isEqualTo(3);
+        assertThat(seen.size()).isEqualTo(2413);
+    }
+
+    @Test
+    void testListBeersByCursorFilteredFirstPage() throws Exception {
+
+        mockMvc.perform(get(BeerController.BEER_PATH)
+                        .queryParam("beerStyle", BeerStyle.IPA.name())
+                        .queryParam("beerName", "IPA")
+                        .queryParam("cursor", "")
+                        .queryParam("pageSize", "50"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.size()", is(50)))
+                .andExpect(jsonPath("$.nextCursor").value(IsNull.notNullValue()));
+    }
+
+    @Test
+    void testListBeersByCursorInvalidToken() throws Exception {
+
+        mockMvc.perform(get(BeerController.BEER_PATH)
+                        .queryParam("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void testListBeerByNameAndStyleQueryParamShowInventoryTruePage2() throws Exception {
 
@@ -136,7 +373,7 @@ class BeerControllerIT {
     @Test
     void testPatchByIdNotFound() {
         assertThrows(NotFoundException.class, () -> {
-            beerController.patchBeerById(UUID.randomUUID(), BeerDTO.builder().build());
+            beerController.patchBeerById(UUID.randomUUID(), BeerDTO.builder().build(), null);
         });
     }
 
@@ -181,7 +418,7 @@ class BeerControllerIT {
         dto.setBeerName(updatedName);
         dto.setPrice(BigDecimal.valueOf(newPrice));
 
-        ResponseEntity responseEntity = beerController.patchBeerById(beer.getId(), dto);
+        ResponseEntity responseEntity = beerController.patchBeerById(beer.getId(), dto, null);
 
         assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
 
@@ -192,6 +429,27 @@ class BeerControllerIT {
 
     }
 
+    @Rollback
+    @Transactional
+    @Test
+    void testPatchBeerByIdIfMatch() {
+        Beer beer = beerRepository.findAll().get(0);
+        String etag = "\"" + beer.getVersion() + "\"";
+        BeerDTO patch = BeerDTO.builder().beerName("If-Match Beer").build();
+
+        // one conditional update: the new version comes back without reading the beer
+        ResponseEntity responseEntity = beerController.patchBeerById(beer.getId(), patch, etag);
+        assertThat(responseEntity.getHeaders().getETag()).isEqualTo("\"" + (beer.getVersion() + 1) + "\"");
+
+        Beer saved = beerRepository.findById(beer.getId()).get();
+        assertThat(saved.getBeerName()).isEqualTo("If-Match Beer");
+        assertThat(saved.getUpc()).isEqualTo(beer.getUpc()); // not in the patch: kept
+        assertThat(saved.getVersion()).isEqualTo(beer.getVersion() + 1);
+
+        // the same tag is stale now
+        assertThrows(PreconditionFailedException.class, () -> beerController.patchBeerById(beer.getId(), patch, etag));
+    }
+
     @Test
     void testDeleteByIdNotFound() {
         assertThrows(NotFoundException.class, () -> {
@@ -213,11 +471,20 @@ class BeerControllerIT {
         assertThat(beerRepository.findById(beer.getId())).isEmpty();
     }
 
+    @Test
+    void testUpdateByIdNotFoundWithInvalidValues() {
+        // an unknown beer is not found, whatever the values
+        BeerDTO invalid = BeerDTO.builder().beerName("x".repeat(51)).build();
+
+        assertThrows(NotFoundException.class, () -> beerController.updateById(UUID.randomUUID(), invalid, null));
+        assertThrows(NotFoundException.class, () -> beerController.patchBeerById(UUID.randomUUID(), invalid, null));
+    }
+
     @Test
     void testUpdateByIdNotFound() {
 
         assertThrows(NotFoundException.class, () -> {
-            beerController.updateById(UUID.randomUUID(), BeerDTO.builder().build());
+            beerController.updateById(UUID.randomUUID(), BeerDTO.builder().build(), null);
         });
 
     }
@@ -240,10 +507,12 @@ class BeerControllerIT {
         beerDTO.setVersion(null);
 
         // Now, can update:
-        ResponseEntity responseEntity = beerController.updateById(beer.getId(), beerDTO);
+        ResponseEntity responseEntity = beerController.updateById(beer.getId(), beerDTO, null);
 
         // check if response has the status 204 NO CONTENT
         assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+        // unconditional: the new version is not read back
+        assertThat(responseEntity.getHeaders().getETag()).isNull();
 
         // really updated?
         Beer updatedBeer = beerRepository.findById(beer.getId()).get();
@@ -251,6 +520,23 @@ class BeerControllerIT {
 
     }
 
+    // same field set as BeerServiceImplTest.testUpdateKeepsQuantityOnHand
+    @Rollback
+    @Transactional
+    @Test
+    void testUpdateByIdKeepsQuantityOnHand() {
+        Beer beer = beerRepository.findAll().get(0);
+        BeerDTO beerDTO = beerMapper.beerToBeerDto(beer);
+        beerDTO.setBeerName("UPDATED");
+        beerDTO.setQuantityOnHand(beer.getQuantityOnHand() + 100);
+
+        beerController.updateById(beer.getId(), beerDTO, null);
+
+        Beer updatedBeer = beerRepository.findById(beer.getId()).get();
+        assertThat(updatedBeer.getBeerName()).isEqualTo("UPDATED");
+        assertThat(updatedBeer.getQuantityOnHand()).isEqualTo(beer.getQuantityOnHand());
+    }
+
     @Rollback
     @Transactional
     @Test
@@ -281,7 +567,7 @@ class BeerControllerIT {
 
     @Test
     void testGetByIdNotFoundError() {
-        assertThrows(NotFoundException.class,() -> beerController.getBeerById(UUID.randomUUID()));
+        assertThrows(NotFoundException.class,() -> beerController.getBeerById(UUID.randomUUID(), null));
     }
 
     @Test
@@ -289,14 +575,14 @@ class BeerControllerIT {
 
         Beer testBeer = beerRepository.findAll().get(0);
 
-        BeerDTO dto = beerController.getBeerById(testBeer.getId());
+        BeerDTO dto = beerController.getBeerById(testBeer.getId(), null).getBody();
 
         assertThat(dto).isNotNull();
     }
 
     @Test
     void testListBeers() {
-        Page<BeerDTO> dtos = beerController.listBeers(null, null, null, 1, 2413);
+        Page<BeerDTO> dtos = beerController.listBeers(null, null, null, 1, 2413, null).getBody();
 
         assertThat(dtos.getContent().size()).isEqualTo(1000);
     }
@@ -310,7 +596,7 @@ class BeerControllerIT {
         // test if controller returns empty list, (not null, just empty list)
 
         beerRepository.deleteAll(); // this will affect other test. So after the test, a rollback can reset the state
-        Page<BeerDTO> dtos = beerController.listBeers(null, null, null, 1, 25);
+        Page<BeerDTO> dtos = beerController.listBeers(null, null, null, 1, 25, null).getBody();
 
         assertThat(dtos).isNotNull();
         assertThat(dtos.getContent().size()).isEqualTo(0);
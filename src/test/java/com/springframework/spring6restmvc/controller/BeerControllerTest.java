@@ -11,7 +11,9 @@ import org.mockito.Captor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
@@ -23,7 +25,9 @@ import java.util.UUID;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.core.Is.is;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
@@ -101,7 +105,7 @@ class BeerControllerTest {
                 .quantityOnHand(testBeer.getQuantityOnHand())
                 .build();
 
-        given(beerService.patchBeerById(any(UUID.class), any(BeerDTO.class))).willReturn(Optional.of(dto));
+        given(beerService.patchBeerById(any(UUID.class), any(BeerDTO.class), any())).willReturn(Optional.of(dto));
 
         // HTTP PATCH .../api/v1/beer/{beerId}
         // add 'Accept' header to tell json results accepted
@@ -116,7 +120,7 @@ class BeerControllerTest {
 
         // Verify that our mock beerService's patchBeerById() method is called.
         // And capture the arguments passed to the method.
-        verify(beerService).patchBeerById(uuidArgumentCaptor.capture(), beerArgumentCaptor.capture());
+        verify(beerService).patchBeerById(uuidArgumentCaptor.capture(), beerArgumentCaptor.capture(), any());
 
         // Make sure that passed UUID and Object are what we actually passed.
         assertThat(testBeer.getId().equals(uuidArgumentCaptor.getValue()));
@@ -148,7 +152,7 @@ class BeerControllerTest {
         testBeer.setBeerName(""); // set name blank
 
         // When beer controller invokes updateById() of the service, service returns the updated resource. Imitate it
-        given(beerService.updateById(any(UUID.class), any(BeerDTO.class))).willReturn(Optional.of(testBeer));
+        given(beerService.updateById(any(UUID.class), any(BeerDTO.class), any())).willReturn(Optional.of(testBeer));
 
         // HTTP PUT .../api/v1/beer/{beerId}
         // add 'Accept' header with value application/json
@@ -168,7 +172,7 @@ class BeerControllerTest {
         BeerDTO testBeer = beerServiceImpl.listBeers(null, null, null, 1, 25).getContent().get(0);
 
         // When beer controller invokes updateById() of the service, service returns the updated resource. Imitate it
-        given(beerService.updateById(any(UUID.class), any(BeerDTO.class))).willReturn(Optional.of(testBeer));
+        given(beerService.updateById(any(UUID.class), any(BeerDTO.class), any())).willReturn(Optional.of(testBeer));
 
         // HTTP PUT .../api/v1/beer/{beerId}
         // add 'Accept' header with value application/json
@@ -183,7 +187,7 @@ class BeerControllerTest {
 
         // we need to verify that handler method called our mock beerService's updateById() method.
         // Verify that updateById() is called with any UUID and Beer parameters:
-        verify(beerService).updateById(any(UUID.class), any(BeerDTO.class));
+        verify(beerService).updateById(any(UUID.class), any(BeerDTO.class), any());
     }
 
     @Test
@@ -227,6 +231,57 @@ class BeerControllerTest {
                 .andExpect(jsonPath("$.content.size()", is(3)));
     }
 
+    @Test
+    void getBeerByIdNotModified() throws Exception {
+        BeerDTO testBeer = beerServiceImpl.listBeers(null, null, null, 1, 25).getContent().get(0);
+
+        given(beerService.getBeerVersion(testBeer.getId())).willReturn(Optional.of(testBeer.getVersion()));
+
+        // the client already has this version: 304 without loading the beer
+        mockMvc.perform(get(BeerController.BEER_PATH_ID, testBeer.getId())
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"" + testBeer.getVersion() + "\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + testBeer.getVersion() + "\""));
+
+        verify(beerService, never()).getBeerById(any(UUID.class));
+    }
+
+    @Test
+    void updateByIdPreconditionFailed() throws Exception {
+        BeerDTO testBeer = beerServiceImpl.listBeers(null, null, null, 1, 25).getContent().get(0);
+
+        // somebody else updated the beer since the client read it: the conditional update matches no row
+        given(beerService.updateById(any(UUID.class), any(BeerDTO.class), eq(testBeer.getVersion())))
+                .willThrow(new ObjectOptimisticLockingFailureException(BeerDTO.class, testBeer.getId()));
+
+        mockMvc.perform(put(BeerController.BEER_PATH_ID, testBeer.getId())
+                        .header(HttpHeaders.IF_MATCH, "\"" + testBeer.getVersion() + "\"")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(testBeer)))
+                .andExpect(status().isPreconditionFailed());
+
+        // the version went into the update itself, no separate version probe
+        verify(beerService, never()).getBeerVersion(any(UUID.class));
+    }
+
+    @Test
+    void updateByIdWeakIfMatchPreconditionFailed() throws Exception {
+        BeerDTO testBeer = beerServiceImpl.listBeers(null, null, null, 1, 25).getContent().get(0);
+
+        given(beerService.getBeerVersion(testBeer.getId())).willReturn(Optional.of(testBeer.getVersion()));
+
+        // If-Match uses the strong comparison: a weak tag never matches, the beer is not written
+        mockMvc.perform(put(BeerController.BEER_PATH_ID, testBeer.getId())
+                        .header(HttpHeaders.IF_MATCH, "W/\"" + testBeer.getVersion() + "\"")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(testBeer)))
+                .andExpect(status().isPreconditionFailed());
+
+        verify(beerService, never()).updateById(any(UUID.class), any(BeerDTO.class), any());
+    }
+
     @Test
     void getBeerByIdNotFound() throws Exception {
         // When our mock beerService's getBeerById method is called with any UUID parameter
@@ -0,0 +1,286 @@
+package com.springframework.spring6restmvc.controller;
+
+import com.springframework.spring6restmvc.entities.Beer;
+import com.springframework.spring6restmvc.entities.BeerOrder;
+import com.springframework.spring6restmvc.entities.BeerOrderLine;
+import com.springframework.spring6restmvc.entities.BeerOrderShipment;
+import com.springframework.spring6restmvc.entities.Customer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springframework.spring6restmvc.model.BeerOrderCreateDTO;
+import com.springframework.spring6restmvc.model.BeerOrderDTO;
+import com.springframework.spring6restmvc.model.BeerOrderLineCreateDTO;
+import com.springframework.spring6restmvc.model.BeerOrderLineDTO;
+import com.springframework.spring6restmvc.services.UnknownBeerException;
+import com.springframework.spring6restmvc.repositories.BeerRepository;
+import com.springframework.spring6restmvc.services.StockReservations;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.Rollback;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+class BeerOrderControllerIT {
+
+    @Autowired
+    BeerOrderController beerOrderController;
+
+    @Autowired
+    BeerRepository beerRepository;
+
+    @Autowired
+    StockReservations stockReservations;
+
+    @Autowired
+    EntityManager entityManager;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    WebApplicationContext wac;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @Test
+    void testListOrdersOfUnknownCustomer() {
+        assertThrows(NotFoundException.class, () -> {
+            beerOrderController.listOrdersOfCustomer(UUID.randomUUID(), null, null);
+        });
+    }
+
+    @Rollback
+    @Transactional
+    @Test
+    void testListOrdersOfCustomerWithoutOrders() {
+        Customer customer = saveCustomer();
+
+        Page<BeerOrderDTO> page = beerOrderController.listOrdersOfCustomer(customer.getId(), null, null);
+
+        assertThat(page.getContent()).isEmpty();
+        assertThat(page.getTotalElements()).isZero();
+    }
+
+    @Rollback
+    @Transactional
+    @Test
+    void testListOrdersOfCustomer() {
+        Customer customer = saveCustomer();
+        List<Beer> beers = beerRepository.findAll().subList(0, 3);
+        for (int i = 0; i < 5; i++) {
+            saveOrder(customer, "order " + i, beers);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        Page<BeerOrderDTO> page = beerOrderController.listOrdersOfCustomer(customer.getId(), 1, 3);
+
+        // customer check, ids of the page, count, orders with lines, beers and shipment
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(4);
+
+        assertThat(page.getTotalElements()).isEqualTo(5);
+        assertThat(page.getContent()).hasSize(3);
+        assertThat(page.getContent()).allSatisfy(order -> {
+            assertThat(order.getCustomerId()).isEqualTo(customer.getId());
+            assertThat(order.getBeerOrderLines()).hasSize(3);
+            assertThat(order.getBeerOrderLines()).allSatisfy(line -> assertThat(line.getBeerName()).isNotNull());
+            assertThat(order.getBeerOrderShipment().getTrackingNumber()).startsWith("track-");
+        });
+        assertThat(page.getContent()).isSortedAccordingTo((a, b) -> b.getCreatedDate().compareTo(a.getCreatedDate()));
+    }
+
+    @Rollback
+    @Transactional
+    @Test
+    void testStatementsDoNotGrowWithPageSize() {
+        Customer customer = saveCustomer();
+        List<Beer> beers = beerRepository.findAll().subList(0, 2);
+        for (int i = 0; i < 20; i++) {
+            saveOrder(customer, "order " + i, beers);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        // the whole history fits in the page: no count query
+        Page<BeerOrderDTO> page = beerOrderController.listOrdersOfCustomer(customer.getId(), 1, 50);
+
+        assertThat(page.getContent()).hasSize(20);
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(3);
+    }
+
+    @Rollback
+    @Transactional
+    @Test
+    void testPlaceOrder() {
+        Customer customer = saveCustomer();
+        List<Beer> beers = beersInStock(6);
+        Beer first = beers.get(0);
+        Beer second = beers.get(1);
+        long firstAvailable = stockReservations.available(first.getId());
+        long secondAvailable = stockReservations.available(second.getId());
+        statistics.clear();
+
+        ResponseEntity<BeerOrderDTO> response = beerOrderController.placeOrder(customer.getId(), BeerOrderCreateDTO.builder()
+                .customerRef("web order")
+                .beerOrderLines(List.of(
+                        line(first, 4),
+                        line(second, 1),
+                        line(first, 2)))
+                .build());
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        BeerOrderDTO placedOrder = response.getBody();
+        assertThat(placedOrder.getId()).isNotNull();
+        assertThat(placedOrder.getCustomerId()).isEqualTo(customer.getId());
+        assertThat(placedOrder.getBeerOrderLines()).extracting(BeerOrderLineDTO::getQuantityAllocated)
+                .containsExactly(4, 1, 2);
+
+        // customer, beers, order + lines in one batch: no beer row is updated while the order is placed
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(4);
+
+        assertThat(stockReservations.available(first.getId())).isEqualTo(firstAvailable - 6);
+        assertThat(stockReservations.available(second.getId())).isEqualTo(secondAvailable - 1);
+
+        entityManager.clear();
+        assertThat(beerOrderController.listOrdersOfCustomer(customer.getId(), null, null).getContent())
+                .singleElement()
+                .satisfies(order -> assertThat(order.getBeerOrderLines()).hasSize(3));
+    }
+
+    @Rollback
+    @Transactional
+    @Test
+    void testPlaceOrderShortOfStockIsNotAllocated() {
+        Customer customer = saveCustomer();
+        List<Beer> beers = beersInStock(1);
+        Beer first = beers.get(0);
+        Beer second = beers.get(1);
+        long firstAvailable = stockReservations.available(first.getId());
+        long secondAvailable = stockReservations.available(second.getId());
+
+        BeerOrderDTO placedOrder = beerOrderController.placeOrder(customer.getId(), BeerOrderCreateDTO.builder()
+                .beerOrderLines(List.of(
+                        line(first, 1),
+                        line(second, (int) secondAvailable + 1)))
+                .build()).getBody();
+
+        // all or nothing: the first beer is not allocated either
+        assertThat(placedOrder.getBeerOrderLines()).extracting(BeerOrderLineDTO::getQuantityAllocated)
+                .containsExactly(0, 0);
+        assertThat(stockReservations.available(first.getId())).isEqualTo(firstAvailable);
+        assertThat(stockReservations.available(second.getId())).isEqualTo(secondAvailable);
+    }
+
+    @Test
+    void testPlaceOrderUnknownCustomer() {
+        Beer beer = beerRepository.findAll().get(0);
+
+        assertThrows(NotFoundException.class, () -> {
+            beerOrderController.placeOrder(UUID.randomUUID(), BeerOrderCreateDTO.builder()
+                    .beerOrderLines(List.of(line(beer, 1)))
+                    .build());
+        });
+    }
+
+    @Rollback
+    @Transactional
+    @Test
+    void testPlaceOrderUnknownBeer() {
+        Customer customer = saveCustomer();
+        UUID unknownBeerId = UUID.randomUUID();
+
+        UnknownBeerException exception = assertThrows(UnknownBeerException.class, () -> {
+            beerOrderController.placeOrder(customer.getId(), BeerOrderCreateDTO.builder()
+                    .beerOrderLines(List.of(BeerOrderLineCreateDTO.builder().beerId(unknownBeerId).orderQuantity(1).build()))
+                    .build());
+        });
+
+        assertThat(exception.getBeerIds()).containsExactly(unknownBeerId);
+    }
+
+    @Test
+    void testPlaceOrderWithoutLines() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(wac).build();
+        UUID customerId = UUID.randomUUID();
+
+        mockMvc.perform(post(BeerOrderController.CUSTOMER_ORDERS_PATH, customerId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(BeerOrderCreateDTO.builder().customerRef("empty").build())))
+                .andExpect(status().isBadRequest());
+    }
+
+    List<Beer> beersInStock(int minimumAvailable) {
+        List<Beer> beers = beerRepository.findAll().stream()
+                .filter(beer -> stockReservations.available(beer.getId()) >= minimumAvailable)
+                .toList();
+        assertThat(beers).hasSizeGreaterThanOrEqualTo(2);
+        return beers;
+    }
+
+    BeerOrderLineCreateDTO line(Beer beer, int orderQuantity) {
+        return BeerOrderLineCreateDTO.builder()
+                .beerId(beer.getId())
+                .orderQuantity(orderQuantity)
+                .build();
+    }
+
+    Customer saveCustomer() {
+        Customer customer = Customer.builder()
+                .name("Order history")
+                .email(UUID.randomUUID() + "@example.com")
+                .build();
+        entityManager.persist(customer);
+        return customer;
+    }
+
+    void saveOrder(Customer customer, String customerRef, List<Beer> beers) {
+        BeerOrder beerOrder = BeerOrder.builder()
+                .customerRef(customerRef)
+                .customer(customer)
+                .beerOrderShipment(BeerOrderShipment.builder()
+                        .trackingNumber("track-" + customerRef)
+                        .build())
+                .build();
+        entityManager.persist(beerOrder);
+
+        for (Beer beer : beers) {
+            entityManager.persist(BeerOrderLine.builder()
+                    .beerOrder(beerOrder)
+                    .beer(beer)
+                    .orderQuantity(2)
+                    .quantityAllocated(0)
+                    .build());
+        }
+    }
+}
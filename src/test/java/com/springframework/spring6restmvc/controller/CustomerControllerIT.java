@@ -3,21 +3,38 @@ package com.springframework.spring6restmvc.controller;
 
 import com.springframework.spring6restmvc.entities.Customer;
 import com.springframework.spring6restmvc.mappers.CustomerMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.springframework.spring6restmvc.model.CustomerDTO;
+import com.springframework.spring6restmvc.model.CustomerKeysetPage;
 import com.springframework.spring6restmvc.repositories.CustomerRepository;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.annotation.Rollback;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.WebApplicationContext;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
 class CustomerControllerIT {
@@ -31,10 +48,16 @@ class CustomerControllerIT {
     @Autowired
     CustomerMapper customerMapper;
 
+    @Autowired
+    WebApplicationContext wac;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
     @Test
     void testPatchCustomerByIdNotFound() {
         assertThrows(NotFoundException.class, () -> {
-           customerController.patchCustomerById(UUID.randomUUID(), CustomerDTO.builder().build());
+           customerController.patchCustomerById(UUID.randomUUID(), CustomerDTO.builder().build(), null);
         });
     }
     @Rollback
@@ -49,13 +72,29 @@ class CustomerControllerIT {
         final String updatedName = "Updated";
         dto.setName(updatedName);
 
-        ResponseEntity responseEntity = customerController.patchCustomerById(customer.getId(), dto);
+        ResponseEntity responseEntity = customerController.patchCustomerById(customer.getId(), dto, null);
 
         assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
 
         assertThat(customerRepository.findById(customer.getId()).get().getName()).isEqualTo(updatedName);
     }
 
+    @Rollback
+    @Transactional
+    @Test
+    void testUpdateByIdWithStaleIfMatch() {
+        Customer customer = customerRepository.findAll().get(0);
+        String staleETag = "\"" + customer.getVersion() + "\"";
+        CustomerDTO dto = CustomerDTO.builder().name("First Writer").email(customer.getEmail()).build();
+
+        customerController.updateById(customer.getId(), dto, staleETag);
+
+        // same tag as the first writer: its version is the condition of the update, not a probe before it
+        assertThrows(PreconditionFailedException.class, () -> customerController.updateById(customer.getId(),
+                CustomerDTO.builder().name("Second Writer").email(customer.getEmail()).build(), staleETag));
+        assertThat(customerRepository.findById(customer.getId()).get().getName()).isEqualTo("First Writer");
+    }
+
     @Test
     void testDeleteByIdNotFound() {
 
@@ -81,7 +120,7 @@ class CustomerControllerIT {
     @Test
     void testUpdateByIdNotFound() {
         assertThrows(NotFoundException.class, () -> {
-            customerController.updateById(UUID.randomUUID(), CustomerDTO.builder().build());
+            customerController.updateById(UUID.randomUUID(), CustomerDTO.builder().build(), null);
         });
     }
 
@@ -97,7 +136,7 @@ class CustomerControllerIT {
         final String nameUpdated = "UPDATED";
         dto.setName(nameUpdated);
 
-        ResponseEntity responseEntity = customerController.updateById(testCustomer.getId(), dto);
+        ResponseEntity responseEntity = customerController.updateById(testCustomer.getId(), dto, null);
 
         assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
 
@@ -127,16 +166,41 @@ class CustomerControllerIT {
         assertThat(savedCustomer).isNotNull();
     }
 
+    @Test
+    void testCreateCustomerWithEmailInUse() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(wac).build();
+        CustomerDTO dto = CustomerDTO.builder().name("Second John").email("JOHN.SPRING@example.com").build();
+
+        mockMvc.perform(post(CustomerController.CUSTOMER_PATH)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(dto)))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$[0].email").exists());
+    }
+
+    @Test
+    void testCreateCustomerWithTooLongEmail() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(wac).build();
+        CustomerDTO dto = CustomerDTO.builder().name("Long Email").email("a".repeat(300) + "@example.com").build();
+
+        // refused by the column length, not by an index: a bad value, not a conflict
+        mockMvc.perform(post(CustomerController.CUSTOMER_PATH)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(dto)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.length()").value(1));
+    }
+
     @Test
     void testGetCustomerByIdNotFound() {
-        assertThrows(NotFoundException.class, () -> customerController.getCustomerById(UUID.randomUUID()));
+        assertThrows(NotFoundException.class, () -> customerController.getCustomerById(UUID.randomUUID(), null));
     }
 
     @Test
     void testGetCustomerById() {
         Customer testCustomer = customerRepository.findAll().get(0);
 
-        CustomerDTO dto = customerController.getCustomerById(testCustomer.getId());
+        CustomerDTO dto = customerController.getCustomerById(testCustomer.getId(), null).getBody();
 
         assertThat(dto).isNotNull();
     }
@@ -144,10 +208,11 @@ class CustomerControllerIT {
     @Test
     void testListCustomers() {
 
-        List<CustomerDTO> dtos = customerController.listCustomers();
+        Page<CustomerDTO> dtos = customerController.listCustomersPage(null, null, null).getBody();
 
         assertThat(dtos).isNotNull();
-        assertThat(dtos.size()).isEqualTo(3);
+        assertThat(dtos.getContent().size()).isEqualTo(3);
+        assertThat(dtos.getTotalElements()).isEqualTo(3);
     }
 
     @Rollback
@@ -155,9 +220,103 @@ class CustomerControllerIT {
     @Test
     void testEmptyListCustomers() {
         customerRepository.deleteAll();
-        List<CustomerDTO> dtos = customerController.listCustomers();
+        Page<CustomerDTO> dtos = customerController.listCustomersPage(null, null, null).getBody();
 
         assertThat(dtos).isNotNull();
-        assertThat(dtos.size()).isEqualTo(0);
+        assertThat(dtos.getContent().size()).isEqualTo(0);
+    }
+
+    @Test
+    void testGetCustomerByEmailIgnoresCase() {
+        CustomerDTO dto = customerController.getCustomerByEmail("  John.Spring@EXAMPLE.com ");
+
+        assertThat(dto.getName()).isEqualTo("John Spring");
+        assertThat(dto.getEmail()).isEqualTo("john.spring@example.com");
+    }
+
+    @Test
+    void testGetCustomerByEmailMissIsForgottenOnSave() {
+        // not transactional: the miss cache only hears about committed saves
+        String email = "new." + UUID.randomUUID() + "@example.com";
+
+        assertThrows(NotFoundException.class, () -> customerController.getCustomerByEmail(email));
+        assertThrows(NotFoundException.class, () -> customerController.getCustomerByEmail(email));
+
+        customerController.createNewCustomer(CustomerDTO.builder().name("New Customer").email(email.toUpperCase()).build());
+
+        try {
+            assertThat(customerController.getCustomerByEmail(email).getName()).isEqualTo("New Customer");
+        } finally {
+            customerRepository.findByEmail(email).ifPresent(customerRepository::delete);
+        }
+    }
+
+    @Test
+    void testListCustomersPaged() {
+        Page<CustomerDTO> first = customerController.listCustomersPage(1, 2, null).getBody();
+        Page<CustomerDTO> second = customerController.listCustomersPage(2, 2, null).getBody();
+
+        assertThat(first.getContent()).hasSize(2);
+        assertThat(second.getContent()).hasSize(1);
+        assertThat(first.getTotalPages()).isEqualTo(2);
+        // sorted by name
+        assertThat(first.getContent().get(0).getName()).isLessThanOrEqualTo(first.getContent().get(1).getName());
+    }
+
+    @Test
+    void testListCustomersByCursorVisitsEveryCustomerOnce() {
+        List<UUID> ids = new ArrayList<>();
+        String cursor = "";
+
+        do {
+            CustomerKeysetPage page = customerController.listCustomersByCursor(cursor, 1);
+            page.getContent().forEach(customer -> ids.add(customer.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertThat(ids).hasSize((int) customerRepository.count()).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void testListCustomersByCursorInvalidToken() {
+        assertThrows(BadRequestException.class, () -> customerController.listCustomersByCursor("not-a-cursor", 10));
+    }
+
+    @Test
+    void testListCustomersIsAJsonArrayByDefault() throws Exception {
+        assertThat(listedCustomers(get(CustomerController.CUSTOMER_PATH))).hasSize((int) customerRepository.count());
+    }
+
+    @Test
+    void testListCustomersIsAPageWhenAskedFor() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(wac).build();
+
+        mockMvc.perform(get(CustomerController.CUSTOMER_PATH).param("pageSize", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(2))
+                .andExpect(jsonPath("$.totalElements").value((int) customerRepository.count()));
+    }
+
+    @Test
+    void testStreamCustomers() throws Exception {
+        CustomerDTO[] customers = listedCustomers(get(CustomerController.CUSTOMER_PATH).param("stream", "true"));
+
+        assertThat(customers).hasSize((int) customerRepository.count());
+        assertThat(customers[0].getId()).isNotNull();
+    }
+
+    private CustomerDTO[] listedCustomers(MockHttpServletRequestBuilder requestBuilder) throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(wac).build();
+
+        // the body is written asynchronously: wait for it, then read it back as one JSON array
+        MvcResult result = mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+
+        return objectMapper.readValue(result.getResponse().getContentAsString(), CustomerDTO[].class);
     }
 }
\ No newline at end of file
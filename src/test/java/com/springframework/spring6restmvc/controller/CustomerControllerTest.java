@@ -63,7 +63,7 @@ class CustomerControllerTest {
 
     @Test
     void patchCustomerById() throws Exception {
-        CustomerDTO testCustomer = customerServiceImpl.listCustomers().get(0);
+        CustomerDTO testCustomer = customerServiceImpl.listCustomers(1, 25).getContent().get(0);
 
         // following map represents the patch - properties to be updated
         Map<String, Object> patchMap = new HashMap<>();
@@ -77,7 +77,7 @@ class CustomerControllerTest {
                 .lastModifiedDate(testCustomer.getLastModifiedDate())
                 .build();
 
-        given(customerService.patchCustomerById(any(UUID.class), any(CustomerDTO.class))).willReturn(Optional.of(updatedCopy));
+        given(customerService.patchCustomerById(any(UUID.class), any(CustomerDTO.class), any())).willReturn(Optional.of(updatedCopy));
 
         // HTTP PATCH .../api/v1/customer/{customerId}
         // add 'Accept' header to tell client accepts json results
@@ -91,7 +91,7 @@ class CustomerControllerTest {
                 .andExpect(status().isNoContent());
 
         // verify that mock customerService's patchCustomerById method is called and capture the arguments passed into this method
-        verify(customerService).patchCustomerById(uuidArgumentCaptor.capture(), customerArgumentCaptor.capture());
+        verify(customerService).patchCustomerById(uuidArgumentCaptor.capture(), customerArgumentCaptor.capture(), any());
 
         // Check if the passed arguments are proper.
         assertThat(testCustomer.getId().equals(uuidArgumentCaptor.getValue()));
@@ -101,7 +101,7 @@ class CustomerControllerTest {
 
     @Test
     void deleteById() throws Exception {
-        CustomerDTO testCustomer = customerServiceImpl.listCustomers().get(0);
+        CustomerDTO testCustomer = customerServiceImpl.listCustomers(1, 25).getContent().get(0);
 
         given(customerService.deleteById(any(UUID.class))).willReturn(true);
 
@@ -123,11 +123,11 @@ class CustomerControllerTest {
 
     @Test
     void updateById() throws Exception {
-        CustomerDTO testCustomer = customerServiceImpl.listCustomers().get(0);
+        CustomerDTO testCustomer = customerServiceImpl.listCustomers(1, 25).getContent().get(0);
 
         // Refactored customerService now returns updated resource. When Controller calls updateById of the service
         // an optional customerDTO object is returned. So, mock that object
-        given(customerService.updateById(any(UUID.class), any(CustomerDTO.class))).willReturn(Optional.of(testCustomer));
+        given(customerService.updateById(any(UUID.class), any(CustomerDTO.class), any())).willReturn(Optional.of(testCustomer));
 
         // HTTP PUT ../api/v1/customer/{customerId}
         // add 'Accept' header telling that client accepts json results
@@ -143,7 +143,7 @@ class CustomerControllerTest {
         // We expect handler method in the CustomerController will call customerService's updateById() method.
         // That is why we provided a mock customerService. So, here check if related method is called.
         // verify updateById() method is called with any UUID and customer parameters:
-        verify(customerService).updateById(uuidArgumentCaptor.capture(), any(CustomerDTO.class));
+        verify(customerService).updateById(uuidArgumentCaptor.capture(), any(CustomerDTO.class), any());
 
         assertThat(testCustomer.getId().equals(uuidArgumentCaptor.getValue()));
     }
@@ -152,13 +152,13 @@ class CustomerControllerTest {
     void createNewCustomer() throws Exception {
         // testCustomer represents the customer object sent by client. It has no id nor version.
         // We know that id and version data generated by backend, not on frontend.
-        CustomerDTO testCustomer = customerServiceImpl.listCustomers().get(0);
+        CustomerDTO testCustomer = customerServiceImpl.listCustomers(1, 25).getContent().get(0);
         testCustomer.setId(null);
         testCustomer.setVersion(null);
 
         // when any customer object received by handler method of the controller, return the second customer item from our list
         // that customer represents the created customer with id and version data
-        given(customerService.createNewCustomer(any(CustomerDTO.class))).willReturn(customerServiceImpl.listCustomers().get(1));
+        given(customerService.createNewCustomer(any(CustomerDTO.class))).willReturn(customerServiceImpl.listCustomers(1, 25).getContent().get(1));
 
         // HTTP POST .../api/v1/customer
         // set 'Accept' header application/json
@@ -177,13 +177,14 @@ class CustomerControllerTest {
 
     @Test
     void listCustomers() throws Exception {
-        given(customerService.listCustomers()).willReturn(customerServiceImpl.listCustomers());
+        given(customerService.listCustomers(any(), any())).willReturn(customerServiceImpl.listCustomers(1, 25));
 
         mockMvc.perform(get(CustomerController.CUSTOMER_PATH)
+                .queryParam("pageNumber", "1")
                 .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(jsonPath("$.length()", is(3)));
+                .andExpect(jsonPath("$.content.length()", is(3)));
     }
 
     @Test
@@ -201,7 +202,7 @@ class CustomerControllerTest {
     @Test
     void getCustomerById() throws Exception {
 
-        CustomerDTO testCustomer = customerServiceImpl.listCustomers().get(0);
+        CustomerDTO testCustomer = customerServiceImpl.listCustomers(1, 25).getContent().get(0);
 
         given(customerService.getCustomerById(testCustomer.getId())).willReturn(Optional.of(testCustomer));
 
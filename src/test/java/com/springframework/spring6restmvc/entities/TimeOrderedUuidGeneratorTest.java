@@ -0,0 +1,41 @@
+package com.springframework.spring6restmvc.entities;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimeOrderedUuidGeneratorTest {
+
+    @Test
+    void testVersionAndVariant() {
+        UUID uuid = TimeOrderedUuidGenerator.timeOrderedUuid();
+
+        assertThat(uuid.version()).isEqualTo(7);
+        assertThat(uuid.variant()).isEqualTo(2);
+    }
+
+    @Test
+    void testTimestamp() {
+        long before = System.currentTimeMillis();
+        UUID uuid = TimeOrderedUuidGenerator.timeOrderedUuid();
+
+        // first 48 bits: unix time in ms (may be borrowed a little ahead when many ids are generated in one ms)
+        assertThat(uuid.getMostSignificantBits() >>> 16).isGreaterThanOrEqualTo(before);
+    }
+
+    @Test
+    void testIdsAreOrdered() {
+        List<UUID> uuids = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            uuids.add(TimeOrderedUuidGenerator.timeOrderedUuid());
+        }
+
+        // text order == binary order == generation order, also within the same millisecond
+        List<String> texts = uuids.stream().map(UUID::toString).toList();
+        assertThat(texts).isSorted().doesNotHaveDuplicates();
+    }
+}
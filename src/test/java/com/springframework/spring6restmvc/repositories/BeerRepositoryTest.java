@@ -2,6 +2,7 @@ package com.springframework.spring6restmvc.repositories;
 
 import com.springframework.spring6restmvc.bootstrap.BootstrapData;
 import com.springframework.spring6restmvc.entities.Beer;
+import com.springframework.spring6restmvc.model.BeerDTO;
 import com.springframework.spring6restmvc.model.BeerStyle;
 import com.springframework.spring6restmvc.services.BeerCsvServiceImpl;
 import jakarta.validation.ConstraintViolationException;
@@ -11,6 +12,7 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 
 import java.math.BigDecimal;
 import java.util.List;
@@ -32,6 +34,26 @@ class BeerRepositoryTest {
         assertThat(beers.getContent().size()).isEqualTo(336);
     }
 
+    @Test
+    void testListBeerByNameIsLikeIgnoreCaseAndStyle() {
+        Page<Beer> beers = beerRepository.findAllByBeerNameIsLikeIgnoreCaseAndBeerStyle("%ipa%", BeerStyle.IPA,
+                PageRequest.of(0, 1000));
+
+        assertThat(beers.getTotalElements()).isEqualTo(beers.getContent().size()).isPositive();
+        assertThat(beers.getContent()).allMatch(beer -> beer.getBeerStyle() == BeerStyle.IPA
+                && beer.getBeerName().toLowerCase().contains("ipa"));
+    }
+
+    @Test
+    void testListBeerDtosByNameLike() {
+        // same rows as the entity query, but selected straight into DTOs
+        Page<BeerDTO> beers = beerRepository.findBeerDtosByBeerNameLike("%IPA%", PageRequest.of(0, 1000));
+
+        assertThat(beers.getTotalElements()).isEqualTo(336);
+        assertThat(beers.getContent().get(0).getId()).isNotNull();
+        assertThat(beers.getContent().get(0).getBeerName()).containsIgnoringCase("ipa");
+    }
+
     @Test
     void testSaveBeerWithTooLongUpc() {
         // DataIntegrityViolationException caused by @Column(length = 10) annotation on the upc property.
@@ -0,0 +1,46 @@
+package com.springframework.spring6restmvc.repositories;
+
+import com.springframework.spring6restmvc.entities.Customer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// the switch of the uuidv7 profile: ids and FKs as binary(16), bound like JdbcUuids binds them
+@DataJpaTest(properties = "spring.jpa.properties.spring6restmvc.id.binary=true")
+class BinaryUuidIdsTest {
+
+    @Autowired
+    CustomerRepository customerRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testIdsAreStoredAsBinary() {
+        assertThat(columnType("BEER", "ID")).isEqualTo("BINARY");
+        assertThat(columnType("BEER_ORDER_LINE", "BEER_ID")).isEqualTo("BINARY");
+    }
+
+    @Test
+    void testIdIsReadBackByItsBytes() {
+        UUID id = customerRepository.saveAndFlush(Customer.builder().name("Binary").build()).getId();
+        byte[] bytes = ByteBuffer.allocate(16)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .array();
+
+        assertThat(jdbcTemplate.queryForObject("select name from customer where id = ?", String.class, bytes))
+                .isEqualTo("Binary");
+    }
+
+    private String columnType(String table, String column) {
+        return jdbcTemplate.queryForObject("select data_type from information_schema.columns"
+                + " where table_name = ? and column_name = ?", String.class, table, column);
+    }
+}
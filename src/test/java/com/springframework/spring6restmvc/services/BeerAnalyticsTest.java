@@ -0,0 +1,117 @@
+package com.springframework.spring6restmvc.services;
+
+import com.springframework.spring6restmvc.model.BeerDTO;
+import com.springframework.spring6restmvc.model.BeerStyle;
+import com.springframework.spring6restmvc.repositories.BeerRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class BeerAnalyticsTest {
+
+    BeerRepository beerRepository = mock(BeerRepository.class);
+    BeerAnalytics beerAnalytics = new BeerAnalytics(beerRepository);
+
+    UUID galaxyCat = UUID.randomUUID();
+    UUID crank = UUID.randomUUID();
+    UUID sunshineCity = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        given(beerRepository.streamAnalyticsRows()).willReturn(Stream.of(
+                new Object[]{galaxyCat, BeerStyle.PALE_ALE, new BigDecimal("12.99"), 122},
+                new Object[]{crank, BeerStyle.PALE_ALE, new BigDecimal("11.99"), 392},
+                new Object[]{sunshineCity, BeerStyle.IPA, new BigDecimal("13.99"), null}
+        ));
+
+        beerAnalytics.rebuild();
+    }
+
+    @Test
+    void testQuantityByStyle() {
+        assertThat(beerAnalytics.quantityByStyle())
+                .hasSize(BeerStyle.values().length)
+                .containsEntry(BeerStyle.PALE_ALE, 514L)
+                .containsEntry(BeerStyle.IPA, 0L)
+                .containsEntry(BeerStyle.STOUT, 0L);
+    }
+
+    @Test
+    void testInventoryValueByStyle() {
+        assertThat(beerAnalytics.inventoryValueByStyle().get(BeerStyle.PALE_ALE)).isEqualByComparingTo("6284.86");
+    }
+
+    @Test
+    void testPriceHistogram() {
+        // 1.00 wide buckets: 11.99 falls in [11.00, 12.00)
+        assertThat(beerAnalytics.priceHistogram(100, 14)[11]).isEqualTo(1);
+        assertThat(beerAnalytics.priceHistogram(1200, 3)).containsExactly(1, 2, 0);
+        assertThat(beerAnalytics.priceHistogram(500, 2)).containsExactly(0, 3);
+    }
+
+    @Test
+    void testChangesAreReadOnceBeforeTheNextAggregate() {
+        UUID newBeer = UUID.randomUUID();
+
+        beerAnalytics.onBeerChanged(BeerChangedEvent.deleted(crank));
+        beerAnalytics.onBeerChanged(BeerChangedEvent.updated(BeerDTO.builder().id(galaxyCat).build(), null));
+        beerAnalytics.onBeerChanged(BeerChangedEvent.deleted(newBeer));
+
+        // crank is gone, galaxyCat has a new quantity
+        given(beerRepository.findAnalyticsRowsByIdIn(anyCollection())).willReturn(List.<Object[]>of(
+                new Object[]{galaxyCat, BeerStyle.PALE_ALE, new BigDecimal("12.99"), 10}
+        ));
+
+        assertThat(beerAnalytics.quantityByStyle()).containsEntry(BeerStyle.PALE_ALE, 10L);
+        assertThat(beerAnalytics.size()).isEqualTo(2);
+    }
+
+    @Test
+    void testNoQueryWithoutChanges() {
+        beerAnalytics.quantityByStyle();
+
+        verify(beerRepository, never()).findAnalyticsRowsByIdIn(anyCollection());
+    }
+
+    @Test
+    void testImportedBeersAreAddedWithoutAQuery() {
+        UUID imported = UUID.randomUUID();
+
+        beerAnalytics.onBeersImported(new BeersImportedEvent(List.of(BeerDTO.builder()
+                .id(imported)
+                .beerStyle(BeerStyle.IPA)
+                .price(new BigDecimal("9.99"))
+                .quantityOnHand(5)
+                .build())));
+
+        assertThat(beerAnalytics.quantityByStyle()).containsEntry(BeerStyle.IPA, 5L);
+        assertThat(beerAnalytics.size()).isEqualTo(4);
+        verify(beerRepository, never()).findAnalyticsRowsByIdIn(anyCollection());
+    }
+
+    @Test
+    void testLargeCatalogIsSplitOverThreads() {
+        int rows = BeerAnalytics.PARALLEL_THRESHOLD * 3 + 7;
+
+        given(beerRepository.streamAnalyticsRows()).willReturn(IntStream.range(0, rows)
+                .mapToObj(i -> new Object[]{UUID.randomUUID(), BeerStyle.values()[i % 2], BigDecimal.ONE, 2}));
+
+        beerAnalytics.rebuild();
+
+        assertThat(beerAnalytics.size()).isEqualTo(rows);
+        assertThat(beerAnalytics.quantityByStyle().values().stream().mapToLong(Long::longValue).sum()).isEqualTo(2L * rows);
+        assertThat(beerAnalytics.priceHistogram(100, 2)).containsExactly(0, rows);
+    }
+}
@@ -0,0 +1,47 @@
+package com.springframework.spring6restmvc.services;
+
+import com.springframework.spring6restmvc.model.BeerStyle;
+import com.springframework.spring6restmvc.repositories.BeerRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class BeerCountCacheTest {
+
+    BeerRepository beerRepository = mock(BeerRepository.class);
+
+    @Test
+    void testFilterIsCountedByTheRefresh() {
+        BeerCountCache countCache = new BeerCountCache(beerRepository, 10, Duration.ofMinutes(1));
+        given(beerRepository.countByBeerNameIsLikeIgnoreCase("%ipa%")).willReturn(42L);
+
+        assertThat(countCache.getApproximateCount("IPA", null)).isEmpty();
+        countCache.refresh();
+
+        assertThat(countCache.getApproximateCount("ipa", null)).contains(42L);
+    }
+
+    @Test
+    void testFilterNotListedAnymoreIsNoLongerCounted() throws InterruptedException {
+        BeerCountCache countCache = new BeerCountCache(beerRepository, 10, Duration.ofMillis(200));
+        given(beerRepository.countByBeerStyle(BeerStyle.IPA)).willReturn(7L);
+
+        countCache.getApproximateCount(null, BeerStyle.IPA);
+        // the refresh itself does not keep the filter alive
+        for (int i = 0; i < 10; i++) {
+            countCache.refresh();
+            Thread.sleep(50);
+        }
+        clearInvocations(beerRepository);
+        countCache.refresh();
+
+        verify(beerRepository, never()).countByBeerStyle(BeerStyle.IPA);
+    }
+}
@@ -6,7 +6,13 @@ import org.springframework.util.ResourceUtils;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -28,4 +34,77 @@ class BeerCsvServiceTest {
 
         assertThat(recs.size()).isGreaterThan(0);
     }
-}
\ No newline at end of file
+
+    @Test
+    void streamCSV() throws FileNotFoundException {
+        File file = ResourceUtils.getFile("classpath:csvdata/beers.csv");
+
+        // records come one at a time, same content as the list version
+        try (Stream<BeerCSVRecord> records = beerCsvService.streamCSV(file)) {
+            assertThat(records.count()).isEqualTo(beerCsvService.convertCSV(file).size());
+        }
+    }
+
+    @Test
+    void streamCSVFirstRecord() throws FileNotFoundException {
+        File file = ResourceUtils.getFile("classpath:csvdata/beers.csv");
+
+        try (Stream<BeerCSVRecord> records = beerCsvService.streamCSV(file)) {
+            BeerCSVRecord first = records.findFirst().orElseThrow();
+
+            assertThat(first.getRow()).isEqualTo(1);
+            assertThat(first.getBeer()).isEqualTo("Pub Beer");
+        }
+    }
+
+    @Test
+    void parseCSVParallelOrdered() throws FileNotFoundException {
+        File file = ResourceUtils.getFile("classpath:csvdata/beers.csv");
+        List<Integer> rows = new ArrayList<>();
+
+        // small pieces so the file is cut many times
+        long count = ((BeerCsvServiceImpl) beerCsvService).parseCSVParallel(file, 10_000, new ForkJoinPool(4), true,
+                batch -> batch.forEach(rec -> rows.add(rec.getRow())));
+
+        List<Integer> expected = beerCsvService.convertCSV(file).stream().map(BeerCSVRecord::getRow).toList();
+
+        assertThat(count).isEqualTo(expected.size());
+        assertThat(rows).isEqualTo(expected);
+    }
+
+    @Test
+    void parseCSVParallelUnordered() throws FileNotFoundException {
+        File file = ResourceUtils.getFile("classpath:csvdata/beers.csv");
+        List<Integer> rows = new ArrayList<>();
+
+        long count = ((BeerCsvServiceImpl) beerCsvService).parseCSVParallel(file, 10_000, new ForkJoinPool(4), false,
+                batch -> batch.forEach(rec -> rows.add(rec.getRow())));
+
+        List<Integer> expected = beerCsvService.convertCSV(file).stream().map(BeerCSVRecord::getRow).toList();
+
+        assertThat(count).isEqualTo(expected.size());
+        assertThat(rows).containsExactlyInAnyOrderElementsOf(expected);
+    }
+
+    @Test
+    void parseCSVParallelKeepsQuotedLineBreaks() throws IOException {
+        // the line break inside the quoted beer name must not be taken as a record boundary
+        Path file = Files.createTempFile("beers-", ".csv");
+        Files.writeString(file, """
+                "row","count.x","abv","ibu","id","beer","style","brewery_id","ounces","style2","count.y","brewery","city","state","label"
+                "1",1,0.05,NA,1,"Multi
+                Line \"\"Beer\"\"","American IPA",1,12,NA,1,"Brewery","Bend","OR","Label"
+                "2",2,0.05,NA,2,"Second Beer","American IPA",1,12,NA,1,"Brewery","Bend","OR","Label"
+                """);
+
+        try {
+            List<BeerCSVRecord> records = new ArrayList<>();
+
+            ((BeerCsvServiceImpl) beerCsvService).parseCSVParallel(file.toFile(), 1, new ForkJoinPool(2), true, records::addAll);
+
+            assertThat(records).extracting(BeerCSVRecord::getBeer).containsExactly("Multi\nLine \"Beer\"", "Second Beer");
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.springframework.spring6restmvc.services;
+
+import com.springframework.spring6restmvc.model.BeerDTO;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BeerDtoCacheTest {
+
+    BeerDtoCache beerDtoCache = new BeerDtoCache(100, Duration.ofMinutes(1));
+
+    UUID beerId = UUID.randomUUID();
+
+    BeerDTO beer(int version, String beerName) {
+        return BeerDTO.builder().id(beerId).version(version).beerName(beerName).build();
+    }
+
+    @Test
+    void testReadThrough() {
+        beerDtoCache.get(beerId, id -> Optional.of(beer(0, "Galaxy Cat")));
+        Optional<BeerDTO> cached = beerDtoCache.get(beerId, id -> Optional.empty());
+
+        assertThat(cached).isPresent();
+        assertThat(beerDtoCache.stats().hitCount()).isEqualTo(1);
+        assertThat(beerDtoCache.stats().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testOlderVersionDoesNotReplaceNewer() {
+        beerDtoCache.get(beerId, id -> Optional.of(beer(0, "Galaxy Cat")));
+        beerDtoCache.onBeerChanged(BeerChangedEvent.saved(beer(2, "Newer")));
+        beerDtoCache.onBeerChanged(BeerChangedEvent.saved(beer(1, "Older")));
+
+        assertThat(beerDtoCache.get(beerId, id -> Optional.empty()).get().getBeerName()).isEqualTo("Newer");
+    }
+
+    @Test
+    void testDeleteInvalidates() {
+        beerDtoCache.get(beerId, id -> Optional.of(beer(0, "Galaxy Cat")));
+        beerDtoCache.onBeerChanged(BeerChangedEvent.deleted(beerId));
+
+        assertThat(beerDtoCache.get(beerId, id -> Optional.empty())).isEmpty();
+    }
+
+    @Test
+    void testSavesDoNotAddEntries() {
+        beerDtoCache.onBeerChanged(BeerChangedEvent.saved(beer(0, "Galaxy Cat")));
+
+        assertThat(beerDtoCache.estimatedSize()).isZero();
+    }
+
+    @Test
+    void testCallersGetTheirOwnCopy() {
+        beerDtoCache.get(beerId, id -> Optional.of(beer(0, "Galaxy Cat"))).get().setBeerName("Changed");
+
+        assertThat(beerDtoCache.get(beerId, id -> Optional.empty()).get().getBeerName()).isEqualTo("Galaxy Cat");
+    }
+}
@@ -0,0 +1,106 @@
+package com.springframework.spring6restmvc.services;
+
+import com.springframework.spring6restmvc.model.BeerDTO;
+import com.springframework.spring6restmvc.repositories.BeerRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+class BeerNameIndexTest {
+
+    BeerRepository beerRepository = mock(BeerRepository.class);
+    BeerNameIndex beerNameIndex = new BeerNameIndex(beerRepository, 1000);
+
+    UUID galaxyCat = UUID.randomUUID();
+    UUID sunshineIpa = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        given(beerRepository.findAllIdsAndNames()).willReturn(List.of(
+                new Object[]{galaxyCat, "Galaxy Cat"},
+                new Object[]{sunshineIpa, "Sunshine City IPA"}
+        ));
+
+        beerNameIndex.rebuild();
+    }
+
+    @Test
+    void testFindIgnoresCase() {
+        assertThat(beerNameIndex.findIdsByNameContaining("ipa")).contains(Set.of(sunshineIpa));
+        assertThat(beerNameIndex.findIdsByNameContaining("AXY C")).contains(Set.of(galaxyCat));
+    }
+
+    @Test
+    void testNoMatch() {
+        // no name contains these texts
+        assertThat(beerNameIndex.findIdsByNameContaining("cat city")).contains(Set.of());
+        assertThat(beerNameIndex.findIdsByNameContaining("zzz")).contains(Set.of());
+    }
+
+    @Test
+    void testCannotAnswerShortOrWildcardText() {
+        assertThat(beerNameIndex.findIdsByNameContaining("ip")).isEmpty();
+        assertThat(beerNameIndex.findIdsByNameContaining("gal%cat")).isEmpty();
+    }
+
+    @Test
+    void testFollowsChanges() {
+        beerNameIndex.onBeerChanged(BeerChangedEvent.saved(BeerDTO.builder()
+                .id(galaxyCat)
+                .beerName("Galaxy IPA")
+                .build()));
+        beerNameIndex.onBeerChanged(BeerChangedEvent.deleted(sunshineIpa));
+
+        assertThat(beerNameIndex.findIdsByNameContaining("IPA")).contains(Set.of(galaxyCat));
+        assertThat(beerNameIndex.findIdsByNameContaining("cat")).contains(Set.of());
+    }
+
+    @Test
+    void testTooManyMatchesAreLeftToTheQuery() {
+        BeerNameIndex smallIndex = new BeerNameIndex(beerRepository, 1);
+        smallIndex.rebuild();
+
+        assertThat(smallIndex.findIdsByNameContaining("galaxy")).contains(Set.of(galaxyCat));
+        // one more match than the cap
+        smallIndex.put(UUID.randomUUID(), "Galaxy Dog");
+        assertThat(smallIndex.findIdsByNameContaining("galaxy")).isEmpty();
+    }
+
+    @Test
+    void testChangesDuringRebuildAreKept() {
+        UUID newBeer = UUID.randomUUID();
+        given(beerRepository.findAllIdsAndNames()).willAnswer(invocation -> {
+            // saved after the query read the table
+            beerNameIndex.onBeerChanged(BeerChangedEvent.saved(BeerDTO.builder().id(newBeer).beerName("Nebula Ale").build()));
+            return List.<Object[]>of(new Object[]{galaxyCat, "Galaxy Cat"});
+        });
+
+        beerNameIndex.rebuild();
+
+        assertThat(beerNameIndex.findIdsByNameContaining("nebula")).contains(Set.of(newBeer));
+        assertThat(beerNameIndex.findIdsByNameContaining("galaxy")).contains(Set.of(galaxyCat));
+    }
+
+    @Test
+    void testRebuildPicksUpBeersWrittenElsewhere() {
+        UUID otherInstanceBeer = UUID.randomUUID();
+        // no event: saved by another instance
+        given(beerRepository.findAllIdsAndNames()).willReturn(List.of(
+                new Object[]{galaxyCat, "Galaxy Cat"},
+                new Object[]{otherInstanceBeer, "Galaxy Dog"}
+        ));
+        assertThat(beerNameIndex.findIdsByNameContaining("galaxy")).contains(Set.of(galaxyCat));
+
+        beerNameIndex.rebuild();
+
+        assertThat(beerNameIndex.findIdsByNameContaining("galaxy")).contains(Set.of(galaxyCat, otherInstanceBeer));
+        assertThat(beerNameIndex.findIdsByNameContaining("sunshine")).contains(Set.of());
+    }
+}
@@ -0,0 +1,183 @@
+package com.springframework.spring6restmvc.services;
+
+import com.springframework.spring6restmvc.model.BeerCursor;
+import com.springframework.spring6restmvc.model.BeerDTO;
+import com.springframework.spring6restmvc.model.BeerKeysetPage;
+import com.springframework.spring6restmvc.model.BeerStyle;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BeerServiceImplTest {
+
+    BeerServiceImpl beerService;
+
+    @BeforeEach
+    void setUp() {
+        beerService = new BeerServiceImpl(); // 3 beers: Crank, Galaxy Cat (PALE_ALE), Sunshine City (IPA)
+    }
+
+    @Test
+    void testListBeersPagesInNameOrder() {
+        Page<BeerDTO> first = beerService.listBeers(null, null, null, 1, 2);
+        Page<BeerDTO> second = beerService.listBeers(null, null, null, 2, 2);
+
+        assertThat(first.getTotalElements()).isEqualTo(3);
+        assertThat(first.getTotalPages()).isEqualTo(2);
+        assertThat(first.getContent()).extracting(BeerDTO::getBeerName).containsExactly("Crank", "Galaxy Cat");
+        assertThat(second.getContent()).extracting(BeerDTO::getBeerName).containsExactly("Sunshine City");
+    }
+
+    @Test
+    void testListBeersFilters() {
+        assertThat(beerService.listBeers(null, BeerStyle.PALE_ALE, null, 1, 25).getContent())
+                .extracting(BeerDTO::getBeerName).containsExactly("Crank", "Galaxy Cat");
+        assertThat(beerService.listBeers("CIT", null, null, 1, 25).getContent())
+                .extracting(BeerDTO::getBeerName).containsExactly("Sunshine City");
+        assertThat(beerService.listBeers("a", BeerStyle.PALE_ALE, null, 1, 25).getTotalElements()).isEqualTo(2);
+        assertThat(beerService.listBeers(null, BeerStyle.STOUT, null, 1, 25)).isEmpty();
+    }
+
+    @Test
+    void testListBeersWithoutInventoryDoesNotChangeStoredBeers() {
+        assertThat(beerService.listBeers(null, null, false, 1, 25).getContent())
+                .allMatch(beer -> beer.getQuantityOnHand() == null);
+        assertThat(beerService.listBeers(null, null, true, 1, 25).getContent())
+                .allMatch(beer -> beer.getQuantityOnHand() != null);
+    }
+
+    @Test
+    void testListBeersSlice() {
+        Slice<BeerDTO> first = beerService.listBeersSlice(null, null, null, 1, 2);
+        Slice<BeerDTO> second = beerService.listBeersSlice(null, null, null, 2, 2);
+
+        assertThat(first.getContent()).hasSize(2);
+        assertThat(first.hasNext()).isTrue();
+        assertThat(second.getContent()).hasSize(1);
+        assertThat(second.hasNext()).isFalse();
+    }
+
+    @Test
+    void testListBeersByCursorWalksEveryBeerOnce() {
+        List<String> names = new ArrayList<>();
+        BeerCursor cursor = null;
+
+        do {
+            BeerKeysetPage page = beerService.listBeersByCursor(null, null, null, cursor, 1);
+            page.getContent().forEach(beer -> names.add(beer.getBeerName()));
+            cursor = page.getNextCursor() == null ? null : BeerCursor.decode(page.getNextCursor()).orElseThrow();
+        } while (cursor != null);
+
+        assertThat(names).containsExactly("Crank", "Galaxy Cat", "Sunshine City");
+    }
+
+    @Test
+    void testRenameMovesBeerInIndexes() {
+        BeerDTO crank = beerService.listBeers("crank", null, null, 1, 25).getContent().get(0);
+
+        beerService.patchBeerById(crank.getId(), BeerDTO.builder().beerName("Zephyr").beerStyle(BeerStyle.STOUT).build(), null);
+
+        assertThat(beerService.listBeers(null, null, null, 1, 25).getContent())
+                .extracting(BeerDTO::getBeerName).containsExactly("Galaxy Cat", "Sunshine City", "Zephyr");
+        assertThat(beerService.getApproximateBeerCount(null, BeerStyle.PALE_ALE)).contains(1L);
+        assertThat(beerService.getApproximateBeerCount(null, BeerStyle.STOUT)).contains(1L);
+    }
+
+    @Test
+    void testUpdateKeepsQuantityOnHand() {
+        BeerDTO beer = beerService.listBeers(null, null, null, 1, 25).getContent().get(0);
+        BeerDTO put = BeerDTO.builder().beerName("UPDATED").beerStyle(beer.getBeerStyle()).upc(beer.getUpc())
+                .price(beer.getPrice()).quantityOnHand(beer.getQuantityOnHand() + 100).build();
+
+        assertThat(beerService.updateById(beer.getId(), put, null)).isPresent();
+
+        BeerDTO updated = beerService.getBeerById(beer.getId()).orElseThrow();
+        assertThat(updated.getBeerName()).isEqualTo("UPDATED");
+        assertThat(updated.getQuantityOnHand()).isEqualTo(beer.getQuantityOnHand());
+    }
+
+    @Test
+    void testUpdateChecksVersion() {
+        BeerDTO beer = beerService.listBeers(null, null, null, 1, 25).getContent().get(0);
+        String catalogVersion = beerService.getBeerCatalogVersion();
+
+        assertThatThrownBy(() -> beerService.updateById(beer.getId(), beer, beer.getVersion() + 1))
+                .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+        assertThat(beerService.getBeerCatalogVersion()).isEqualTo(catalogVersion);
+
+        assertThat(beerService.updateById(beer.getId(), beer, beer.getVersion()))
+                .hasValueSatisfying(updated -> assertThat(updated.getVersion()).isEqualTo(beer.getVersion() + 1));
+        assertThat(beerService.getBeerCatalogVersion()).isNotEqualTo(catalogVersion);
+        assertThat(beerService.updateById(UUID.randomUUID(), beer, null)).isEmpty();
+    }
+
+    @Test
+    void testDeleteById() {
+        BeerDTO beer = beerService.listBeers(null, null, null, 1, 25).getContent().get(0);
+
+        assertThat(beerService.deleteById(beer.getId())).isTrue();
+        assertThat(beerService.deleteById(beer.getId())).isFalse();
+        assertThat(beerService.getBeerById(beer.getId())).isEmpty();
+        assertThat(beerService.listBeers(null, null, null, 1, 25).getTotalElements()).isEqualTo(2);
+    }
+
+    @Test
+    void testConcurrentWritesKeepIndexesConsistent() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int thread = 0; thread < 8; thread++) {
+            int offset = thread;
+
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 250; i++) {
+                    BeerDTO saved = beerService.saveNewBeer(BeerDTO.builder()
+                            .beerName("Beer " + offset + "-" + i)
+                            .beerStyle(BeerStyle.values()[i % BeerStyle.values().length])
+                            .upc("1")
+                            .price(BigDecimal.ONE)
+                            .build());
+
+                    // every other beer is renamed, moving it in both indexes
+                    if (i % 2 == 0) {
+                        beerService.patchBeerById(saved.getId(),
+                                BeerDTO.builder().beerName("Renamed " + offset + "-" + i).beerStyle(BeerStyle.LAGER).build(), null);
+                    }
+                }
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        Page<BeerDTO> all = beerService.listBeers(null, null, null, 1, 1000);
+        long styleTotal = 0;
+
+        for (BeerStyle style : BeerStyle.values()) {
+            long count = beerService.getApproximateBeerCount(null, style).orElseThrow();
+
+            assertThat(beerService.listBeers(null, style, null, 1, 1000).getContent()).hasSize((int) count);
+            styleTotal += count;
+        }
+
+        assertThat(all.getTotalElements()).isEqualTo(3 + 8 * 250);
+        assertThat(styleTotal).isEqualTo(all.getTotalElements());
+        assertThat(beerService.listBeers("renamed", null, null, 1, 1000).getTotalElements()).isEqualTo(8 * 125);
+    }
+}
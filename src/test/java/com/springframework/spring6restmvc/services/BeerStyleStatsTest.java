@@ -0,0 +1,190 @@
+package com.springframework.spring6restmvc.services;
+
+import com.springframework.spring6restmvc.model.BeerDTO;
+import com.springframework.spring6restmvc.model.BeerStyle;
+import com.springframework.spring6restmvc.model.BeerStyleStatsDTO;
+import com.springframework.spring6restmvc.repositories.BeerRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class BeerStyleStatsTest {
+
+    BeerRepository beerRepository = mock(BeerRepository.class);
+    BeerStyleStats beerStyleStats = new BeerStyleStats(beerRepository, 60000);
+
+    @BeforeEach
+    void setUp() {
+        given(beerRepository.findStyleTotals()).willReturn(List.<Object[]>of(
+                new Object[]{BeerStyle.PALE_ALE, 2L, 514L, new BigDecimal("11.99"), new BigDecimal("12.99"), new BigDecimal("24.98")}
+        ));
+
+        beerStyleStats.reconcile();
+    }
+
+    @Test
+    void testStatsPerStyle() {
+        BeerStyleStatsDTO paleAle = beerStyleStats.getStats().get(BeerStyle.PALE_ALE);
+
+        assertThat(paleAle.getCount()).isEqualTo(2);
+        assertThat(paleAle.getQuantityOnHand()).isEqualTo(514);
+        assertThat(paleAle.getMinPrice()).isEqualByComparingTo("11.99");
+        assertThat(paleAle.getMaxPrice()).isEqualByComparingTo("12.99");
+        assertThat(paleAle.getAveragePrice()).isEqualByComparingTo("12.49");
+
+        // every style is listed
+        assertThat(beerStyleStats.getStats()).hasSize(BeerStyle.values().length);
+        assertThat(beerStyleStats.getStats().get(BeerStyle.STOUT).getCount()).isZero();
+        assertThat(beerStyleStats.getStats().get(BeerStyle.STOUT).getAveragePrice()).isNull();
+    }
+
+    @Test
+    void testSavedBeerIsAddedRightAway() {
+        beerStyleStats.onBeerChanged(BeerChangedEvent.saved(BeerDTO.builder()
+                .id(UUID.randomUUID())
+                .beerStyle(BeerStyle.STOUT)
+                .price(new BigDecimal("9.50"))
+                .quantityOnHand(10)
+                .build()));
+
+        BeerStyleStatsDTO stout = beerStyleStats.getStats().get(BeerStyle.STOUT);
+
+        assertThat(stout.getCount()).isEqualTo(1);
+        assertThat(stout.getQuantityOnHand()).isEqualTo(10);
+        assertThat(stout.getMinPrice()).isEqualByComparingTo("9.50");
+    }
+
+    @Test
+    void testRefreshReconcilesOnlyAfterChanges() {
+        beerStyleStats.refresh();
+        verify(beerRepository, times(1)).findStyleTotals();
+
+        beerStyleStats.onBeerChanged(BeerChangedEvent.deleted(UUID.randomUUID()));
+        given(beerRepository.findStyleTotals()).willReturn(List.of());
+
+        beerStyleStats.refresh();
+        verify(beerRepository, times(2)).findStyleTotals();
+        assertThat(beerStyleStats.getStats().get(BeerStyle.PALE_ALE).getCount()).isZero();
+    }
+
+    @Test
+    void testStockMovementsAreAddedWithoutRecompute() {
+        UUID beerId = UUID.randomUUID();
+        given(beerRepository.findStylesByIdIn(List.of(beerId))).willReturn(List.<Object[]>of(
+                new Object[]{beerId, BeerStyle.PALE_ALE}
+        ));
+
+        beerStyleStats.onBeerChanged(BeerChangedEvent.stockMoved(beerId, 10));
+        beerStyleStats.onBeerChanged(BeerChangedEvent.stockMoved(beerId, -4));
+        beerStyleStats.refresh();
+
+        verify(beerRepository, times(1)).findStyleTotals();
+        assertThat(beerStyleStats.getStats().get(BeerStyle.PALE_ALE).getQuantityOnHand()).isEqualTo(520);
+    }
+
+    @Test
+    void testDeletedBeerIsTakenOutWithoutRecompute() {
+        given(beerRepository.findStyleTotals()).willReturn(List.<Object[]>of(
+                new Object[]{BeerStyle.PALE_ALE, 3L, 600L, new BigDecimal("10.00"), new BigDecimal("14.00"), new BigDecimal("36.00")}
+        ));
+        beerStyleStats.reconcile();
+
+        beerStyleStats.onBeerChanged(BeerChangedEvent.deleted(BeerDTO.builder()
+                .id(UUID.randomUUID())
+                .beerStyle(BeerStyle.PALE_ALE)
+                .price(new BigDecimal("12.00"))
+                .quantityOnHand(100)
+                .build()));
+        beerStyleStats.refresh();
+
+        verify(beerRepository, times(2)).findStyleTotals();
+        BeerStyleStatsDTO paleAle = beerStyleStats.getStats().get(BeerStyle.PALE_ALE);
+        assertThat(paleAle.getCount()).isEqualTo(2);
+        assertThat(paleAle.getQuantityOnHand()).isEqualTo(500);
+        assertThat(paleAle.getAveragePrice()).isEqualByComparingTo("12.00");
+    }
+
+    @Test
+    void testImportedChunkIsAddedAtOnce() {
+        beerStyleStats.onBeersImported(new BeersImportedEvent(List.of(
+                BeerDTO.builder().id(UUID.randomUUID()).beerStyle(BeerStyle.STOUT).price(new BigDecimal("8.00")).quantityOnHand(1).build(),
+                BeerDTO.builder().id(UUID.randomUUID()).beerStyle(BeerStyle.STOUT).price(new BigDecimal("10.00")).quantityOnHand(2).build()
+        )));
+        beerStyleStats.refresh();
+
+        verify(beerRepository, times(1)).findStyleTotals();
+        BeerStyleStatsDTO stout = beerStyleStats.getStats().get(BeerStyle.STOUT);
+        assertThat(stout.getCount()).isEqualTo(2);
+        assertThat(stout.getQuantityOnHand()).isEqualTo(3);
+        assertThat(stout.getAveragePrice()).isEqualByComparingTo("9.00");
+    }
+
+    @Test
+    void testUpdateIsAppliedWithTheReplacedValues() {
+        given(beerRepository.findStyleTotals()).willReturn(List.<Object[]>of(
+                new Object[]{BeerStyle.PALE_ALE, 3L, 600L, new BigDecimal("10.00"), new BigDecimal("14.00"), new BigDecimal("36.00")}
+        ));
+        beerStyleStats.reconcile();
+        UUID beerId = UUID.randomUUID();
+        BeerDTO previous = BeerDTO.builder().id(beerId).beerStyle(BeerStyle.PALE_ALE)
+                .price(new BigDecimal("12.00")).quantityOnHand(100).build();
+
+        // a PUT writes style and price again, unchanged
+        beerStyleStats.onBeerChanged(BeerChangedEvent.updated(BeerDTO.builder().id(beerId).beerStyle(BeerStyle.PALE_ALE)
+                .price(new BigDecimal("12.00")).build(), previous));
+        // a PATCH of price and quantity
+        beerStyleStats.onBeerChanged(BeerChangedEvent.updated(BeerDTO.builder().id(beerId)
+                .price(new BigDecimal("13.50")).quantityOnHand(40).build(), previous));
+        beerStyleStats.refresh();
+
+        verify(beerRepository, times(2)).findStyleTotals();
+        BeerStyleStatsDTO paleAle = beerStyleStats.getStats().get(BeerStyle.PALE_ALE);
+        assertThat(paleAle.getCount()).isEqualTo(3);
+        assertThat(paleAle.getQuantityOnHand()).isEqualTo(540);
+        assertThat(paleAle.getAveragePrice()).isEqualByComparingTo("12.50");
+    }
+
+    @Test
+    void testUpdateWithoutReplacedValuesIsRecomputed() {
+        beerStyleStats.onBeerChanged(BeerChangedEvent.updated(BeerDTO.builder().id(UUID.randomUUID())
+                .price(new BigDecimal("13.50")).build(), null));
+        beerStyleStats.refresh();
+
+        verify(beerRepository, times(2)).findStyleTotals();
+    }
+
+    @Test
+    void testChangesDuringReconcileAreKept() {
+        UUID beerId = UUID.randomUUID();
+        given(beerRepository.findStylesByIdIn(List.of(beerId))).willReturn(List.<Object[]>of(
+                new Object[]{beerId, BeerStyle.PALE_ALE}
+        ));
+        // committed before the recompute reads: already in its result
+        beerStyleStats.onBeerChanged(BeerChangedEvent.stockMoved(beerId, 10));
+        given(beerRepository.findStyleTotals()).willAnswer(invocation -> {
+            // committed while it reads
+            beerStyleStats.onBeerChanged(BeerChangedEvent.saved(BeerDTO.builder().id(UUID.randomUUID())
+                    .beerStyle(BeerStyle.STOUT).price(new BigDecimal("9.50")).quantityOnHand(10).build()));
+            beerStyleStats.onBeerChanged(BeerChangedEvent.stockMoved(beerId, 5));
+
+            return List.<Object[]>of(
+                    new Object[]{BeerStyle.PALE_ALE, 2L, 524L, new BigDecimal("11.99"), new BigDecimal("12.99"), new BigDecimal("24.98")}
+            );
+        });
+
+        beerStyleStats.reconcile();
+        beerStyleStats.refresh();
+
+        assertThat(beerStyleStats.getStats().get(BeerStyle.STOUT).getCount()).isEqualTo(1);
+        assertThat(beerStyleStats.getStats().get(BeerStyle.PALE_ALE).getQuantityOnHand()).isEqualTo(529);
+    }
+}
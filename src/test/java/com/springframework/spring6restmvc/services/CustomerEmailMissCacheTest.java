@@ -0,0 +1,45 @@
+package com.springframework.spring6restmvc.services;
+
+import com.springframework.spring6restmvc.model.CustomerDTO;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerEmailMissCacheTest {
+
+    CustomerEmailMissCache missCache = new CustomerEmailMissCache(100, Duration.ofMinutes(1));
+
+    CustomerChangedEvent saved(String email) {
+        return CustomerChangedEvent.saved(CustomerDTO.builder().id(UUID.randomUUID()).email(email).build());
+    }
+
+    @Test
+    void testMissIsRemembered() {
+        missCache.recordMiss("nobody@example.com", missCache.generation());
+
+        assertThat(missCache.isKnownMiss("nobody@example.com")).isTrue();
+        assertThat(missCache.isKnownMiss("somebody@example.com")).isFalse();
+    }
+
+    @Test
+    void testSaveForgetsTheMiss() {
+        missCache.recordMiss("new@example.com", missCache.generation());
+        missCache.onCustomerChanged(saved("new@example.com"));
+
+        assertThat(missCache.isKnownMiss("new@example.com")).isFalse();
+    }
+
+    @Test
+    void testMissIsNotRecordedWhenASaveHappenedDuringTheLookup() {
+        long generation = missCache.generation();
+
+        // committed between the lookup query and recordMiss
+        missCache.onCustomerChanged(saved("new@example.com"));
+        missCache.recordMiss("new@example.com", generation);
+
+        assertThat(missCache.isKnownMiss("new@example.com")).isFalse();
+    }
+}
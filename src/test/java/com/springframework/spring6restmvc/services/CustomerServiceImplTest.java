@@ -0,0 +1,42 @@
+package com.springframework.spring6restmvc.services;
+
+import com.springframework.spring6restmvc.model.CustomerDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerServiceImplTest {
+
+    CustomerServiceImpl customerService;
+
+    @BeforeEach
+    void setUp() {
+        customerService = new CustomerServiceImpl(); // 3 customers
+    }
+
+    @Test
+    void testListCustomersUsesTheJpaPagingRules() {
+        Page<CustomerDTO> zeroSize = customerService.listCustomers(1, 0);
+        Page<CustomerDTO> tooLarge = customerService.listCustomers(1, 5000);
+
+        assertThat(zeroSize.getSize()).isEqualTo(25);
+        assertThat(zeroSize.getContent()).hasSize(3);
+        assertThat(tooLarge.getSize()).isEqualTo(1000);
+        assertThat(customerService.listCustomersByCursor(null, 0).getSize()).isEqualTo(25);
+        assertThat(customerService.listCustomersByCursor(null, 5000).getSize()).isEqualTo(1000);
+    }
+
+    @Test
+    void testExportCountsTheCustomersHandedOut() {
+        List<CustomerDTO> exported = new ArrayList<>();
+
+        long count = customerService.exportCustomers(exported::add);
+
+        assertThat(count).isEqualTo(exported.size()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,242 @@
+package com.springframework.spring6restmvc.services;
+
+import com.springframework.spring6restmvc.entities.Beer;
+import com.springframework.spring6restmvc.entities.BeerOrderLine;
+import com.springframework.spring6restmvc.model.BeerDTO;
+import com.springframework.spring6restmvc.repositories.BeerOrderRepository;
+import com.springframework.spring6restmvc.repositories.BeerRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class StockReservationsTest {
+
+    BeerRepository beerRepository = mock(BeerRepository.class);
+    BeerOrderRepository beerOrderRepository = mock(BeerOrderRepository.class);
+    JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+    StockReservations stockReservations = new StockReservations(beerRepository, beerOrderRepository, jdbcTemplate,
+            mock(PlatformTransactionManager.class), mock(ApplicationEventPublisher.class), false);
+
+    UUID galaxyCat = UUID.randomUUID();
+    UUID crank = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        given(beerRepository.findAllStock()).willReturn(List.<Object[]>of(
+                new Object[]{galaxyCat, 10},
+                new Object[]{crank, 3}
+        ));
+
+        stockReservations.rebuild();
+        given(jdbcTemplate.batchUpdate(eq(StockReservations.TAKE_QUANTITY), anyList())).willReturn(new int[]{1});
+    }
+
+    @Test
+    void testReserveAllOrNothing() {
+        assertThat(stockReservations.reserve(Map.of(galaxyCat, 4, crank, 3))).isTrue();
+        assertThat(stockReservations.available(galaxyCat)).isEqualTo(6);
+        assertThat(stockReservations.available(crank)).isZero();
+
+        // crank is short: galaxyCat is given back
+        assertThat(stockReservations.reserve(Map.of(galaxyCat, 1, crank, 1))).isFalse();
+        assertThat(stockReservations.available(galaxyCat)).isEqualTo(6);
+    }
+
+    @Test
+    void testUnknownBeerIsNotReserved() {
+        UUID unknown = UUID.randomUUID();
+        given(beerRepository.findQuantityOnHandById(unknown)).willReturn(Optional.empty());
+
+        assertThat(stockReservations.reserve(Map.of(galaxyCat, 1, unknown, 1))).isFalse();
+        assertThat(stockReservations.available(galaxyCat)).isEqualTo(10);
+    }
+
+    @Test
+    void testRollbackGivesTheStockBack() {
+        Map<UUID, Integer> quantities = Map.of(galaxyCat, 4);
+        stockReservations.reserve(quantities);
+
+        stockReservations.onStockReservedRolledBack(new StockReservedEvent(quantities, List.of()));
+
+        assertThat(stockReservations.available(galaxyCat)).isEqualTo(10);
+    }
+
+    @Test
+    void testCommittedLinesAreWrittenInOneBatch() {
+        Map<UUID, Integer> quantities = Map.of(galaxyCat, 4);
+        stockReservations.reserve(quantities);
+        stockReservations.onStockReservedCommitted(new StockReservedEvent(quantities, List.of(line(galaxyCat, 3), line(galaxyCat, 1))));
+
+        assertThat(stockReservations.flush()).isEqualTo(2);
+
+        verify(jdbcTemplate).batchUpdate(eq(StockReservations.TAKE_QUANTITY), anyList());
+        verify(jdbcTemplate).batchUpdate(eq(StockReservations.MARK_APPLIED), anyList());
+        // written: still reserved for the order, nothing more
+        assertThat(stockReservations.available(galaxyCat)).isEqualTo(6);
+        assertThat(stockReservations.flush()).isZero();
+    }
+
+    @Test
+    void testFailedFlushIsRetried() {
+        Map<UUID, Integer> quantities = Map.of(galaxyCat, 4);
+        stockReservations.reserve(quantities);
+        stockReservations.onStockReservedCommitted(new StockReservedEvent(quantities, List.of(line(galaxyCat, 4))));
+        given(jdbcTemplate.batchUpdate(eq(StockReservations.TAKE_QUANTITY), anyList()))
+                .willThrow(new IllegalStateException("database down"))
+                .willReturn(new int[]{1});
+
+        assertThrows(IllegalStateException.class, () -> stockReservations.flush());
+
+        assertThat(stockReservations.flush()).isEqualTo(1);
+        verify(jdbcTemplate, times(2)).batchUpdate(eq(StockReservations.TAKE_QUANTITY), anyList());
+        assertThat(stockReservations.available(galaxyCat)).isEqualTo(6);
+    }
+
+    @Test
+    void testRebuildReplaysLinesNotWritten() {
+        given(beerOrderRepository.findStockNotAppliedLines()).willReturn(List.<Object[]>of(
+                new Object[]{UUID.randomUUID(), crank, 2}
+        ));
+
+        stockReservations.rebuild();
+
+        verify(jdbcTemplate).batchUpdate(eq(StockReservations.TAKE_QUANTITY), anyList());
+        assertThat(stockReservations.available(crank)).isEqualTo(1);
+    }
+
+    @Test
+    void testRebuildDoesNotTakeQueuedLinesTwice() {
+        Map<UUID, Integer> quantities = Map.of(galaxyCat, 4);
+        stockReservations.reserve(quantities);
+        BeerOrderLine line = line(galaxyCat, 4);
+        stockReservations.onStockReservedCommitted(new StockReservedEvent(quantities, List.of(line)));
+        given(beerOrderRepository.findStockNotAppliedLines()).willReturn(List.<Object[]>of(
+                new Object[]{line.getId(), galaxyCat, 4}
+        ));
+
+        stockReservations.rebuild();
+
+        ArgumentCaptor<List<Object[]>> taken = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq(StockReservations.TAKE_QUANTITY), taken.capture());
+        assertThat(taken.getValue()).hasSize(1);
+        assertThat(taken.getValue().get(0)[0]).isEqualTo(4);
+        assertThat(stockReservations.available(galaxyCat)).isEqualTo(6);
+    }
+
+    @Test
+    void testRebuildKeepsReservationsOfBeersLoadedOnFirstUse() {
+        UUID newBeer = UUID.randomUUID();
+        given(beerRepository.findQuantityOnHandById(newBeer)).willReturn(Optional.of(5));
+        stockReservations.reserve(Map.of(newBeer, 2));
+        given(beerRepository.findAllStock()).willReturn(List.<Object[]>of(new Object[]{newBeer, 5}));
+
+        stockReservations.rebuild();
+
+        assertThat(stockReservations.available(newBeer)).isEqualTo(3);
+    }
+
+    @Test
+    void testStockWrittenByOthersIsFollowed() {
+        stockReservations.reserve(Map.of(galaxyCat, 4));
+
+        stockReservations.onHandChanged(galaxyCat, 5);
+        assertThat(stockReservations.available(galaxyCat)).isEqualTo(11);
+
+        // patched quantity on hand: the reservation still counts
+        stockReservations.onBeerChanged(BeerChangedEvent.updated(BeerDTO.builder().id(galaxyCat).quantityOnHand(20).build(), null));
+        assertThat(stockReservations.available(galaxyCat)).isEqualTo(16);
+
+        stockReservations.onBeerChanged(BeerChangedEvent.deleted(galaxyCat));
+        given(beerRepository.findQuantityOnHandById(galaxyCat)).willReturn(Optional.empty());
+        assertThat(stockReservations.available(galaxyCat)).isZero();
+    }
+
+    @Test
+    void testMovementsOnlyTakeWhatOrdersDoNotHold() {
+        stockReservations.reserve(Map.of(galaxyCat, 8));
+
+        assertThat(stockReservations.reserveUpTo(galaxyCat, 5)).isEqualTo(2);
+        assertThat(stockReservations.available(galaxyCat)).isZero();
+
+        stockReservations.taken(galaxyCat, 2, 2);
+        stockReservations.release(galaxyCat, 8);
+        assertThat(stockReservations.available(galaxyCat)).isEqualTo(8);
+    }
+
+    @Test
+    void testTakeNeverLeavesANegativeStock() {
+        Map<UUID, Integer> quantities = Map.of(galaxyCat, 10);
+        stockReservations.reserve(quantities);
+        stockReservations.onStockReservedCommitted(new StockReservedEvent(quantities, List.of(line(galaxyCat, 10))));
+        // patched down meanwhile: only 6 left for the 10 of the order
+        stockReservations.onBeerChanged(BeerChangedEvent.updated(BeerDTO.builder().id(galaxyCat).quantityOnHand(6).build(), null));
+        given(jdbcTemplate.batchUpdate(eq(StockReservations.TAKE_QUANTITY), anyList())).willReturn(new int[]{0});
+        given(jdbcTemplate.queryForList(eq(StockReservations.LOCK_QUANTITY), eq(Long.class), eq(galaxyCat.toString()))).willReturn(List.of(6L));
+
+        assertThat(stockReservations.flush()).isEqualTo(1);
+
+        verify(jdbcTemplate).update(eq(StockReservations.CLEAR_QUANTITY), any(), eq(galaxyCat.toString()));
+        assertThat(stockReservations.available(galaxyCat)).isZero();
+    }
+
+    @Test
+    void testConcurrentOrdersNeverOversell() throws Exception {
+        AtomicInteger reserved = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    if (stockReservations.reserve(Map.of(galaxyCat, 1, crank, 1))) {
+                        reserved.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        // crank runs out first, galaxyCat keeps what crank could not match
+        assertThat(reserved.get()).isEqualTo(3);
+        assertThat(stockReservations.available(crank)).isZero();
+        assertThat(stockReservations.available(galaxyCat)).isEqualTo(7);
+    }
+
+    BeerOrderLine line(UUID beerId, int quantityAllocated) {
+        return BeerOrderLine.builder()
+                .id(UUID.randomUUID())
+                .beer(Beer.builder().id(beerId).build())
+                .quantityAllocated(quantityAllocated)
+                .stockApplied(false)
+                .build();
+    }
+}